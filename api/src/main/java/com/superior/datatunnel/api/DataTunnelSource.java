@@ -28,4 +28,10 @@ public interface DataTunnelSource extends Serializable {
     default Set<String> optionalOptions() {
         return Collections.emptySet();
     }
+
+    /**
+     * sink 写入成功后调用，用于提交增量读取位置等
+     */
+    default void commit(DataTunnelContext context) {
+    }
 }
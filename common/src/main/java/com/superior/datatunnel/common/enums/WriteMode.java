@@ -4,6 +4,7 @@ public enum WriteMode {
     OVERWRITE,
     APPEND,
     UPSERT,
+    UPSERT_STAGING,
     ERROR_IF_EXISTS,
     IGNORE;
 }
@@ -133,19 +133,27 @@ public class CommonUtils {
         String tdlName = "tdl_datatunnel_" + dataSourceType.name().toLowerCase() + "_" + System.currentTimeMillis();
         dataset.createTempView(tdlName);
 
-        String sql;
+        String[] projections = genOutputColumns(sourceColumns, sinkColumns);
+        return "select " + StringUtils.join(projections, ",") + " from " + tdlName;
+    }
+
+    /**
+     * source columns 映射为 sink columns 的查询字段表达式
+     */
+    @NotNull
+    public static String[] genOutputColumns(String[] sourceColumns, String[] sinkColumns) {
         if (sourceColumns.length != sinkColumns.length) {
             if ((sourceColumns.length == 1 && "*".equals(sourceColumns[0])) && sinkColumns.length > 1) {
-                sql = "select " + StringUtils.join(sinkColumns, ",") + " from " + tdlName;
+                return sinkColumns;
             } else if ((sinkColumns.length == 1 && "*".equals(sinkColumns[0])) && sourceColumns.length > 1) {
-                sql = "select * from " + tdlName;
+                return new String[]{"*"};
             } else {
                 throw new UnsupportedOperationException("支持列映射, source columns: " + StringUtils.join(sourceColumns, ",")
                         + ". sink columns: " + StringUtils.join(sinkColumns, ","));
             }
         } else {
             if (sourceColumns.length == 1 && "*".equals(sourceColumns[0]) && "*".equals(sinkColumns[0])) {
-                sql = "select * from " + tdlName;
+                return new String[]{"*"};
             } else {
                 String[] projections = new String[sinkColumns.length];
                 for (int index = 0; index < sinkColumns.length; index++) {
@@ -155,11 +163,9 @@ public class CommonUtils {
                         projections[index] = sourceColumns[index] + " as " + sinkColumns[index];
                     }
                 }
-                sql = "select " + StringUtils.join(projections, ",") + " from " + tdlName;
+                return projections;
             }
         }
-
-        return sql;
     }
 
     public static String cleanQuote(String value) {
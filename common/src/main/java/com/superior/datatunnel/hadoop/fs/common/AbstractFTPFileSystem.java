@@ -2,10 +2,22 @@ package com.superior.datatunnel.hadoop.fs.common;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,6 +29,7 @@ import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.fs.RemoteIterator;
 import com.superior.datatunnel.hadoop.fs.common.DirTree.INode;
 
@@ -36,9 +49,23 @@ import static com.superior.datatunnel.hadoop.fs.common.Channel.DEFAULT_BLOCK_SIZ
  */
 public abstract class AbstractFTPFileSystem extends FileSystem {
 
-    // Block location for remote file - we don't know anything about it
-    // so create empty one
-    private static final BlockLocation BLOCK = new BlockLocation();
+    // Remote server is the only location of all blocks
+    private static final String[] BLOCK_HOSTS = {"localhost"};
+
+    private static final String[] BLOCK_NAMES = {"localhost:9866"};
+
+    // Threads listing directories in parallel, shared by all file systems
+    private static final ExecutorService LISTING_EXECUTOR =
+            Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ftp-list-status-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
 
     // Configuration property defining root for globbed files
     public static final String FS_FTP_GLOB_ROOT_PATH = "fs.ftp.glob.root.path";
@@ -79,8 +106,10 @@ public abstract class AbstractFTPFileSystem extends FileSystem {
     private DirTree dirTree;
 
     // Cache of home directories for each used channel, should be removed
-    // or reimplement if we ever decide to support setWorkingDirectory
-    private final WeakHashMap<Channel, Path> workDirs = new WeakHashMap<>();
+    // or reimplement if we ever decide to support setWorkingDirectory.
+    // Synchronized as directories are listed in parallel
+    private final Map<Channel, Path> workDirs = Collections.synchronizedMap(
+            new WeakHashMap<>());
 
     private ConnectionInfo connectionInfo;
 
@@ -124,8 +153,7 @@ public abstract class AbstractFTPFileSystem extends FileSystem {
         uri = uriInfo;
         connectionInfo = new ConnectionInfo(getChannelSupplier(), uri, conf,
                 getDefaultPort());
-        connectionPool = ConnectionPool.getConnectionPool(
-                connectionInfo.getMaxConnections());
+        connectionPool = ConnectionPool.getConnectionPool();
         connectionPool.init(connectionInfo);
     }
 
@@ -158,8 +186,50 @@ public abstract class AbstractFTPFileSystem extends FileSystem {
         super.initialize(uriInfo, conf);
         setConfigurationFromURI(uriInfo, conf);
         setConf(conf);
-        dirTree = connectionInfo.isCacheDirectories() ? new CachedDirTree(uriInfo)
-                : new NotCachedDirTree();
+        dirTree = createDirTree(uriInfo);
+    }
+
+    /**
+     * Directory caching strategy. With positive listing cache TTL the listings
+     * are shared by all file system instances of the server and expire,
+     * otherwise each instance caches the tree for its lifetime. Listings
+     * shipped in the configuration by {@link #shareListingCache(Configuration)}
+     * are loaded to the shared cache.
+     */
+    private DirTree createDirTree(URI uriInfo) throws IOException {
+        if (!connectionInfo.isCacheDirectories()) {
+            return new NotCachedDirTree();
+        }
+        long ttl = connectionInfo.getListingCacheTtl();
+        if (ttl > 0) {
+            ListingCache cache = ListingCache.forServer(uriInfo, ttl,
+                    connectionInfo.getListingCacheMaxEntries());
+            String snapshot = connectionInfo.getListingCacheSnapshot();
+            if (snapshot != null) {
+                cache.merge(ListingCache.deserialize(snapshot));
+            }
+            return new SharedDirTree(uriInfo, cache);
+        }
+        return new CachedDirTree(uriInfo);
+    }
+
+    /**
+     * Stores listings of the shared listing cache to the configuration. File
+     * systems initialized with the configuration, e.g. on executors, load them
+     * and don't list the directories again while the listings are not expired.
+     *
+     * @param conf configuration to store the listings to
+     * @return true if the shared listing cache is enabled and was stored
+     * @throws IOException serialization problem
+     */
+    public boolean shareListingCache(Configuration conf) throws IOException {
+        if (!(dirTree instanceof SharedDirTree)) {
+            return false;
+        }
+        conf.set(ConnectionInfo.getPropertyName(
+                        ConnectionInfo.FSParameter.FS_FTP_LISTING_CACHE_SNAPSHOT, uri),
+                ((SharedDirTree) dirTree).getCache().serialize());
+        return true;
     }
 
     @Override
@@ -448,11 +518,39 @@ public abstract class AbstractFTPFileSystem extends FileSystem {
         // we do not maintain the working directory state
     }
 
+    /**
+     * Split the file into logical blocks of configured block size. Each block
+     * can be read by an independent connection which starts the transfer at
+     * the block offset.
+     */
     @Override
-    public BlockLocation[] getFileBlockLocations(Path p,
+    public BlockLocation[] getFileBlockLocations(FileStatus file,
                                                  long start, long len) throws IOException {
-        BlockLocation[] loc = {BLOCK};
-        return loc;
+        if (file == null) {
+            return null;
+        }
+        if (start < 0 || len < 0) {
+            throw new IllegalArgumentException("Invalid start or len parameter");
+        }
+        if (file.getLen() <= start) {
+            return new BlockLocation[0];
+        }
+
+        long blockSize = Math.max(1, connectionInfo.getBlockSize());
+        long end = Math.min(file.getLen(), start + len);
+        long offset = (start / blockSize) * blockSize;
+        List<BlockLocation> locations = new ArrayList<>();
+        do {
+            long length = Math.min(blockSize, file.getLen() - offset);
+            locations.add(new BlockLocation(BLOCK_NAMES, BLOCK_HOSTS, offset, length));
+            offset += blockSize;
+        } while (offset < end);
+        return locations.toArray(new BlockLocation[0]);
+    }
+
+    @Override
+    public long getDefaultBlockSize(Path f) {
+        return connectionInfo.getBlockSize();
     }
 
     @Override
@@ -518,6 +616,555 @@ public abstract class AbstractFTPFileSystem extends FileSystem {
         }
     }
 
+    /**
+     * Lists the paths in parallel, each path on its own pooled connection.
+     */
+    @Override
+    public FileStatus[] listStatus(Path[] files, PathFilter filter)
+            throws IOException {
+        List<FileStatus> result = new ArrayList<>();
+        for (FileStatus[] listing : listStatusParallel(Arrays.asList(files))) {
+            for (FileStatus status : listing) {
+                if (filter.accept(status.getPath())) {
+                    result.add(status);
+                }
+            }
+        }
+        return result.toArray(new FileStatus[0]);
+    }
+
+    /**
+     * Lists the directory tree level by level down to the given depth, the
+     * directories of each level are listed in parallel. With directory caching
+     * enabled following listStatus and globStatus calls are served from the
+     * cache, without directory caching nothing is listed.
+     *
+     * @param dir   root of the tree
+     * @param depth number of directory levels to list, 1 lists only dir
+     * @throws IOException communication problem
+     */
+    public void prefetchListings(Path dir, int depth) throws IOException {
+        if (dirTree instanceof NotCachedDirTree) {
+            return;
+        }
+        List<Path> level = Collections.singletonList(dir);
+        for (int i = 0; i < depth && !level.isEmpty(); i++) {
+            List<Path> next = new ArrayList<>();
+            for (FileStatus[] listing : listStatusParallel(level)) {
+                for (FileStatus status : listing) {
+                    if (status.isDirectory()) {
+                        next.add(status.getPath());
+                    }
+                }
+            }
+            level = next;
+        }
+    }
+
+    /**
+     * Lists the paths using up to max connections threads of the shared
+     * listing pool.
+     *
+     * @param paths paths to list
+     * @return listings in the order of the paths
+     * @throws IOException communication problem
+     */
+    private List<FileStatus[]> listStatusParallel(List<Path> paths)
+            throws IOException {
+        if (paths.size() <= 1) {
+            List<FileStatus[]> result = new ArrayList<>();
+            for (Path path : paths) {
+                result.add(listStatus(path));
+            }
+            return result;
+        }
+        int threads = Math.max(1, Math.min(paths.size(),
+                connectionInfo.getMaxConnections()));
+        FileStatus[][] result = new FileStatus[paths.size()][];
+        AtomicInteger next = new AtomicInteger();
+        List<Future<Void>> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.add(LISTING_EXECUTOR.submit(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < result.length) {
+                    result[index] = listStatus(paths.get(index));
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+            return Arrays.asList(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while listing files");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            // Stop the other workers after a failure
+            next.set(result.length);
+        }
+    }
+
+    /**
+     * Convenience method, so that we don't open a new connection when using this
+     * method from within another method. Otherwise every API invocation incurs
+     * the overhead of opening/closing a TCP connection.
+     *
+     * @param channel communication channel to the remote server
+     * @param src     absolute path to the file we want to rename
+     * @param dst     absolute path to the file we want to rename to
+     * @return true if rename operation was successful
+     * @throws IOException communication problem
+     */
+    protected boolean rename(Channel channel, Path src, Path dst)
+            throws IOException {
+        Path absoluteSrc = makeAbsolute(channel, src);
+        if (!exists(channel, absoluteSrc)) {
+            throw new FileNotFoundException(String.format(
+                    ErrorStrings.E_SPATH_NOTEXIST, src));
+        }
+
+        Path absoluteDst = makeAbsolute(channel, dst);
+
+        if (exists(channel, absoluteDst)) {
+            if (getFileStatus(channel, absoluteDst).isDirectory()) {
+                // destination is a directory: rename goes underneath it with the
+                // source name
+                absoluteDst = new Path(absoluteDst, absoluteSrc.getName());
+            }
+            if (exists(channel, absoluteDst)) {
+                throw new FileAlreadyExistsException(String.format(
+                        ErrorStrings.E_DPATH_EXIST, dst));
+            }
+        }
+
+        if (isParentOf(absoluteSrc, absoluteDst)) {
+            throw new IOException("Cannot rename " + absoluteSrc + " under itself" +
+                    " : " + absoluteDst);
+        }
+
+        boolean renamed = channel.rename(absoluteSrc.toUri().getPath(),
+                absoluteDst.toUri().getPath());
+        if (renamed) {
+            // We need to change the dirTree cache so it contains valid information
+            dirTree.removeNode(absoluteSrc);
+            dirTree.addNode(channel, absoluteDst);
+        }
+        return renamed;
+    }
+
+    /**
+     * Probe for a path being a parent of another.
+     *
+     * @param parent parent path
+     * @param child  possible child path
+     * @return true if the parent's path matches the start of the child's
+     */
+    private boolean isParentOf(Path parent, Path child) {
+        URI parentURI = parent.toUri();
+        String parentPath = parentURI.getPath();
+        if (!parentPath.endsWith("/")) {
+            parentPath += "/";
+        }
+        URI childURI = child.toUri();
+        String childPath = childURI.getPath();
+        return childPath.startsWith(parentPath);
+    }
+
+    @Override
+    public boolean delete(Path f, boolean recursive) throws IOException {
+        Channel channel = connect();
+        try {
+            return delete(channel, f, recursive);
+        } finally {
+            channel.disconnect();
+        }
+    }
+
+    /**
+     * Convenience method, so that we don't open a new connection when using this
+     * method from within another method. Otherwise every API invocation incurs
+     * the overhead of opening/closing a TCP connection.
+     *
+     * @param channel   communication channel to the remote server
+     * @param file      absolute path to the file/directory we want to delete
+     * @param recursive if path denotes directory and set to true than delete
+     *                  operation will delete all children
+     * @return true if delete operation succeeds
+     * @throws IOException communication problem
+     */
+    protected boolean delete(Channel channel, Path file, boolean recursive)
+            throws IOException {
+        Path absolute = makeAbsolute(channel, file);
+        FileStatus fileStat;
+        try {
+            fileStat = getFileStatus(channel, absolute);
+        } catch (FileNotFoundException e) {
+            // file not found, no need to delete, return false
+            LOG.warn(String.format(ErrorStrings.E_FILE_NOTFOUND, file) + " Error: " + e.getMessage());
+            return false;
+        }
+        boolean result;
+        String pathName = absolute.toUri().getPath();
+        if (!fileStat.isDirectory()) {
+            result = channel.rm(pathName);
+        } else {
+            FileStatus[] dirEntries = listStatus(channel, absolute);
+            if (dirEntries != null && dirEntries.length > 0) {
+                if (!recursive) {
+                    // Can't delete not empty directory
+                    throw new IOException(
+                            String.format(ErrorStrings.E_DIR_NOTEMPTY, file));
+                }
+                for (int i = 0; i < dirEntries.length; ++i) {
+                    // delete all items from the directory
+                    delete(channel, new Path(absolute, dirEntries[i].getPath()),
+                            recursive);
+                }
+            }
+            result = channel.rmdir(pathName);
+        }
+        if (result) {
+            // Remove file from the cache only if deletion was successful
+            dirTree.removeNode(file);
+        }
+        return result;
+    }
+
+    @Override
+    // Permissions are ignored
+    public boolean mkdirs(Path f, FsPermission permission) throws IOException {
+        Channel channel = connect();
+        try {
+            return mkdirs(channel, f);
+        } finally {
+            channel.disconnect();
+        }
+    }
+
+    /**
+     * Convenience method, so that we don't open a new connection when using this
+     * method from within another method. Otherwise every API invocation incurs
+     * the overhead of opening/closing a TCP connection.
+     *
+     * @param channel channel used to communicate with remote server
+     * @param dir     absolute path of a directory we want to create
+     * @return true if the the directory was created or already exists
+     * @throws IOException communication problem or dir is not a directory
+     */
+    protected boolean mkdirs(Channel channel, Path dir)
+            throws IOException {
+        boolean created = true;
+        Path absolute = makeAbsolute(channel, dir);
+        String pathName = absolute.getName();
+        if (!exists(channel, absolute)) {
+            Path parent = absolute.getParent();
+            // Recursively create all directories in the path
+            created = parent == null || mkdirs(channel, parent);
+            if (created) {
+                String parentDir = parent == null ? "/" : parent.toUri().getPath();
+                created = channel.mkdir(parentDir, pathName);
+                if (created) {
+                    dirTree.addNode(channel, absolute);
+                }
+            }
+        } else if (getFileStatus(channel, absolute).isFile()) {
+            throw new IOException(String.format(ErrorStrings.E_DIR_CREATE_FROMFILE,
+                    absolute));
+        }
+        return created;
+    }
+
+    /**
+     * Returns absolute path of working/home directory associated with the
+     * channel.
+     *
+     * @param channel communication channel
+     * @return absolute path of working/home directory
+     * @throws IOException communication problem
+     */
+    public Path getWorkingDirectory(Channel channel) throws IOException {
+        if (workDirs.containsKey(channel)) {
+            return workDirs.get(channel);
+        } else {
+            Path homeDir = new Path(channel.pwd());
+            workDirs.put(channel, homeDir);
+            return homeDir;
+        }
+    }
+
+    @Override
+    public Path getWorkingDirectory() {
+        // Return home directory always since we do not maintain state.
+        return getHomeDirectory();
+    }
+
+    @Override
+    public Path getHomeDirectory() {
+        Channel channel = null;
+        try {
+            channel = connect();
+            return getWorkingDirectory(channel);
+        } catch (IOException ioe) {
+            LOG.error(connectionInfo.logWithInfo("Home directory can't be resolved"),
+                    ioe);
+            return null;
+        } finally {
+            try {
+                if (channel != null) {
+                    channel.disconnect();
+                }
+            } catch (IOException ex) {
+                LOG.warn("Disconnection fails, error: " + ex.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public FileStatus getFileStatus(Path f) throws IOException {
+        Channel channel = connect();
+        try {
+            return getFileStatus(channel, f);
+        } finally {
+            channel.disconnect();
+        }
+    }
+
+    /**
+     * Gets the FileStatus of a remote file specified by its path.
+     *
+     * @param channel channel to use to communicate with remote server
+     * @param f       absolute path of the file we query for the status
+     * @return FileStatus
+     * @throws IOException when communication problem, FileNotFound when file is
+     *                     not found
+     */
+    protected FileStatus getFileStatus(Channel channel, Path f)
+            throws IOException {
+        // Check if we don't have file already in the cache
+        DirTree.INode n = dirTree.findNode(f);
+        if (n == null) {
+            LOG.debug(String.format(ErrorStrings.E_FILE_NOTFOUND, f));
+            Path absolute = makeAbsolute(channel, f);
+            Path parentPath = absolute.getParent();
+            if (parentPath == null) {
+                // root directory
+                parentPath = new Path("/");
+            }
+            // Add the parent of the file to the cache
+            n = dirTree.addNode(channel, parentPath);
+            HashSet<FileStatus> dirContentList = new HashSet<>();
+            FileStatus status = channel.getFileStatus(absolute, dirContentList);
+            // Add all files form the parent directory to the cache
+            n.addAll(dirContentList.toArray(new FileStatus[dirContentList.size()]));
+            return status;
+        } else {
+            return n.getStatus();
+        }
+    }
+
+    @Override
+    public void setWorkingDirectory(Path newDir) {
+        // we do not maintain the working directory state
+    }
+
+    /**
+     * Split the file into logical blocks of configured block size. Each block
+     * can be read by an independent connection which starts the transfer at
+     * the block offset.
+     */
+    @Override
+    public BlockLocation[] getFileBlockLocations(FileStatus file,
+                                                 long start, long len) throws IOException {
+        if (file == null) {
+            return null;
+        }
+        if (start < 0 || len < 0) {
+            throw new IllegalArgumentException("Invalid start or len parameter");
+        }
+        if (file.getLen() <= start) {
+            return new BlockLocation[0];
+        }
+
+        long blockSize = Math.max(1, connectionInfo.getBlockSize());
+        long end = Math.min(file.getLen(), start + len);
+        long offset = (start / blockSize) * blockSize;
+        List<BlockLocation> locations = new ArrayList<>();
+        do {
+            long length = Math.min(blockSize, file.getLen() - offset);
+            locations.add(new BlockLocation(BLOCK_NAMES, BLOCK_HOSTS, offset, length));
+            offset += blockSize;
+        } while (offset < end);
+        return locations.toArray(new BlockLocation[0]);
+    }
+
+    @Override
+    public long getDefaultBlockSize(Path f) {
+        return connectionInfo.getBlockSize();
+    }
+
+    @Override
+    public FileStatus[] globStatus(Path pathPattern) throws IOException {
+        if (GlobType.UNIX == connectionInfo.getGlobType()) {
+            return super.globStatus(pathPattern);
+        }
+        Path qualifiedPattern = pathPattern.makeQualified(uri, getWorkingDirectory());
+        LOG.debug("Start glob processing");
+        String path = qualifiedPattern.toUri().getPath();
+        Pattern p0 = Pattern.compile(path);
+        /*
+         * Identify regexp presence in the path. There are 2 groups in this regexp
+         * first will contain the path before the start of regexp and we will use it
+         * to set the start base for searchinng files on remote file system Second
+         * group contains first occurance of the regexp but we don't need it as the
+         * complete matching is done on the whole pattern
+         */
+        String glob = "(.*?)(\\*|\\?|\\(.*\\)|\\[.*\\]|\\{.+,.+\\}).*";
+        Pattern p = Pattern.compile(glob);
+        Matcher m = p.matcher(path);
+        // To avoid duplicates we use Set not an Array
+        HashSet<FileStatus> res = new HashSet<>();
+        if (m.matches()) {
+            // base is a directory before the first rexgexp occurence in the path
+            Path globBasePath = new Path(m.group(1));
+            if (globBasePath.getParent() != null) {
+                globBasePath = globBasePath.getParent();
+            }
+            getConf().set(FS_FTP_GLOB_ROOT_PATH, globBasePath.toUri().toString());
+            RemoteIterator<LocatedFileStatus> list = listFiles(globBasePath, true);
+            while (list.hasNext()) {
+                FileStatus fs = list.next();
+                String file = fs.getPath().toUri().getPath();
+                // Match the obtained path with the regexp pattern
+                // from the input parameter
+                Matcher m0 = p0.matcher(file);
+                if (m0.matches()) {
+                    // Add matching entries to the result list
+                    res.add(fs);
+                }
+            }
+        } else {
+            getConf().unset(FS_FTP_GLOB_ROOT_PATH);
+            // Input path doesn't contain regular expression
+            FileStatus fs = getFileStatus(qualifiedPattern);
+            if (fs != null) {
+                res.add(fs);
+            }
+        }
+
+        LOG.debug("Finish glob processing");
+        return res.toArray(new FileStatus[res.size()]);
+    }
+
+    @Override
+    public FileStatus[] listStatus(Path f) throws IOException {
+        Channel channel = connect();
+        try {
+            return listStatus(channel, f);
+        } finally {
+            channel.disconnect();
+        }
+    }
+
+    /**
+     * Lists the paths in parallel, each path on its own pooled connection.
+     */
+    @Override
+    public FileStatus[] listStatus(Path[] files, PathFilter filter)
+            throws IOException {
+        List<FileStatus> result = new ArrayList<>();
+        for (FileStatus[] listing : listStatusParallel(Arrays.asList(files))) {
+            for (FileStatus status : listing) {
+                if (filter.accept(status.getPath())) {
+                    result.add(status);
+                }
+            }
+        }
+        return result.toArray(new FileStatus[0]);
+    }
+
+    /**
+     * Lists the directory tree level by level down to the given depth, the
+     * directories of each level are listed in parallel. With directory caching
+     * enabled following listStatus and globStatus calls are served from the
+     * cache, without directory caching nothing is listed.
+     *
+     * @param dir   root of the tree
+     * @param depth number of directory levels to list, 1 lists only dir
+     * @throws IOException communication problem
+     */
+    public void prefetchListings(Path dir, int depth) throws IOException {
+        if (dirTree instanceof NotCachedDirTree) {
+            return;
+        }
+        List<Path> level = Collections.singletonList(dir);
+        for (int i = 0; i < depth && !level.isEmpty(); i++) {
+            List<Path> next = new ArrayList<>();
+            for (FileStatus[] listing : listStatusParallel(level)) {
+                for (FileStatus status : listing) {
+                    if (status.isDirectory()) {
+                        next.add(status.getPath());
+                    }
+                }
+            }
+            level = next;
+        }
+    }
+
+    /**
+     * Lists the paths using up to max connections threads.
+     *
+     * @param paths paths to list
+     * @return listings in the order of the paths
+     * @throws IOException communication problem
+     */
+    private List<FileStatus[]> listStatusParallel(List<Path> paths)
+            throws IOException {
+        if (paths.size() <= 1) {
+            List<FileStatus[]> result = new ArrayList<>();
+            for (Path path : paths) {
+                result.add(listStatus(path));
+            }
+            return result;
+        }
+        int threads = Math.max(1, Math.min(paths.size(),
+                connectionInfo.getMaxConnections()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ftp-list-status");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<FileStatus[]>> futures = new ArrayList<>(paths.size());
+            for (Path path : paths) {
+                futures.add(executor.submit(() -> listStatus(path)));
+            }
+            List<FileStatus[]> result = new ArrayList<>(paths.size());
+            for (Future<FileStatus[]> future : futures) {
+                result.add(future.get());
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while listing files");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Convenience method, so that we don't open a new connection when using this
      * method from within another method. Otherwise every API invocation incurs
@@ -1,18 +1,29 @@
 package com.superior.datatunnel.hadoop.fs.common;
 
-import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import java.io.IOException;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.impl.DefaultPooledObject;
 
 /**
- * Factory for creating pool objects.
+ * Factory for creating pool objects of one remote server.
  */
-class ChannelObjectFactory extends
-        BaseKeyedPooledObjectFactory<ConnectionInfo, Channel> {
+class ChannelObjectFactory extends BasePooledObjectFactory<Channel> {
+
+    private final ConnectionInfo info;
+
+    ChannelObjectFactory(ConnectionInfo info) {
+        this.info = info;
+    }
 
     @Override
-    public Channel create(ConnectionInfo k) throws Exception {
-        AbstractChannel channel = k.getConnectionSupplier().apply(k);
+    public Channel create() throws Exception {
+        AbstractChannel channel = info.getConnectionSupplier().apply(info);
+        if (channel == null) {
+            throw new IOException("Connection to:" + info.toString() +
+                    " can't be created");
+        }
         channel.setPooled();
         return channel;
     }
@@ -23,8 +34,7 @@ class ChannelObjectFactory extends
     }
 
     @Override
-    public void destroyObject(ConnectionInfo key, PooledObject<Channel> p) throws
-            Exception {
+    public void destroyObject(PooledObject<Channel> p) throws Exception {
         Channel channel = p.getObject();
         if (channel.isConnected()) {
             channel.destroy();
@@ -32,7 +42,7 @@ class ChannelObjectFactory extends
     }
 
     @Override
-    public boolean validateObject(ConnectionInfo key, PooledObject<Channel> p) {
+    public boolean validateObject(PooledObject<Channel> p) {
         return p.getObject().isConnected() && p.getObject().isAvailable();
     }
 }
@@ -5,6 +5,7 @@ import java.net.URI;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
@@ -16,7 +17,9 @@ import static com.google.common.base.Preconditions.*;
 /**
  * Various connection parameters. Default values: PORTS: FTP 21/SFTP 22 PROXY
  * PORTS: HTTP 8080/SOCKS 1080 USE CACHE: true USE KEEPALIVE: false KEEPALIVE
- * PERIOD: 1min MAX CONNECTIONS: 5
+ * PERIOD: 1min MAX CONNECTIONS: 5 MIN IDLE CONNECTIONS: 0 MAX WAIT: 0 (don't
+ * wait) IDLE TIMEOUT: 5min BLOCK SIZE: 128MB READ AHEAD: 1MB LISTING CACHE
+ * TTL: 0 (per instance cache without expiration) LISTING CACHE MAX ENTRIES: 10000
  */
 public class ConnectionInfo extends Configured {
 
@@ -33,6 +36,14 @@ public class ConnectionInfo extends Configured {
     // Basic default values
     protected static final int DEFAULT_MAX_CONNECTION = 5;
 
+    protected static final int DEFAULT_MIN_IDLE_CONNECTION = 0;
+
+    // How long to wait for pooled connection in ms, 0 opens not pooled one
+    protected static final long DEFAULT_CONNECTION_MAX_WAIT = 0;
+
+    // Idle pooled connections are closed after this time in ms
+    protected static final long DEFAULT_CONNECTION_IDLE_TIMEOUT = 5 * 60 * 1000;
+
     // Deffault keep alive in minutes
     protected static final int DEFAULT_KEEPALIVE_PERIOD = 1;
 
@@ -44,6 +55,17 @@ public class ConnectionInfo extends Configured {
 
     protected static final Boolean DEFAULT_CACHE_DIRECTORIES = false;
 
+    // Time to live of shared listings in ms, 0 keeps per instance cache
+    protected static final long DEFAULT_LISTING_CACHE_TTL = 0;
+
+    protected static final int DEFAULT_LISTING_CACHE_MAX_ENTRIES = 10000;
+
+    // Logical block size reported for files, remote servers don't have blocks
+    protected static final long DEFAULT_LOGICAL_BLOCK_SIZE = 128 * 1024 * 1024;
+
+    // Size of read ahead chunks of input streams, 0 disables read ahead
+    protected static final long DEFAULT_READ_AHEAD_SIZE = 1024 * 1024;
+
     protected static final AbstractFTPFileSystem.ProxyType DEFAULT_PROXY_TYPE = AbstractFTPFileSystem.ProxyType.NONE;
 
     protected static final AbstractFTPFileSystem.GlobType DEFAULT_GLOB_TYPE = AbstractFTPFileSystem.GlobType.UNIX;
@@ -69,12 +91,20 @@ public class ConnectionInfo extends Configured {
         FS_FTP_PROXY_USER(".proxy.user"),
         FS_FTP_PROXY_PASSWORD(".proxy.password"),
         FS_FTP_CONNECTION_MAX(".connections.max"),
+        FS_FTP_CONNECTION_MIN_IDLE(".connections.min.idle"),
+        FS_FTP_CONNECTION_MAX_WAIT(".connections.max.wait"),
+        FS_FTP_CONNECTION_IDLE_TIMEOUT(".connections.idle.timeout"),
         FS_FTP_USE_KEEPALIVE(".use.keepalive"),
         FS_FTP_KEEPALIVE_PERIOD(".keepalive.period"),
         FS_FTP_GLOB_TYPE(".glob.type"),
         FS_FTP_CACHE_DIRECTORIES(".cache."),
+        FS_FTP_LISTING_CACHE_TTL(".listing.cache.ttl"),
+        FS_FTP_LISTING_CACHE_MAX_ENTRIES(".listing.cache.max.entries"),
+        FS_FTP_LISTING_CACHE_SNAPSHOT(".listing.cache.snapshot"),
         FS_FTP_KEY_PASSPHRASE_PREFIX(".key.passphrase."),
-        FS_FTP_KEYFILE_PREFIX(".key.file.");
+        FS_FTP_KEYFILE_PREFIX(".key.file."),
+        FS_FTP_BLOCK_SIZE(".block.size"),
+        FS_FTP_READ_AHEAD_SIZE(".readahead.size");
 
         private final String value;
 
@@ -272,6 +302,40 @@ public class ConnectionInfo extends Configured {
                 uri), DEFAULT_MAX_CONNECTION);
     }
 
+    /**
+     * Number of connections opened in advance and kept in the pool.
+     *
+     * @return minimal number of idle pooled connections
+     */
+    public int getMinIdleConnections() {
+        return getConf().getInt(getPropertyName(FSParameter.FS_FTP_CONNECTION_MIN_IDLE,
+                uri), DEFAULT_MIN_IDLE_CONNECTION);
+    }
+
+    /**
+     * How long to wait for a pooled connection when all of them are in use. If
+     * 0 not pooled connection is opened instead of waiting, otherwise
+     * connections.max is a hard limit and the connect fails after the wait.
+     *
+     * @return max wait time in ms
+     */
+    public long getConnectionMaxWait() {
+        return getConf().getTimeDuration(getPropertyName(
+                        FSParameter.FS_FTP_CONNECTION_MAX_WAIT, uri),
+                DEFAULT_CONNECTION_MAX_WAIT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Pooled connections idle for longer time are closed.
+     *
+     * @return idle timeout in ms
+     */
+    public long getConnectionIdleTimeout() {
+        return getConf().getTimeDuration(getPropertyName(
+                        FSParameter.FS_FTP_CONNECTION_IDLE_TIMEOUT, uri),
+                DEFAULT_CONNECTION_IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
     public int getKeepAlivePeriod() {
         return getConf().getInt(getPropertyName(FSParameter.FS_FTP_KEEPALIVE_PERIOD,
                 uri), DEFAULT_KEEPALIVE_PERIOD);
@@ -283,6 +347,63 @@ public class ConnectionInfo extends Configured {
                 DEFAULT_CACHE_DIRECTORIES);
     }
 
+    /**
+     * Time to live of directory listings in the cache shared by all file system
+     * instances of the server. Used only if caching of directories is enabled.
+     *
+     * @return time to live in ms, 0 if the shared cache is not used
+     */
+    public long getListingCacheTtl() {
+        return getConf().getTimeDuration(getPropertyName(
+                        FSParameter.FS_FTP_LISTING_CACHE_TTL, uri),
+                DEFAULT_LISTING_CACHE_TTL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Max number of directories in the shared listing cache.
+     *
+     * @return max number of cached directory listings
+     */
+    public int getListingCacheMaxEntries() {
+        return getConf().getInt(getPropertyName(
+                        FSParameter.FS_FTP_LISTING_CACHE_MAX_ENTRIES, uri),
+                DEFAULT_LISTING_CACHE_MAX_ENTRIES);
+    }
+
+    /**
+     * Listings of the shared cache serialized by {@link ListingCache#serialize()}
+     * on the driver, loaded to the shared cache when a file system is
+     * initialized.
+     *
+     * @return serialized listing cache or null if not set
+     */
+    public String getListingCacheSnapshot() {
+        return getConf().get(getPropertyName(
+                FSParameter.FS_FTP_LISTING_CACHE_SNAPSHOT, uri));
+    }
+
+    /**
+     * Logical block size of remote files. Splitting of large files and the
+     * block locations are based on this value.
+     *
+     * @return logical block size in bytes
+     */
+    public long getBlockSize() {
+        return getConf().getLongBytes(getPropertyName(FSParameter.FS_FTP_BLOCK_SIZE,
+                uri), DEFAULT_LOGICAL_BLOCK_SIZE);
+    }
+
+    /**
+     * Chunk size of the read ahead of input streams. The next chunk is fetched
+     * in background while the current one is consumed.
+     *
+     * @return read ahead chunk size in bytes, 0 if read ahead is disabled
+     */
+    public int getReadAheadSize() {
+        return (int) getConf().getLongBytes(getPropertyName(
+                FSParameter.FS_FTP_READ_AHEAD_SIZE, uri), DEFAULT_READ_AHEAD_SIZE);
+    }
+
     public boolean isUseKeepAlive() {
         return getConf().getBoolean(
                 getPropertyName(FSParameter.FS_FTP_USE_KEEPALIVE, uri),
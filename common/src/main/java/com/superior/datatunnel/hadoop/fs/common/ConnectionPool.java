@@ -1,72 +1,60 @@
 package com.superior.datatunnel.hadoop.fs.common;
 
 import java.io.IOException;
-import java.util.HashSet;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static com.superior.datatunnel.hadoop.fs.common.ConnectionInfo.DEFAULT_MAX_CONNECTION;
-
 /**
  * ConnectionPool keeps the list of connection to the remote server and reuse
  * them if possible FTP/SFTP connections are expensive to create hence
  * performance is significantly improved if connection is not closed when not
- * used but put into the pool so next operation can reuse it. Channels are
- * grouped by theirs connection information so only channels belonging to the
- * same group are returned. This class is a singleton - only one is created for
- * the application
+ * used but put into the pool so next operation can reuse it. Every remote
+ * server (ConnectionInfo) has its own pool with its own limits, idle
+ * connections are closed after the idle timeout and the minimal number of idle
+ * connections is opened in advance. Borrowing and returning of channels of
+ * different servers doesn't block each other. This class is a singleton - only
+ * one is created for the application
  */
 public final class ConnectionPool {
 
     private static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
 
+    // How often the idle connections are checked
+    private static final Duration EVICTION_INTERVAL = Duration.ofSeconds(30);
+
     // Static singleton instance of ConnectionPool
-    private static ConnectionPool pool = new ConnectionPool(DEFAULT_MAX_CONNECTION);
+    private static volatile ConnectionPool pool = new ConnectionPool();
 
     // Set of connection groups which were closed and
     // hence can't be used to get new connection
-    private final HashSet<ConnectionInfo> closedInfos = new HashSet<>();
+    private final Set<ConnectionInfo> closedInfos = ConcurrentHashMap.newKeySet();
 
-    // Store of pooled objects
-    private final GenericKeyedObjectPool<ConnectionInfo, Channel> keyedPool = new GenericKeyedObjectPool<>(new ChannelObjectFactory());
+    // Pool of each remote server
+    private final ConcurrentMap<ConnectionInfo, ServerPool> pools = new ConcurrentHashMap<>();
 
-    /**
-     * Initialize connection pool.
-     *
-     * @param maxConnection max number of connection to store in pool. Any extra
-     *                      connections are possible but not stored there
-     */
-    private ConnectionPool(int maxConnection) {
-        keyedPool.setBlockWhenExhausted(false);
-        keyedPool.setMaxTotalPerKey(maxConnection);
-        keyedPool.setTestOnReturn(true);
-        keyedPool.setTestOnBorrow(true);
+    private ConnectionPool() {
     }
 
     /**
      * used only for testing to clean up connection pool.
      */
     static synchronized void resetPool() {
-        pool = new ConnectionPool(DEFAULT_MAX_CONNECTION);
+        pool.pools.values().forEach(ServerPool::close);
+        pool = new ConnectionPool();
     }
 
     /**
      * Returns ConnectionPool object.
      *
-     * @param maxConnection how many connection to pool at max
-     * @return ConenctionPool object
-     */
-    public static ConnectionPool getConnectionPool(int maxConnection) {
-        pool.setMaxConnection(maxConnection);
-        return getConnectionPool();
-    }
-
-    /**
-     * Returns ConnectionPool object without specifying max number of pooled
-     * connections.
-     *
      * @return ConenctionPool object
      */
     public static ConnectionPool getConnectionPool() {
@@ -74,45 +62,62 @@ public final class ConnectionPool {
     }
 
     /**
-     * Gets connection from pool if available.
+     * Gets connection from pool if available. Without max wait an exhausted
+     * pool returns null so a not pooled connection is opened, with max wait the
+     * connections.max limit is kept and the timeout is reported as an error.
+     * Failures to create a connection (e.g. bad credentials) are not retried.
      *
      * @param info connection information
-     * @return communication channel if in pool, null if not
-     * @throws IOException communication problem
+     * @return communication channel if in pool, null if pool is exhausted
+     * @throws IOException communication problem or timeout
      */
-    private synchronized Channel getFromPool(ConnectionInfo info) throws
-            IOException {
-        Channel channel;
+    private Channel getFromPool(ConnectionInfo info) throws IOException {
         if (closedInfos.contains(info)) {
             throw new IOException("File system closed for: " + info.toString());
         }
+        ServerPool serverPool = getServerPool(info);
         try {
-            channel = keyedPool.borrowObject(info);
+            Channel channel = serverPool.objectPool.borrowObject();
             LOG.debug("Connection obtained from the pool");
-        } catch (Exception ex) {
-            channel = null;
+            return channel;
+        } catch (NoSuchElementException ex) {
+            if (serverPool.maxWait > 0) {
+                throw new IOException(info.logWithInfo("No connection available in "
+                        + serverPool.maxWait + "ms"), ex);
+            }
+            serverPool.unpooledCreated.incrementAndGet();
             LOG.debug("Can't get any new channel from the pool", ex);
+            return null;
+        } catch (IOException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException("Connection to:" + info.toString() +
+                    " can't be created", ex);
         }
-        return channel;
     }
 
     /**
      * Return the unused channel into pool.
      */
-    private synchronized void returnToPool(Channel channel) throws IOException {
+    private void returnToPool(Channel channel) throws IOException {
         if (channel.isPooled()) {
             ConnectionInfo info = channel.getConnectionInfo();
-            if (closedInfos.contains(info)) {
+            ServerPool serverPool = pools.get(info);
+            if (serverPool == null || closedInfos.contains(info)) {
+                // We need to delete the connection
+                // as file system for this info is closed
+                channel.destroy();
+                LOG.debug("Connection of closed pool discarded");
+            } else {
                 try {
-                    // We need to delete the connection
-                    // as file system for this info is closed
-                    keyedPool.invalidateObject(info, channel);
-                } catch (Exception ex) {
-                    throw new IOException(ex.toString(), ex);
+                    // Closed pool destroys the returned channel
+                    serverPool.objectPool.returnObject(channel);
+                    LOG.debug("Connection returned to the pool");
+                } catch (IllegalStateException ex) {
+                    // Channel of the pool before the file system was reopened
+                    channel.destroy();
+                    LOG.debug("Connection of previous pool discarded");
                 }
-            } else {
-                keyedPool.returnObject(info, channel);
-                LOG.debug("Connection returned to the pool");
             }
         } else {
             channel.destroy();
@@ -122,13 +127,21 @@ public final class ConnectionPool {
 
     /**
      * Remove the lock forbidding creation of new connections for given
-     * ConnectionInfo.
+     * ConnectionInfo and open the minimal number of idle connections.
      *
      * @param info ConnectionInfo
      */
-    public synchronized void init(ConnectionInfo info) {
+    public void init(ConnectionInfo info) {
         // remove the info from closed list
         closedInfos.remove(info);
+        ServerPool serverPool = getServerPool(info);
+        if (info.getMinIdleConnections() > 0) {
+            try {
+                serverPool.objectPool.preparePool();
+            } catch (Exception ex) {
+                LOG.warn(info.logWithInfo("Can't open idle connections in advance"), ex);
+            }
+        }
     }
 
     /**
@@ -138,30 +151,36 @@ public final class ConnectionPool {
      *
      * @param info which connections to clean
      */
-    public synchronized void shutdown(ConnectionInfo info) {
-        keyedPool.clear(info);
+    public void shutdown(ConnectionInfo info) {
         closedInfos.add(info);
-        LOG.debug(
-                "Pool shutdown for " + info + ". " + keyedPool.getNumActive(info) +
-                        " connectionns still active");
+        ServerPool serverPool = pools.remove(info);
+        if (serverPool != null) {
+            LOG.debug("Pool shutdown for " + info + ". " + serverPool.metrics());
+            serverPool.close();
+        }
     }
 
     /**
-     * Get the current maximum number of channels in th pool.
+     * Get the maximum number of channels in the pool of given server.
      *
+     * @param info connection information
      * @return the maximum number of communication channels in the pool
      */
-    public int getMaxConnection() {
-        return keyedPool.getMaxTotalPerKey();
+    public int getMaxConnection(ConnectionInfo info) {
+        return getServerPool(info).objectPool.getMaxTotal();
     }
 
     /**
-     * Sets the maximum number of channels in the pool.
+     * Current state of the pool of given server.
      *
-     * @param maxConn maximum number of channels
+     * @param info connection information
+     * @return pool metrics, all zero if there is no pool for the server
      */
-    public void setMaxConnection(int maxConn) {
-        keyedPool.setMaxTotalPerKey(maxConn);
+    public ConnectionPoolMetrics getMetrics(ConnectionInfo info) {
+        ServerPool serverPool = pools.get(info);
+        return serverPool == null
+                ? new ConnectionPoolMetrics(0, 0, 0, 0, 0, 0, 0)
+                : serverPool.metrics();
     }
 
     /**
@@ -186,8 +205,9 @@ public final class ConnectionPool {
             }
         }
 
-        LOG.debug("Current connections after connect:" +
-                keyedPool.getNumActive(info));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Connections after connect: " + getMetrics(info));
+        }
         return channel;
     }
 
@@ -208,12 +228,17 @@ public final class ConnectionPool {
         if (channel != null) {
             if (hardClose) {
                 // Do the real close
-                if (channel.isPooled()) {
+                ServerPool serverPool = channel.isPooled()
+                        ? pools.get(channel.getConnectionInfo()) : null;
+                if (serverPool != null) {
                     try {
-                        keyedPool.invalidateObject(channel.getConnectionInfo(), channel);
+                        serverPool.objectPool.invalidateObject(channel);
                     } catch (Exception ex) {
-                        LOG.error(channel.getConnectionInfo()
-                                .logWithInfo("Should never happen"), ex);
+                        // Channel of the pool before the file system was reopened
+                        LOG.debug("Channel not part of the pool", ex);
+                        if (channel.isConnected()) {
+                            channel.destroy();
+                        }
                     }
                 } else {
                     if (channel.isConnected()) {
@@ -225,9 +250,62 @@ public final class ConnectionPool {
                 // we can return the channel to the pool
                 returnToPool(channel);
             }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Connections after disconnect: "
+                        + getMetrics(channel.getConnectionInfo()));
+            }
         }
-        LOG.debug("Connections actively in use: " + keyedPool.getNumActive());
-        LOG.debug("Connections waiting in pool: " + keyedPool.getNumIdle());
     }
 
+    private ServerPool getServerPool(ConnectionInfo info) {
+        return pools.computeIfAbsent(info, ServerPool::new);
+    }
+
+    /**
+     * Pool of the connections to one remote server. Limits are taken from the
+     * ConnectionInfo which created the pool.
+     */
+    private static final class ServerPool {
+
+        private final GenericObjectPool<Channel> objectPool;
+
+        private final AtomicLong unpooledCreated = new AtomicLong();
+
+        // How long to wait for a pooled connection, 0 opens not pooled one
+        private final long maxWait;
+
+        ServerPool(ConnectionInfo info) {
+            GenericObjectPoolConfig<Channel> config = new GenericObjectPoolConfig<>();
+            int maxConnection = info.getMaxConnections();
+            config.setMaxTotal(maxConnection);
+            config.setMaxIdle(maxConnection);
+            config.setMinIdle(Math.min(info.getMinIdleConnections(), maxConnection));
+            maxWait = info.getConnectionMaxWait();
+            // Without waiting any extra connection is opened as not pooled one
+            config.setBlockWhenExhausted(maxWait > 0);
+            config.setMaxWait(Duration.ofMillis(maxWait));
+            config.setTestOnReturn(true);
+            config.setTestOnBorrow(true);
+            config.setTestWhileIdle(true);
+            config.setTimeBetweenEvictionRuns(EVICTION_INTERVAL);
+            config.setMinEvictableIdleDuration(
+                    Duration.ofMillis(info.getConnectionIdleTimeout()));
+            config.setJmxNamePrefix((info.getURI().getScheme() + "-"
+                    + info.getFtpHost() + "-" + info.getFtpPort())
+                    .replaceAll("[^A-Za-z0-9._-]", "_"));
+            this.objectPool = new GenericObjectPool<>(new ChannelObjectFactory(info), config);
+        }
+
+        ConnectionPoolMetrics metrics() {
+            return new ConnectionPoolMetrics(objectPool.getNumActive(),
+                    objectPool.getNumIdle(), objectPool.getCreatedCount(),
+                    objectPool.getDestroyedCount(), unpooledCreated.get(),
+                    objectPool.getMeanBorrowWaitTimeMillis(),
+                    objectPool.getMaxBorrowWaitTimeMillis());
+        }
+
+        void close() {
+            objectPool.close();
+        }
+    }
 }
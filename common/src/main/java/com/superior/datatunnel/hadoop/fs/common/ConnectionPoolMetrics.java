@@ -0,0 +1,74 @@
+package com.superior.datatunnel.hadoop.fs.common;
+
+/**
+ * Snapshot of the connection pool state of one remote server.
+ */
+public final class ConnectionPoolMetrics {
+
+    // Pooled connections borrowed at the moment
+    private final int active;
+
+    // Pooled connections waiting in the pool
+    private final int idle;
+
+    // Pooled connections created since the pool was initialized
+    private final long created;
+
+    // Pooled connections closed since the pool was initialized
+    private final long destroyed;
+
+    // Not pooled connections opened because the pool was exhausted
+    private final long unpooledCreated;
+
+    private final long meanBorrowWaitMillis;
+
+    private final long maxBorrowWaitMillis;
+
+    ConnectionPoolMetrics(int active, int idle, long created, long destroyed,
+                          long unpooledCreated, long meanBorrowWaitMillis,
+                          long maxBorrowWaitMillis) {
+        this.active = active;
+        this.idle = idle;
+        this.created = created;
+        this.destroyed = destroyed;
+        this.unpooledCreated = unpooledCreated;
+        this.meanBorrowWaitMillis = meanBorrowWaitMillis;
+        this.maxBorrowWaitMillis = maxBorrowWaitMillis;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getDestroyed() {
+        return destroyed;
+    }
+
+    public long getUnpooledCreated() {
+        return unpooledCreated;
+    }
+
+    public long getMeanBorrowWaitMillis() {
+        return meanBorrowWaitMillis;
+    }
+
+    public long getMaxBorrowWaitMillis() {
+        return maxBorrowWaitMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "active: " + active + ", idle: " + idle + ", created: " + created
+                + ", destroyed: " + destroyed + ", unpooled: " + unpooledCreated
+                + ", mean wait: " + meanBorrowWaitMillis + "ms, max wait: "
+                + maxBorrowWaitMillis + "ms";
+    }
+}
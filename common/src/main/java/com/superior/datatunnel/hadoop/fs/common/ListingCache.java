@@ -0,0 +1,237 @@
+package com.superior.datatunnel.hadoop.fs.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hadoop.fs.FileStatus;
+
+/**
+ * Bounded cache of directory listings of one remote server. Listings expire
+ * after the configured time to live and the least recently used directories are
+ * dropped when the cache is full. One cache is shared by all file system
+ * instances of the server in the JVM, so listings done by one task are reused
+ * by the others.
+ * <p>
+ * The cache is serializable so listings done on the driver (e.g. when
+ * resolving input paths) can be shipped to executors and loaded there with
+ * {@link #merge(ListingCache)}. Entries keep their original listing time.
+ */
+public final class ListingCache implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Shared caches by server URI (scheme://authority)
+    private static final ConcurrentMap<String, ListingCache> CACHES = new ConcurrentHashMap<>();
+
+    private final String serverUri;
+
+    // Time to live of a listing in ms, not positive value means no expiration
+    private final long ttl;
+
+    private final int maxEntries;
+
+    // Directory path -> listing, in access order
+    private transient LinkedHashMap<String, Listing> listings;
+
+    private ListingCache(String serverUri, long ttl, int maxEntries) {
+        this.serverUri = serverUri;
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.listings = newListings(maxEntries);
+    }
+
+    /**
+     * Returns the shared cache of the server, creates it if it doesn't exist.
+     * Limits of existing cache are not changed.
+     *
+     * @param uri        file system URI
+     * @param ttl        time to live of a listing in ms, 0 means no expiration
+     * @param maxEntries max number of cached directories
+     * @return shared listing cache of the server
+     */
+    public static ListingCache forServer(URI uri, long ttl, int maxEntries) {
+        String key = serverKey(uri);
+        return CACHES.computeIfAbsent(key, k -> new ListingCache(k, ttl, maxEntries));
+    }
+
+    /**
+     * Serializes the cache to a string which can be passed in the Hadoop
+     * configuration.
+     *
+     * @return compressed and Base64 encoded cache
+     * @throws IOException serialization problem
+     */
+    public String serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new GZIPOutputStream(bytes))) {
+            out.writeObject(this);
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Reads cache serialized by {@link #serialize()}.
+     *
+     * @param value serialized cache
+     * @return deserialized cache, not registered as the shared one
+     * @throws IOException value is not a serialized cache
+     */
+    public static ListingCache deserialize(String value) throws IOException {
+        byte[] bytes = Base64.getDecoder().decode(value);
+        try (ObjectInputStream in = new ObjectInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(bytes)))) {
+            return (ListingCache) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Invalid listing cache snapshot", e);
+        }
+    }
+
+    private static String serverKey(URI uri) {
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    /**
+     * Returns not expired listing of the directory.
+     *
+     * @param dir path of the directory
+     * @return content of the directory or null if not cached
+     */
+    public synchronized FileStatus[] get(String dir) {
+        Listing listing = listings.get(dir);
+        if (listing == null) {
+            return null;
+        }
+        if (isExpired(listing, System.currentTimeMillis())) {
+            listings.remove(dir);
+            return null;
+        }
+        return listing.files;
+    }
+
+    /**
+     * Stores complete listing of the directory.
+     *
+     * @param dir   path of the directory
+     * @param files content of the directory
+     */
+    public synchronized void put(String dir, FileStatus[] files) {
+        listings.put(dir, new Listing(files, System.currentTimeMillis()));
+    }
+
+    /**
+     * Removes listing of the directory.
+     *
+     * @param dir path of the directory
+     * @return true if the listing was cached
+     */
+    public synchronized boolean invalidate(String dir) {
+        return listings.remove(dir) != null;
+    }
+
+    public synchronized void clear() {
+        listings.clear();
+    }
+
+    public synchronized int size() {
+        return listings.size();
+    }
+
+    /**
+     * Adds not expired listings of other cache of the same server which are
+     * newer than the cached ones. Caches of other servers are ignored.
+     *
+     * @param other cache to take listings from, e.g. deserialized one
+     * @return true if the other cache belongs to the same server
+     */
+    public boolean merge(ListingCache other) {
+        if (!serverUri.equals(other.serverUri)) {
+            return false;
+        }
+        List<Map.Entry<String, Listing>> entries;
+        synchronized (other) {
+            entries = new ArrayList<>(other.listings.entrySet());
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (Map.Entry<String, Listing> e : entries) {
+                Listing current = listings.get(e.getKey());
+                if (!isExpired(e.getValue(), now)
+                        && (current == null || current.time < e.getValue().time)) {
+                    listings.put(e.getKey(), e.getValue());
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isExpired(Listing listing, long now) {
+        return ttl > 0 && now - listing.time > ttl;
+    }
+
+    private static LinkedHashMap<String, Listing> newListings(int maxEntries) {
+        return new LinkedHashMap<String, Listing>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // FileStatus is not Serializable in all supported Hadoop versions
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(listings.size());
+        for (Map.Entry<String, Listing> e : listings.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeLong(e.getValue().time);
+            out.writeInt(e.getValue().files.length);
+            for (FileStatus file : e.getValue().files) {
+                file.write(out);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        listings = newListings(maxEntries);
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            String dir = in.readUTF();
+            long time = in.readLong();
+            FileStatus[] files = new FileStatus[in.readInt()];
+            for (int j = 0; j < files.length; j++) {
+                files[j] = new FileStatus();
+                files[j].readFields(in);
+            }
+            listings.put(dir, new Listing(files, time));
+        }
+    }
+
+    private static final class Listing {
+
+        private final FileStatus[] files;
+
+        // When the directory was listed
+        private final long time;
+
+        private Listing(FileStatus[] files, long time) {
+            this.files = files;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.superior.datatunnel.hadoop.fs.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Input stream which reads the wrapped data stream ahead in background. Two
+ * buffers are reused for the whole transfer: while the caller consumes one of
+ * them the next chunk is read into the other one, so the data connection is
+ * drained continuously and the TCP window stays open even when the caller is
+ * slow (e.g. parsing). Reads of single bytes and small arrays are served from
+ * memory.
+ * <p>
+ * Errors of the background read are reported by the read call which needs the
+ * chunk. The stream is not thread safe, callers synchronize access.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(
+            ReadAheadInputStream.class);
+
+    private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+    // Shared by all streams, threads are created on demand and die when idle
+    private static final ExecutorService READ_AHEAD_POOL =
+            Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "ftp-read-ahead-" + THREAD_ID.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final InputStream in;
+
+    // Buffer consumed by the caller
+    private byte[] active;
+
+    // Buffer filled in background
+    private byte[] readAhead;
+
+    private int activePos;
+
+    private int activeLimit;
+
+    private Future<Integer> pending;
+
+    private boolean eof;
+
+    private boolean closed;
+
+    /**
+     * @param in        data stream to read ahead
+     * @param chunkSize size of each of the two buffers
+     */
+    public ReadAheadInputStream(InputStream in, int chunkSize) {
+        checkNotNull(in, ErrorStrings.E_NULL_INPUTSTREAM);
+        checkArgument(chunkSize > 0, "Read ahead chunk size must be positive");
+        this.in = in;
+        this.active = new byte[chunkSize];
+        this.readAhead = new byte[chunkSize];
+        final byte[] first = readAhead;
+        this.pending = READ_AHEAD_POOL.submit(() -> fill(first));
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkNotClosed();
+        if (activePos >= activeLimit && !nextChunk()) {
+            return -1;
+        }
+        return active[activePos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkNotClosed();
+        checkPositionIndexes(off, off + len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (activePos >= activeLimit && !nextChunk()) {
+            return -1;
+        }
+        int n = Math.min(len, activeLimit - activePos);
+        System.arraycopy(active, activePos, b, off, n);
+        activePos += n;
+        return n;
+    }
+
+    /**
+     * Skips the buffered data only, the rest is skipped by reading so the read
+     * ahead isn't interrupted.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        checkNotClosed();
+        if (n <= 0) {
+            return 0;
+        }
+        if (activePos >= activeLimit && !nextChunk()) {
+            return 0;
+        }
+        int skipped = (int) Math.min(n, activeLimit - activePos);
+        activePos += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkNotClosed();
+        return activeLimit - activePos;
+    }
+
+    /**
+     * Waits until the background read finishes, at most one chunk, and closes
+     * the wrapped stream. The wrapped stream isn't closed under the running
+     * read because not all data streams (e.g. SFTP) allow it.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (pending != null) {
+                pending.get();
+            }
+        } catch (ExecutionException e) {
+            LOG.debug("Read ahead failed before close", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pending = null;
+            in.close();
+        }
+    }
+
+    /**
+     * Swaps the buffers when the chunk read in background is ready and starts
+     * reading the following chunk.
+     *
+     * @return false at the end of the wrapped stream
+     * @throws IOException error of the background read
+     */
+    private boolean nextChunk() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (pending == null) {
+            throw new IOException("Read ahead failed, stream must be reopened");
+        }
+
+        int filled;
+        try {
+            filled = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for read ahead");
+        } catch (ExecutionException e) {
+            pending = null;
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+
+        byte[] tmp = active;
+        active = readAhead;
+        readAhead = tmp;
+        activePos = 0;
+        activeLimit = Math.max(filled, 0);
+
+        if (filled < active.length) {
+            // Short chunk means end of the wrapped stream
+            pending = null;
+            eof = true;
+            return filled > 0;
+        }
+        final byte[] buf = readAhead;
+        pending = READ_AHEAD_POOL.submit(() -> fill(buf));
+        return true;
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (closed) {
+            throw new IOException(ErrorStrings.E_STREAM_CLOSED);
+        }
+    }
+
+    /**
+     * Reads the wrapped stream until the buffer is full or the stream ends.
+     *
+     * @return number of bytes read
+     */
+    private int fill(byte[] buf) throws IOException {
+        int total = 0;
+        while (total < buf.length) {
+            int n = in.read(buf, total, buf.length - total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+}
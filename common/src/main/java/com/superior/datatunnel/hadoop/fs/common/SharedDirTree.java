@@ -0,0 +1,148 @@
+package com.superior.datatunnel.hadoop.fs.common;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * DirTree implementation backed by the shared {@link ListingCache} of the
+ * server. Unlike {@link CachedDirTree} the cached listings expire, the number
+ * of cached directories is bounded and the listings are shared by all file
+ * system instances of the server. Nodes are looked up in the listing of their
+ * parent directory; a directory node is completed while its own listing is
+ * cached.
+ */
+public class SharedDirTree implements DirTree {
+
+    private final ListingCache cache;
+
+    private final Node root;
+
+    public SharedDirTree(URI uri, ListingCache cache) {
+        this.cache = cache;
+        this.root = new Node(AbstractFTPFileSystem.getRootStatus(uri));
+    }
+
+    public ListingCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public INode addNode(Channel channel, Path p) throws IOException {
+        Path parent = p.getParent();
+        if (parent == null) {
+            return root;
+        }
+        FileStatus status = find(cache.get(key(parent)), p.getName());
+        if (status == null) {
+            // Not cached or listing out of date, list the parent directory again
+            HashSet<FileStatus> dirContentList = new HashSet<>();
+            status = channel.getFileStatus(p, dirContentList);
+            cache.put(key(parent), dirContentList.toArray(new FileStatus[0]));
+            if (status == null) {
+                throw new FileNotFoundException(String.format("File %s not found",
+                        p.toString()));
+            }
+        }
+        return new Node(status);
+    }
+
+    @Override
+    public INode findNode(Path p) throws FileNotFoundException {
+        Path parent = p.getParent();
+        if (parent == null) {
+            return root;
+        }
+        FileStatus[] siblings = cache.get(key(parent));
+        if (siblings == null) {
+            // Path was not found in the cache
+            return null;
+        }
+        FileStatus status = find(siblings, p.getName());
+        if (status == null) {
+            // Listing of the parent is complete so the file doesn't exist
+            throw new FileNotFoundException(String.format("File %s not found",
+                    p.toString()));
+        }
+        return new Node(status);
+    }
+
+    @Override
+    public boolean removeNode(Path p) {
+        boolean removed = cache.invalidate(key(p));
+        Path parent = p.getParent();
+        if (parent != null) {
+            removed |= cache.invalidate(key(parent));
+        }
+        return removed;
+    }
+
+    private static String key(Path p) {
+        return p.toUri().getPath();
+    }
+
+    private static FileStatus find(FileStatus[] files, String name) {
+        if (files != null) {
+            for (FileStatus file : files) {
+                if (file.getPath().getName().equals(name)) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    private final class Node implements INode {
+
+        private final FileStatus status;
+
+        private Node(FileStatus status) {
+            this.status = status;
+        }
+
+        @Override
+        public void addAll(FileStatus[] files) {
+            // If this node is not a directory than we can't add children to it
+            if (!status.isDirectory()) {
+                throw new IllegalStateException("The file can't contain other files: " +
+                        status.getPath());
+            }
+            cache.put(key(status.getPath()), files);
+        }
+
+        @Override
+        public Collection<INode> getChildren(Channel channel) throws IOException {
+            if (!status.isDirectory()) {
+                return Collections.emptySet();
+            }
+            FileStatus[] files = cache.get(key(status.getPath()));
+            if (files == null) {
+                files = channel.listFiles(status.getPath());
+                addAll(files);
+            }
+            List<INode> children = new ArrayList<>(files.length);
+            for (FileStatus file : files) {
+                children.add(new Node(file));
+            }
+            return Collections.unmodifiableCollection(children);
+        }
+
+        @Override
+        public FileStatus getStatus() {
+            return status;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return status.isFile() || cache.get(key(status.getPath())) != null;
+        }
+    }
+}
@@ -328,9 +328,9 @@ public class FTPChannel extends AbstractChannel {
         }
         boolean isDir = linkFile.isDirectory();
         int blockReplication = 1;
-        // Using default block size since there is no way in FTP channel to know of
-        // block sizes on server. The assumption could be less than ideal.
-        long blockSize = DEFAULT_BLOCK_SIZE;
+        // There is no way in FTP channel to know of block sizes on server, use
+        // configured logical block size so that large files can be split
+        long blockSize = getConnectionInfo().getBlockSize();
         long modTime = linkFile.getTimestamp().getTimeInMillis();
         long accessTime = 0;
         FsPermission permission = getPermissions(linkFile);
@@ -418,18 +418,9 @@ public class FTPChannel extends AbstractChannel {
     public FSDataInputStream get(FileStatus file,
                                  FileSystem.Statistics statistics) throws IOException {
         LOG.debug("Getting data stream for: " + file.getPath());
-        // Get the data stream
-        InputStream is = getDataStream(file);
-        if (is != null) {
-            // All extra handling is done in FTPInputStream
-            return new FSDataInputStream(
-                    new FTPInputStream(is, this, file, statistics));
-        } else {
-            LOG.error(getConnectionInfo().logWithInfo("Input stream for file: "
-                    + file.toString() + " not available"));
-            throw new IOException(String.format(ErrorStrings.E_CREATE_FILE,
-                    file.getPath()));
-        }
+        // Data stream is opened lazily in FTPInputStream, all extra handling is
+        // done there
+        return new FSDataInputStream(new FTPInputStream(this, file, statistics));
     }
 
     @Override
@@ -8,6 +8,7 @@ import java.util.HashSet;
 
 import com.superior.datatunnel.hadoop.fs.common.Channel;
 import com.superior.datatunnel.hadoop.fs.common.ErrorStrings;
+import com.superior.datatunnel.hadoop.fs.common.ReadAheadInputStream;
 import org.apache.hadoop.fs.FSInputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
@@ -28,6 +29,9 @@ class FTPInputStream extends FSInputStream {
 
     private static final Logger LOG = LoggerFactory.getLogger(FTPInputStream.class);
 
+    // Single byte reads are added to the statistics in batches of this size
+    static final int STATS_BATCH_SIZE = 64 * 1024;
+
     // Data stream
     private InputStream wrappedStream;
 
@@ -67,13 +71,21 @@ class FTPInputStream extends FSInputStream {
     // Communication channel to the remote server
     private FTPChannel channel;
 
-    FTPInputStream(InputStream stream, FTPChannel channel,
-                   FileStatus file, FileSystem.Statistics stats) throws IOException {
+    // Bytes buffered by the read ahead, they are read without network I/O
+    private int buffered;
+
+    // Bytes read by read() and not added to the statistics yet
+    private int unreportedBytes;
+
+    /**
+     * The data connection is opened on the first read so that a reader which
+     * seeks to the start of its split right after opening the file starts the
+     * transfer at the split offset (REST) instead of the beginning of the file.
+     */
+    FTPInputStream(FTPChannel channel, FileStatus file,
+                   FileSystem.Statistics stats) throws IOException {
 
-        LOG.info("Starting transfer of: {} length: {}", file.getPath(),
-                file.getLen());
-        checkNotNull(stream, ErrorStrings.E_NULL_INPUTSTREAM);
-        this.wrappedStream = stream;
+        this.wrappedStream = null;
         this.stats = stats;
 
         this.lastPos = 0;
@@ -104,9 +116,47 @@ class FTPInputStream extends FSInputStream {
             // We are already at requested position
             return;
         }
+        if (wrappedStream == null) {
+            // Transfer not started yet, it will start from the position
+            pos = position;
+            return;
+        }
         resetSeek(position);
     }
 
+    /**
+     * Start the transfer from the current position if it's not started yet.
+     *
+     * @throws IOException data connection not available
+     */
+    private void ensureOpen() throws IOException {
+        if (wrappedStream != null) {
+            return;
+        }
+        LOG.info("Starting transfer of: {} length: {} from position: {}",
+                file.getPath(), file.getLen(), pos);
+        if (pos > 0) {
+            channel.getNative().setRestartOffset(pos);
+        }
+        wrappedStream = openDataStream();
+        checkNotNull(wrappedStream, ErrorStrings.E_NULL_INPUTSTREAM);
+    }
+
+    /**
+     * Opens the data connection, wrapped in read ahead if configured.
+     *
+     * @return data stream or null if data connection is not available
+     * @throws IOException communication problem
+     */
+    private InputStream openDataStream() throws IOException {
+        InputStream is = channel.getDataStream(file);
+        int readAheadSize = channel.getConnectionInfo().getReadAheadSize();
+        if (is != null && readAheadSize > 0) {
+            return new ReadAheadInputStream(is, readAheadSize);
+        }
+        return is;
+    }
+
     /**
      * Restart transfer from given position.
      *
@@ -114,12 +164,13 @@ class FTPInputStream extends FSInputStream {
      * @throws IOException
      */
     private void resetSeek(long position) throws IOException {
+        buffered = 0;
         closeWrappedStream();
         channel = (FTPChannel) fs.connect();
         // This is how we specify that we want to continue transfer
         // from the exact position
         channel.getNative().setRestartOffset(position);
-        wrappedStream = channel.getDataStream(file);
+        wrappedStream = openDataStream();
         if (wrappedStream == null) {
             LOG.error(channel.getConnectionInfo()
                     .logWithInfo("Can't get data connection"));
@@ -133,7 +184,7 @@ class FTPInputStream extends FSInputStream {
         if (closed) {
             throw new IOException(ErrorStrings.E_STREAM_CLOSED);
         }
-        return wrappedStream.available();
+        return wrappedStream == null ? 0 : wrappedStream.available();
     }
 
     @Override
@@ -146,24 +197,37 @@ class FTPInputStream extends FSInputStream {
         return pos;
     }
 
+    /**
+     * Bytes buffered by the read ahead are returned without the keep alive and
+     * truncation checks, they are done when the next chunk is needed.
+     */
     @Override
     public synchronized int read() throws IOException {
+        if (buffered > 0 && !closed) {
+            buffered--;
+            pos++;
+            if (++unreportedBytes >= STATS_BATCH_SIZE) {
+                reportBytesRead();
+            }
+            return wrappedStream.read();
+        }
         try {
             if (closed) {
                 throw new IOException(ErrorStrings.E_STREAM_CLOSED);
             }
 
+            ensureOpen();
             int byteRead = wrappedStream.read();
             if (byteRead >= 0) {
                 pos++;
-            }
-            if (stats != null && byteRead >= 0) {
-                stats.incrementBytesRead(1);
-            }
-            if (byteRead == 0) {
-                LOG.debug("Waiting for more input:" + pos);
-            }
-            if (byteRead < 0) {
+                if (++unreportedBytes >= STATS_BATCH_SIZE) {
+                    reportBytesRead();
+                }
+                if (wrappedStream instanceof ReadAheadInputStream) {
+                    buffered = wrappedStream.available();
+                }
+            } else {
+                reportBytesRead();
                 LOG.debug("End of stream:" + pos);
             }
             keepAlive(byteRead);
@@ -189,13 +253,14 @@ class FTPInputStream extends FSInputStream {
                 throw new IOException(ErrorStrings.E_STREAM_CLOSED);
             }
 
+            ensureOpen();
+            buffered = 0;
             int result = wrappedStream.read(buf, off, len);
             if (result > 0) {
                 pos += result;
+                unreportedBytes += result;
             }
-            if (stats != null && result > 0) {
-                stats.incrementBytesRead(result);
-            }
+            reportBytesRead();
             if (result == 0) {
                 LOG.debug("Waiting for more input:" + pos);
             }
@@ -224,10 +289,19 @@ class FTPInputStream extends FSInputStream {
         }
 
         closed = true;
+        buffered = 0;
+        reportBytesRead();
         LOG.debug("Stream closed after reading : " + pos + " bytes");
         closeWrappedStream();
     }
 
+    private void reportBytesRead() {
+        if (stats != null && unreportedBytes > 0) {
+            stats.incrementBytesRead(unreportedBytes);
+        }
+        unreportedBytes = 0;
+    }
+
     /**
      * The control connection doesn't have to be necessarily closed when closing
      * data connection stream. This methods detects if the transfer was
@@ -237,10 +311,13 @@ class FTPInputStream extends FSInputStream {
      */
     private void closeWrappedStream() throws IOException {
         try {
-            // Can be null if data retry fails
-            if (wrappedStream != null) {
-                wrappedStream.close();
+            // Null if transfer was never started or data retry fails, there is no
+            // pending command to complete
+            if (wrappedStream == null) {
+                channel.disconnect(false);
+                return;
             }
+            wrappedStream.close();
             // Check if transfer was completed correctly
             boolean completed = channel.getNative().completePendingCommand();
             if (!completed) {
@@ -295,9 +295,9 @@ public class SFTPChannel extends AbstractChannel {
         long length = attr.getSize();
         boolean isDir = attr.isDir();
         int blockReplication = 1;
-        // Using default block size since there is no way in SFTP channel to know of
-        // block sizes on server. The assumption could be less than ideal.
-        long blockSize = DEFAULT_BLOCK_SIZE;
+        // There is no way in SFTP channel to know of block sizes on server, use
+        // configured logical block size so that large files can be split
+        long blockSize = getConnectionInfo().getBlockSize();
         // convert to milliseconds
         long modTime = attr.getMTime() * 1000L;
         long accessTime = attr.getATime() * 1000L;
@@ -402,21 +402,23 @@ public class SFTPChannel extends AbstractChannel {
     public FSDataInputStream get(FileStatus file,
                                  FileSystem.Statistics statistics) throws IOException {
         LOG.debug("Getting data stream for: " + file.getPath());
-        // Get the data stream
-        InputStream is = getDataStream(file);
-        if (is != null) {
-            // All extra handling is done in SFTPInputStream
-            return new FSDataInputStream(new SFTPInputStream(is, this, file, statistics));
-        } else {
-            throw new IOException(String.format(ErrorStrings.E_CREATE_FILE,
-                    file.getPath()));
-        }
+        // Data stream is opened lazily in SFTPInputStream at the first read
+        // position, all extra handling is done there
+        return new FSDataInputStream(new SFTPInputStream(this, file, statistics));
     }
 
     @Override
     public InputStream getDataStream(FileStatus file) throws IOException {
+        return getDataStream(file, 0);
+    }
+
+    /**
+     * Opens the data stream starting at the given offset, the server skips
+     * the leading bytes so ranged reads don't transfer them
+     */
+    public InputStream getDataStream(FileStatus file, long offset) throws IOException {
         try {
-            return client.get(file.getPath().toUri().getPath());
+            return client.get(file.getPath().toUri().getPath(), null, offset);
         } catch (SftpException ex) {
             throw new IOException(ex.toString(), ex);
         }
@@ -1,8 +1,11 @@
 package com.superior.datatunnel.hadoop.fs.sftp;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 
+import com.superior.datatunnel.hadoop.fs.common.ReadAheadInputStream;
+import org.apache.hadoop.fs.FSExceptionMessages;
 import org.apache.hadoop.fs.FSInputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
@@ -19,13 +22,28 @@ import static com.google.common.base.Preconditions.*;
  * disconnections, proxy glitches etc because we didn't come across any so far.
  * If the need will arise similar handling as in FTPChannel class should
  * probably be used
+ * <p>
+ * Seeks are positioned: short forward seeks are skipped on the open transfer,
+ * any other seek closes it and the next read reopens the file at the new
+ * offset, so the server doesn't send the skipped bytes. Positioned reads
+ * ({@link org.apache.hadoop.fs.PositionedReadable}) open the file directly at
+ * the requested offset.
  */
 class SFTPInputStream extends FSInputStream {
 
     private static final Logger LOG = LoggerFactory.getLogger(
             SFTPInputStream.class);
 
-    // Data stream
+    /**
+     * Forward seeks up to this distance read through the open transfer, it's
+     * cheaper than reopening the remote file
+     */
+    static final long SEEK_SKIP_THRESHOLD = 64 * 1024;
+
+    // Single byte reads are added to the statistics in batches of this size
+    static final int STATS_BATCH_SIZE = 64 * 1024;
+
+    // Data stream, opened lazily at the current position
     private InputStream wrappedStream;
 
     private final FileSystem.Statistics stats;
@@ -43,11 +61,13 @@ class SFTPInputStream extends FSInputStream {
     // Communication channel to the remote server
     private SFTPChannel channel;
 
-    SFTPInputStream(InputStream stream, SFTPChannel channel,
-                    FileStatus file, FileSystem.Statistics stats) throws IOException {
+    // Bytes read by read() and not added to the statistics yet
+    private int unreportedBytes;
 
-        checkNotNull(stream, E_NULL_INPUTSTREAM);
-        this.wrappedStream = stream;
+    SFTPInputStream(SFTPChannel channel, FileStatus file,
+                    FileSystem.Statistics stats) throws IOException {
+
+        this.wrappedStream = null;
         this.stats = stats;
 
         this.pos = 0;
@@ -60,9 +80,26 @@ class SFTPInputStream extends FSInputStream {
     }
 
     @Override
-    public void seek(long position) throws IOException {
-        this.wrappedStream.skip(position);
-        this.pos = position;
+    public synchronized void seek(long position) throws IOException {
+        checkNotClosed();
+        if (position < 0) {
+            throw new EOFException(FSExceptionMessages.NEGATIVE_SEEK);
+        }
+        if (position == pos) {
+            return;
+        }
+
+        long distance = position - pos;
+        if (wrappedStream != null && distance > 0 && distance <= SEEK_SKIP_THRESHOLD) {
+            skipFully(distance);
+            if (pos == position) {
+                return;
+            }
+        }
+
+        // Backward or long forward seek, reopen at the new position on next read
+        closeWrappedStream();
+        pos = position;
     }
 
     @Override
@@ -71,22 +108,29 @@ class SFTPInputStream extends FSInputStream {
     }
 
     @Override
-    public long getPos() throws IOException {
+    public synchronized long getPos() throws IOException {
         return pos;
     }
 
+    @Override
+    public synchronized int available() throws IOException {
+        checkNotClosed();
+        return wrappedStream == null ? 0 : wrappedStream.available();
+    }
+
     @Override
     public synchronized int read() throws IOException {
-        if (closed) {
-            throw new IOException(E_STREAM_CLOSED);
-        }
+        checkNotClosed();
+        ensureOpen();
 
         int byteRead = wrappedStream.read();
         if (byteRead >= 0) {
             pos++;
-        }
-        if (stats != null && byteRead >= 0) {
-            stats.incrementBytesRead(1);
+            if (++unreportedBytes >= STATS_BATCH_SIZE) {
+                reportBytesRead();
+            }
+        } else {
+            reportBytesRead();
         }
         return byteRead;
     }
@@ -94,28 +138,83 @@ class SFTPInputStream extends FSInputStream {
     @Override
     public synchronized int read(byte[] buf, int off, int len)
             throws IOException {
-        if (closed) {
-            throw new IOException(E_STREAM_CLOSED);
+        checkNotClosed();
+        if (len == 0) {
+            return 0;
         }
+        ensureOpen();
 
         int result = wrappedStream.read(buf, off, len);
         if (result > 0) {
             pos += result;
+            unreportedBytes += result;
         }
-        if (stats != null && result > 0) {
-            stats.incrementBytesRead(result);
-        }
+        reportBytesRead();
 
         return result;
     }
 
+    /**
+     * Reads from the given offset without changing the current position. The
+     * sequential transfer is closed first because the channel can't serve two
+     * transfers at once, it is reopened at the current position on next read.
+     */
+    @Override
+    public synchronized int read(long position, byte[] buf, int off, int len)
+            throws IOException {
+        checkNotClosed();
+        if (position < 0) {
+            throw new EOFException(FSExceptionMessages.NEGATIVE_SEEK);
+        }
+        checkNotNull(buf);
+        if (off < 0 || len < 0 || len > buf.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= realLength) {
+            return -1;
+        }
+
+        closeWrappedStream();
+        InputStream in = channel.getDataStream(file, position);
+        checkNotNull(in, E_NULL_INPUTSTREAM);
+        try {
+            int total = 0;
+            while (total < len) {
+                int result = in.read(buf, off + total, len - total);
+                if (result < 0) {
+                    break;
+                }
+                total += result;
+            }
+            if (stats != null && total > 0) {
+                stats.incrementBytesRead(total);
+            }
+            return total == 0 ? -1 : total;
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public void readFully(long position, byte[] buf, int off, int len)
+            throws IOException {
+        int result = read(position, buf, off, len);
+        if (len > 0 && result < len) {
+            throw new EOFException(FSExceptionMessages.EOF_IN_READ_FULLY);
+        }
+    }
+
     @Override
     public synchronized void close() throws IOException {
         if (closed) {
             return;
         }
+        reportBytesRead();
         try {
-            wrappedStream.close();
+            closeWrappedStream();
             closed = true;
             //channel.disconnect(false);
             channel.destroy();
@@ -124,4 +223,59 @@ class SFTPInputStream extends FSInputStream {
             channel.disconnect(true);
         }
     }
+
+    /**
+     * Opens the data stream at the current position, a split reading only its
+     * own range of the file starts the transfer at the split offset. The stream
+     * is read ahead in background if configured.
+     */
+    private void ensureOpen() throws IOException {
+        if (wrappedStream == null) {
+            LOG.debug("Opening {} at position: {}", file.getPath(), pos);
+            InputStream in = channel.getDataStream(file, pos);
+            checkNotNull(in, E_NULL_INPUTSTREAM);
+            int readAheadSize = channel.getConnectionInfo().getReadAheadSize();
+            wrappedStream = readAheadSize > 0
+                    ? new ReadAheadInputStream(in, readAheadSize) : in;
+        }
+    }
+
+    private void closeWrappedStream() throws IOException {
+        if (wrappedStream != null) {
+            InputStream in = wrappedStream;
+            wrappedStream = null;
+            in.close();
+        }
+    }
+
+    /**
+     * Skips on the open transfer, stops early at end of stream so the caller
+     * can fall back to reopening at the requested position.
+     */
+    private void skipFully(long n) throws IOException {
+        while (n > 0) {
+            long skipped = wrappedStream.skip(n);
+            if (skipped <= 0) {
+                if (wrappedStream.read() < 0) {
+                    return;
+                }
+                skipped = 1;
+            }
+            pos += skipped;
+            n -= skipped;
+        }
+    }
+
+    private void reportBytesRead() {
+        if (stats != null && unreportedBytes > 0) {
+            stats.incrementBytesRead(unreportedBytes);
+        }
+        unreportedBytes = 0;
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (closed) {
+            throw new IOException(E_STREAM_CLOSED);
+        }
+    }
 }
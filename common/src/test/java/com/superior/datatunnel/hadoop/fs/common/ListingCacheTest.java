@@ -0,0 +1,93 @@
+package com.superior.datatunnel.hadoop.fs.common;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import java.net.URI;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ListingCacheTest {
+
+    private static FileStatus[] files(String dir, String... names) {
+        FileStatus[] files = new FileStatus[names.length];
+        for (int i = 0; i < names.length; i++) {
+            files[i] = new FileStatus(10 + i, false, 1, 128, 1000 + i,
+                    new Path("ftp://host" + dir + "/" + names[i]));
+        }
+        return files;
+    }
+
+    @Test
+    public void testSharedByServer() {
+        ListingCache cache = ListingCache.forServer(URI.create("ftp://shared:21/a"), 60000, 10);
+        assertSame(cache, ListingCache.forServer(URI.create("ftp://shared:21/b"), 1000, 1));
+        assertTrue(cache != ListingCache.forServer(URI.create("sftp://shared:21/a"), 60000, 10));
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        ListingCache cache = ListingCache.forServer(URI.create("ftp://ttl"), 50, 10);
+        cache.put("/dir", files("/dir", "a.csv"));
+        assertNotNull(cache.get("/dir"));
+        Thread.sleep(100);
+        assertNull(cache.get("/dir"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        ListingCache cache = ListingCache.forServer(URI.create("ftp://lru"), 60000, 2);
+        cache.put("/a", files("/a", "1"));
+        cache.put("/b", files("/b", "1"));
+        // /a is used after /b, so /b is evicted
+        assertNotNull(cache.get("/a"));
+        cache.put("/c", files("/c", "1"));
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("/a"));
+        assertNull(cache.get("/b"));
+        assertNotNull(cache.get("/c"));
+
+        assertTrue(cache.invalidate("/a"));
+        assertFalse(cache.invalidate("/a"));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        ListingCache cache = ListingCache.forServer(URI.create("ftp://serialization"), 60000, 10);
+        FileStatus[] files = files("/dir", "a.csv", "b.csv");
+        cache.put("/dir", files);
+        String snapshot = cache.serialize();
+
+        cache.clear();
+        assertTrue(cache.merge(ListingCache.deserialize(snapshot)));
+        assertArrayEquals(files, cache.get("/dir"));
+        assertEquals(files[1].getLen(), cache.get("/dir")[1].getLen());
+        assertEquals(files[1].getModificationTime(), cache.get("/dir")[1].getModificationTime());
+
+        // listings of another server are not loaded
+        ListingCache other = ListingCache.forServer(URI.create("ftp://other"), 60000, 10);
+        assertFalse(other.merge(ListingCache.deserialize(snapshot)));
+        assertNull(other.get("/dir"));
+    }
+
+    @Test
+    public void testMergeKeepsNewerListing() throws Exception {
+        ListingCache cache = ListingCache.forServer(URI.create("ftp://merge"), 60000, 10);
+        cache.put("/dir", files("/dir", "old.csv"));
+        ListingCache snapshot = ListingCache.deserialize(cache.serialize());
+        Thread.sleep(5);
+        FileStatus[] current = files("/dir", "new.csv");
+        cache.put("/dir", current);
+
+        cache.merge(snapshot);
+        assertArrayEquals(current, cache.get("/dir"));
+    }
+}
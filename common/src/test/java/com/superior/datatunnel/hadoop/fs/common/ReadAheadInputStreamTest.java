@@ -0,0 +1,145 @@
+package com.superior.datatunnel.hadoop.fs.common;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReadAheadInputStreamTest {
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[bufferSize];
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) >= 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Stream which fails after the given number of bytes and records close.
+     */
+    private static class TestStream extends ByteArrayInputStream {
+
+        private final int failAt;
+
+        private boolean closed;
+
+        TestStream(byte[] data, int failAt) {
+            super(data);
+            this.failAt = failAt;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            if (pos >= failAt) {
+                throw new IllegalStateException("connection reset");
+            }
+            return super.read(b, off, Math.min(len, failAt - pos));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void testReadToEndOfStream() throws IOException {
+        // Last chunk is short, full chunks and empty stream
+        for (int length : new int[]{10, 8, 4, 0}) {
+            byte[] data = data(length);
+            try (ReadAheadInputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), 4)) {
+                assertArrayEquals(data, readAll(in, 3));
+                assertEquals(-1, in.read());
+                assertEquals(-1, in.read(new byte[1], 0, 1));
+            }
+        }
+    }
+
+    @Test
+    public void testSingleByteReads() throws IOException {
+        byte[] data = data(9);
+        try (ReadAheadInputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), 4)) {
+            for (byte b : data) {
+                assertEquals(b & 0xff, in.read());
+            }
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testSkipAndAvailable() throws IOException {
+        try (ReadAheadInputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data(10)), 4)) {
+            assertEquals(0, in.available());
+            assertEquals(0, in.read());
+            assertEquals(3, in.available());
+            // Only the buffered bytes are skipped
+            assertEquals(3, in.skip(10));
+            assertEquals(4, in.read());
+            assertEquals(0, in.skip(0));
+        }
+    }
+
+    @Test
+    public void testBackgroundReadError() throws IOException {
+        TestStream stream = new TestStream(data(10), 6);
+        ReadAheadInputStream in = new ReadAheadInputStream(stream, 4);
+        byte[] buf = new byte[4];
+        assertEquals(4, in.read(buf, 0, 4));
+        // Second chunk fails after 2 bytes, the error is reported when it's needed
+        try {
+            in.read();
+            fail("error of the background read expected");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        try {
+            in.read();
+            fail("stream can't be read after error");
+        } catch (IOException e) {
+            assertEquals("Read ahead failed, stream must be reopened", e.getMessage());
+        }
+        in.close();
+        assertTrue(stream.closed);
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        TestStream stream = new TestStream(data(10), 10);
+        ReadAheadInputStream in = new ReadAheadInputStream(stream, 4);
+        assertEquals(0, in.read());
+        in.close();
+        assertTrue(stream.closed);
+        // Second close does nothing
+        in.close();
+        try {
+            in.read(new byte[4], 0, 4);
+            fail("closed stream can't be read");
+        } catch (IOException e) {
+            assertEquals(ErrorStrings.E_STREAM_CLOSED, e.getMessage());
+        }
+        try {
+            in.available();
+            fail("closed stream can't be read");
+        } catch (IOException e) {
+            assertEquals(ErrorStrings.E_STREAM_CLOSED, e.getMessage());
+        }
+    }
+}
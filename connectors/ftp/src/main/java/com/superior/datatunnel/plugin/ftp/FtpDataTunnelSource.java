@@ -5,12 +5,15 @@ import com.superior.datatunnel.api.DataTunnelException;
 import com.superior.datatunnel.api.DataTunnelSource;
 import com.superior.datatunnel.api.model.DataTunnelSourceOption;
 import com.superior.datatunnel.common.enums.FileFormat;
+import com.superior.datatunnel.hadoop.fs.common.AbstractFTPFileSystem;
 import com.superior.datatunnel.hadoop.fs.ftp.FTPFileSystem;
 import com.superior.datatunnel.hadoop.fs.sftp.SFTPFileSystem;
 import com.superior.datatunnel.plugin.ftp.enums.AuthType;
 import com.superior.datatunnel.plugin.ftp.enums.FtpProtocol;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.spark.sql.DataFrameReader;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
@@ -100,7 +103,19 @@ public class FtpDataTunnelSource implements DataTunnelSource {
         } else {
             path = "ftp://" + path;
         }
-        return reader.load(path);
+
+        // 开启目录缓存时，driver 端并行预取目录列表，并通过 hadoop 配置把列表传给 executor
+        FileSystem fileSystem = new Path(path).getFileSystem(hadoopConf);
+        AbstractFTPFileSystem ftpFileSystem = fileSystem instanceof AbstractFTPFileSystem
+                ? (AbstractFTPFileSystem) fileSystem : null;
+        if (ftpFileSystem != null && !StringUtils.containsAny(sourceOption.getFilePath(), "*?[{")) {
+            ftpFileSystem.prefetchListings(new Path(path), Integer.MAX_VALUE);
+        }
+        Dataset<Row> dataset = reader.load(path);
+        if (ftpFileSystem != null) {
+            ftpFileSystem.shareListingCache(hadoopConf);
+        }
+        return dataset;
     }
 
     @Override
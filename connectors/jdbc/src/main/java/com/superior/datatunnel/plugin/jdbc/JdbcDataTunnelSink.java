@@ -37,6 +37,11 @@ public class JdbcDataTunnelSink implements DataTunnelSink {
         if (!DataSourceType.isJdbcDataSource(dsType)) {
             throw new IllegalArgumentException("不支持数据源类型: " + dsType);
         }
+
+        JdbcDataTunnelSinkOption sinkOption = (JdbcDataTunnelSinkOption) context.getSinkOption();
+        if (sinkOption.getMaxConnections() != null && sinkOption.getMaxConnections() <= 0) {
+            throw new IllegalArgumentException("maxConnections 必须大于 0");
+        }
     }
 
     @Override
@@ -117,7 +122,13 @@ public class JdbcDataTunnelSink implements DataTunnelSink {
                     .option("password", password)
                     .option("writeMode", writeMode.name().toLowerCase())
                     .option("dataSourceType", dataSourceType.name())
-                    .option("isolationLevel", sinkOption.getIsolationLevel());
+                    .option("isolationLevel", sinkOption.getIsolationLevel())
+                    .option("bulkLoad", sinkOption.isBulkLoad())
+                    .option("multiRowInsert", sinkOption.isMultiRowInsert());
+
+            if (sinkOption.getMaxConnections() != null) {
+                dataFrameWriter.option("maxConnections", sinkOption.getMaxConnections());
+            }
 
             dataFrameWriter.save();
 
@@ -55,6 +55,15 @@ public class JdbcDataTunnelSinkOption extends BaseSinkOption {
 
     private String isolationLevel = "READ_UNCOMMITTED";
 
+    @OptionDesc("使用数据库批量导入协议写入: postgresql COPY FROM STDIN, mysql LOAD DATA LOCAL INFILE(需要服务端开启 local_infile，主键冲突、截断等按 IGNORE 处理，出现 warning 或者导入记录数不一致时写入失败)。upsert 模式或者不支持的数据库使用 INSERT 批量写入")
+    private boolean bulkLoad = false;
+
+    @OptionDesc("mysql、postgresql 使用多行 VALUES 语句写入，每条语句行数受 batchsize、参数数量上限和 max_allowed_packet 限制")
+    private boolean multiRowInsert = false;
+
+    @OptionDesc("整个作业同时写入的最大连接数(写入分区合并到该数量)，默认不限制。每个 executor 的并发上限为 maxConnections 除以 executor 数量，根据写入耗时和 too many connections 错误自动降低并发")
+    private Integer maxConnections;
+
     public String getFullTableName() {
         return databaseName + "." + tableName;
     }
@@ -1,10 +1,13 @@
 package com.superior.datatunnel.plugin.jdbc;
 
 import com.clearspring.analytics.util.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.superior.datatunnel.api.*;
 import com.superior.datatunnel.api.model.DataTunnelSourceOption;
 import com.superior.datatunnel.common.util.CommonUtils;
 import com.superior.datatunnel.common.util.JdbcUtils;
+import com.superior.datatunnel.plugin.jdbc.enums.SplitStrategy;
 import com.superior.datatunnel.plugin.jdbc.support.JdbcDialectUtils;
 import com.superior.datatunnel.plugin.jdbc.support.dialect.DatabaseDialect;
 import io.github.melin.jobserver.spark.api.LogUtils;
@@ -12,6 +15,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.spark.sql.*;
+import org.apache.spark.sql.datatunnel.jdbc.ShardedJdbcRelation;
 import org.apache.spark.sql.execution.datasources.jdbc.JDBCOptions;
 import org.apache.spark.sql.jdbc.JdbcDialect;
 import org.apache.spark.sql.jdbc.JdbcDialects;
@@ -25,9 +29,18 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * @author melin 2021/7/27 11:06 上午O
@@ -42,6 +55,12 @@ public class JdbcDataTunnelSource implements DataTunnelSource {
         if (!DataSourceType.isJdbcDataSource(dsType)) {
             throw new IllegalArgumentException("不支持数据源类型: " + dsType);
         }
+
+        JdbcDataTunnelSourceOption sourceOption = (JdbcDataTunnelSourceOption) context.getSourceOption();
+        if (StringUtils.isNotBlank(sourceOption.getIncrementalColumn())
+                && StringUtils.isBlank(sourceOption.getCheckpointLocation())) {
+            throw new IllegalArgumentException("incrementalColumn 不为空时，checkpointLocation 不能为空");
+        }
     }
 
     @Override
@@ -73,7 +92,6 @@ public class JdbcDataTunnelSource implements DataTunnelSource {
             schemaName = sourceOption.getDatabaseName();
         }
         String tableName = sourceOption.getTableName();
-        String[] columns = sourceOption.getColumns();
 
         String jdbcUrl = sourceOption.getJdbcUrl();
         if (StringUtils.isBlank(jdbcUrl)) {
@@ -92,61 +110,161 @@ public class JdbcDataTunnelSource implements DataTunnelSource {
             throw new DataTunnelException("没有找到匹配的表, schemaName: " + schemaName + ", tableName: " + tableName);
         }
 
-        Dataset<Row> dataset = null;
-        for (int i = 0, len = tableNames.size(); i < len; i++) {
-            Pair<String, String> pair = tableNames.get(i);
-            String fullTableName = pair.getLeft() + "." + pair.getRight();
-            statTable(connection, sourceOption, fullTableName);
-
-            if (columns.length > 1 || (columns.length == 1 && !"*".equals(columns[0]))) {
-                String condition = StringUtils.trim(sourceOption.getCondition());
-                if (StringUtils.isNotBlank(condition)) {
-                    if (StringUtils.startsWithIgnoreCase(condition, "where")) {
-                        fullTableName = "(SELECT " + StringUtils.join(columns, ",") + " FROM " + fullTableName + " " + condition + ") tdl_datatunnel";
-                    } else {
-                        fullTableName = "(SELECT " + StringUtils.join(columns, ",") + " FROM " + fullTableName + " where " + condition + ") tdl_datatunnel";
-                    }
-                } else {
-                    fullTableName = "(SELECT " + StringUtils.join(columns, ",") + " FROM " + fullTableName + ") tdl_datatunnel";
+        JdbcWatermarkCheckpoint checkpoint = null;
+        Map<String, String> watermarks = Collections.emptyMap();
+        if (StringUtils.isNotBlank(sourceOption.getIncrementalColumn())) {
+            checkpoint = new JdbcWatermarkCheckpoint(context.getSparkSession(), sourceOption.getCheckpointLocation());
+            watermarks = checkpoint.getWatermarks();
+        }
+
+        List<JdbcTableSplit> splits;
+        try {
+            splits = planTableSplits(jdbcUrl, options, connection, sourceOption, tableNames, watermarks);
+        } finally {
+            JdbcUtils.close(connection);
+        }
+
+        // sink 写入成功后，在 commit 中提交
+        if (checkpoint != null) {
+            Map<String, String> newWatermarks = Maps.newHashMap(watermarks);
+            for (JdbcTableSplit split : splits) {
+                if (split.getWatermark() != null) {
+                    newWatermarks.put(split.getTableName(), split.getWatermark());
                 }
             }
+            checkpoint.writePending(newWatermarks);
+        }
 
-            int fetchsize = sourceOption.getFetchsize();
-            int queryTimeout = sourceOption.getQueryTimeout();
-            String username = sourceOption.getUsername();
-            String password = sourceOption.getPassword();
-
-            DataFrameReader reader = context.getSparkSession().read()
-                    .format("jdbc")
-                    .options(sourceOption.getProperties())
-                    .option("url", jdbcUrl)
-                    .option("dbtable", fullTableName)
-                    .option("fetchsize", fetchsize)
-                    .option("queryTimeout", queryTimeout)
-                    .option("user", username)
-                    .option("password", password)
-                    .option("pushDownPredicate", sourceOption.isPushDownPredicate())
-                    .option("pushDownAggregate", sourceOption.isPushDownAggregate())
-                    .option("pushDownLimit", sourceOption.isPushDownLimit());
-
-            if (StringUtils.isNotBlank(sourceOption.getPartitionColumn())) {
-                reader.option("partitionColumn", sourceOption.getPartitionColumn())
-                        .option("numPartitions", sourceOption.getNumPartitions())
-                        .option("lowerBound", sourceOption.getLowerBound())
-                        .option("upperBound", sourceOption.getUpperBound());
-            }
+        Map<String, String> readOptions = Maps.newHashMap(sourceOption.getProperties());
+        readOptions.put("url", jdbcUrl);
+        readOptions.put("fetchsize", String.valueOf(sourceOption.getFetchsize()));
+        readOptions.put("queryTimeout", String.valueOf(sourceOption.getQueryTimeout()));
+        readOptions.put("user", sourceOption.getUsername());
+        readOptions.put("password", sourceOption.getPassword());
+        readOptions.put("pushDownPredicate", String.valueOf(sourceOption.isPushDownPredicate()));
+        readOptions.put("pushDownAggregate", String.valueOf(sourceOption.isPushDownAggregate()));
+        readOptions.put("pushDownLimit", String.valueOf(sourceOption.isPushDownLimit()));
+
+        // 分表场景，所有表的切片合并为一个扫描节点
+        if (splits.size() > 1) {
+            return ShardedJdbcRelation.createDataFrame(context.getSparkSession(), readOptions, splits);
+        }
+
+        JdbcTableSplit split = splits.get(0);
+        DataFrameReader reader = context.getSparkSession().read()
+                .format("jdbc")
+                .options(readOptions);
+
+        if (split.getPredicates() != null) {
+            return reader.jdbc(jdbcUrl, split.getDbtable(), split.getPredicates(), new Properties());
+        }
+
+        reader.option("dbtable", split.getDbtable());
+        if (StringUtils.isNotBlank(split.getPartitionColumn())) {
+            reader.option("partitionColumn", split.getPartitionColumn())
+                    .option("numPartitions", split.getNumPartitions())
+                    .option("lowerBound", split.getLowerBound())
+                    .option("upperBound", split.getUpperBound());
+        }
+        return reader.load();
+    }
+
+    private List<JdbcTableSplit> planTableSplits(
+            String jdbcUrl,
+            JDBCOptions options,
+            Connection connection,
+            JdbcDataTunnelSourceOption sourceOption,
+            List<Pair<String, String>> tableNames,
+            Map<String, String> watermarks) {
+
+        if (tableNames.size() == 1) {
+            return Collections.singletonList(planTableSplit(connection, sourceOption, tableNames.get(0), watermarks));
+        }
+
+        // 分表场景，多个连接并发统计表数据，连接数量不超过 statParallelism
+        int parallelism = Math.max(1, Math.min(sourceOption.getStatParallelism(), tableNames.size()));
+        LogUtils.info("matched {} tables, stat parallelism: {}", tableNames.size(), parallelism);
 
-            Dataset<Row> result = reader.load();
+        BlockingQueue<Connection> connections = new LinkedBlockingQueue<>();
+        connections.add(connection);
+        List<Connection> newConnections = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("jdbc-stat-table-%d").setDaemon(true).build());
+        try {
+            List<Future<JdbcTableSplit>> futures = Lists.newArrayList();
+            for (Pair<String, String> pair : tableNames) {
+                futures.add(executor.submit(() -> {
+                    Connection conn = connections.poll();
+                    if (conn == null) {
+                        conn = buildConnection(jdbcUrl, options);
+                        newConnections.add(conn);
+                    }
+                    try {
+                        return planTableSplit(conn, sourceOption, pair, watermarks);
+                    } finally {
+                        connections.add(conn);
+                    }
+                }));
+            }
 
-            if (i == 0) {
-                dataset = result;
-            } else  {
-                dataset = dataset.unionAll(result);
+            List<JdbcTableSplit> splits = Lists.newArrayList();
+            for (Future<JdbcTableSplit> future : futures) {
+                splits.add(future.get());
             }
+            return splits;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DataTunnelException) {
+                throw (DataTunnelException) cause;
+            }
+            throw new DataTunnelException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataTunnelException("stat tables interrupted", e);
+        } finally {
+            executor.shutdownNow();
+            newConnections.forEach(JdbcUtils::close);
         }
+    }
 
-        JdbcUtils.close(connection);
-        return dataset;
+    private JdbcTableSplit planTableSplit(
+            Connection conn,
+            JdbcDataTunnelSourceOption sourceOption,
+            Pair<String, String> pair,
+            Map<String, String> watermarks) {
+
+        String fullTableName = pair.getLeft() + "." + pair.getRight();
+        JdbcTableSplit split = new JdbcTableSplit(fullTableName, buildDbtable(fullTableName, sourceOption));
+
+        if (StringUtils.isNotBlank(sourceOption.getIncrementalColumn())) {
+            JdbcIncrementalPlanner.planPredicates(conn, sourceOption.getDataSourceType(), fullTableName,
+                    sourceOption, watermarks.get(fullTableName), split);
+        } else if (SplitStrategy.SAMPLE == sourceOption.getSplitStrategy()
+                && StringUtils.isNotBlank(sourceOption.getPartitionColumn())) {
+            split.setPredicates(JdbcSplitPlanner.planPredicates(
+                    conn, sourceOption.getDataSourceType(), pair.getLeft(), pair.getRight(), sourceOption));
+        }
+        if (split.getPredicates() == null) {
+            statTable(conn, sourceOption, fullTableName, split);
+        }
+        return split;
+    }
+
+    private String buildDbtable(String fullTableName, JdbcDataTunnelSourceOption sourceOption) {
+        String[] columns = sourceOption.getColumns();
+        if (columns.length > 1 || (columns.length == 1 && !"*".equals(columns[0]))) {
+            String condition = StringUtils.trim(sourceOption.getCondition());
+            if (StringUtils.isNotBlank(condition)) {
+                if (StringUtils.startsWithIgnoreCase(condition, "where")) {
+                    return "(SELECT " + StringUtils.join(columns, ",") + " FROM " + fullTableName + " " + condition + ") tdl_datatunnel";
+                } else {
+                    return "(SELECT " + StringUtils.join(columns, ",") + " FROM " + fullTableName + " where " + condition + ") tdl_datatunnel";
+                }
+            } else {
+                return "(SELECT " + StringUtils.join(columns, ",") + " FROM " + fullTableName + ") tdl_datatunnel";
+            }
+        }
+        return fullTableName;
     }
 
     private List<String> getSchemaNames(String schemaName, DatabaseDialect dialect) {
@@ -208,7 +326,8 @@ public class JdbcDataTunnelSource implements DataTunnelSource {
         }
     }
 
-    private void statTable(Connection conn, JdbcDataTunnelSourceOption sourceOption, String table) {
+    private void statTable(
+            Connection conn, JdbcDataTunnelSourceOption sourceOption, String table, JdbcTableSplit split) {
         PreparedStatement stmt = null;
         try {
             String partitionColumn = sourceOption.getPartitionColumn();
@@ -217,6 +336,11 @@ public class JdbcDataTunnelSource implements DataTunnelSource {
             Integer numPartitions = sourceOption.getNumPartitions();
             Integer partitionRecordCount = sourceOption.getPartitionRecordCount();
 
+            split.setPartitionColumn(partitionColumn);
+            split.setLowerBound(lowerBound);
+            split.setUpperBound(upperBound);
+            split.setNumPartitions(numPartitions);
+
             // 如果用户指定分区参数，不需要再统计，大表统计比较耗时
             if (StringUtils.isNotBlank(partitionColumn)
                     && StringUtils.isNotBlank(lowerBound)
@@ -235,7 +359,7 @@ public class JdbcDataTunnelSource implements DataTunnelSource {
 
             String condition = StringUtils.trim(sourceOption.getCondition());
             if (StringUtils.isNotBlank(condition)) {
-                if (StringUtils.startsWithIgnoreCase(condition, condition)) {
+                if (StringUtils.startsWithIgnoreCase(condition, "where")) {
                     sql = sql + " " + condition;
                 } else {
                     sql = sql + " where " + condition;
@@ -265,13 +389,13 @@ public class JdbcDataTunnelSource implements DataTunnelSource {
                     String minValue = String.valueOf(resultSet.getObject("min_value"));
                     LOG.info("table {} min value: {}", table, minValue);
                     LogUtils.info("table {} min value: {}", table, minValue);
-                    sourceOption.setLowerBound(minValue);
+                    split.setLowerBound(minValue);
                 }
                 if (StringUtils.isBlank(upperBound)) {
                     String maxValue = String.valueOf(resultSet.getObject("max_value"));
                     LOG.info("table {} max value: {}", table, maxValue);
                     LogUtils.info("table {} max value: {}", table, maxValue);
-                    sourceOption.setUpperBound(maxValue);
+                    split.setUpperBound(maxValue);
                 }
             }
 
@@ -282,9 +406,9 @@ public class JdbcDataTunnelSource implements DataTunnelSource {
                 numPartitions = 1;
             }
 
-            sourceOption.setNumPartitions(numPartitions);
-            LogUtils.info("lowerBound: {}, upperBound: {}, numPartitions: {}",
-                    sourceOption.getLowerBound(), sourceOption.getUpperBound(), numPartitions);
+            split.setNumPartitions(numPartitions);
+            LogUtils.info("table {} lowerBound: {}, upperBound: {}, numPartitions: {}",
+                    table, split.getLowerBound(), split.getUpperBound(), numPartitions);
         } catch (SQLException e) {
             throw new DataTunnelException(e.getMessage(), e);
         } finally {
@@ -292,6 +416,14 @@ public class JdbcDataTunnelSource implements DataTunnelSource {
         }
     }
 
+    @Override
+    public void commit(DataTunnelContext context) {
+        JdbcDataTunnelSourceOption sourceOption = (JdbcDataTunnelSourceOption) context.getSourceOption();
+        if (StringUtils.isNotBlank(sourceOption.getIncrementalColumn())) {
+            new JdbcWatermarkCheckpoint(context.getSparkSession(), sourceOption.getCheckpointLocation()).commit();
+        }
+    }
+
     @Override
     public Class<? extends DataTunnelSourceOption> getOptionClass() {
         return JdbcDataTunnelSourceOption.class;
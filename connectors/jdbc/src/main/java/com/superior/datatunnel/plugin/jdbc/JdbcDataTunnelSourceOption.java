@@ -2,6 +2,7 @@ package com.superior.datatunnel.plugin.jdbc;
 
 import com.superior.datatunnel.api.model.BaseSourceOption;
 import com.superior.datatunnel.common.annotation.OptionDesc;
+import com.superior.datatunnel.plugin.jdbc.enums.SplitStrategy;
 import lombok.Data;
 
 import javax.validation.constraints.NotBlank;
@@ -51,6 +52,22 @@ public class JdbcDataTunnelSourceOption extends BaseSourceOption {
 
     private Integer numPartitions;
 
+    @OptionDesc("切片策略: uniform(按 lowerBound/upperBound 均匀步长切分), sample(采样切片字段，按记录数等量切分), 默认：uniform")
+    private SplitStrategy splitStrategy = SplitStrategy.UNIFORM;
+
+    @OptionDesc("增量字段(自增 id 或者更新时间)，设置后只读取大于 checkpoint 中记录最大值的数据，按 keyset 分页，每页 partitionRecordCount 条记录")
+    private String incrementalColumn;
+
+    @OptionDesc("增量读取 checkpoint 目录，支持本地或者 hdfs 路径，设置 incrementalColumn 时必填")
+    private String checkpointLocation;
+
+    @OptionDesc("增量读取回看范围，从 checkpoint 最大值减去该值开始读取，避免遗漏延迟提交、增量字段值相同(例如 update_time)的记录。"
+            + "增量字段为时间类型时单位为秒，数字类型时为数值。回看范围内的记录会重复读取，sink 需要 upsert 写入, 默认：0")
+    private long incrementalLookback = 0;
+
+    @OptionDesc("分表场景，并发统计表数据的连接数量, 默认：8")
+    private int statParallelism = 8;
+
     private String lowerBound;
 
     private String upperBound;
@@ -0,0 +1,202 @@
+package com.superior.datatunnel.plugin.jdbc;
+
+import com.clearspring.analytics.util.Lists;
+import com.superior.datatunnel.api.DataSourceType;
+import com.superior.datatunnel.api.DataTunnelException;
+import com.superior.datatunnel.common.util.JdbcUtils;
+import io.github.melin.jobserver.spark.api.LogUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.superior.datatunnel.api.DataSourceType.*;
+
+/**
+ * 增量读取: 只读取增量字段大于上次 checkpoint 的记录，按 keyset 分页 (WHERE id > ? ORDER BY id LIMIT n) 生成 predicates,
+ * 每页一个分区，所有分页边界由一条 ROW_NUMBER 查询得到。增量字段为 null 的记录不会被读取。
+ * 设置 incrementalLookback 时从 checkpoint 减去回看范围开始读取，读取延迟提交、增量字段值相同的记录。
+ */
+public class JdbcIncrementalPlanner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcIncrementalPlanner.class);
+
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+
+    // 时间字面量中的时间值，例如 TIMESTAMP '2024-01-01 00:00:00.000000'
+    private static final Pattern QUOTED = Pattern.compile("'([^']*)'");
+
+    private static final Pattern OFFSET_DATE_TIME = Pattern.compile(
+            "(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}(?:\\.\\d+)?)\\s*([+-]\\d{2}:\\d{2}|Z)");
+
+    private static final Pattern LOCAL_DATE_TIME = Pattern.compile(
+            "\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}(\\.\\d+)?");
+
+    private static final Pattern LOCAL_DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+
+    public static void planPredicates(
+            Connection conn,
+            DataSourceType dsType,
+            String table,
+            JdbcDataTunnelSourceOption sourceOption,
+            String lastWatermark,
+            JdbcTableSplit split) {
+
+        String column = sourceOption.getIncrementalColumn();
+        String condition = JdbcSplitPlanner.cleanCondition(sourceOption.getCondition());
+        String baseWhere = StringUtils.isNotBlank(condition) ? "(" + condition + ")" : "1=1";
+        String lower = lastWatermark == null ? null
+                : lookbackLiteral(dsType, lastWatermark, sourceOption.getIncrementalLookback());
+        String lowerWhere = lower == null ? "" : " AND " + column + " > " + lower;
+
+        StopWatch stopWatch = StopWatch.createStarted();
+        Object maxValue = queryMax(conn, "select max(" + column + ") from " + table
+                + " where " + baseWhere + lowerWhere);
+        if (maxValue == null) {
+            LogUtils.info("table {} no new records, {} > {}", table, column, lower);
+            split.setPredicates(new String[]{"1=0"});
+            split.setWatermark(lastWatermark);
+            return;
+        }
+
+        String watermark = toLiteral(dsType, column, maxValue);
+        String upperWhere = " AND " + column + " <= " + watermark;
+
+        // keyset 分页，每页 partitionRecordCount 条记录，第 n、2n、3n... 条记录的值为分页边界
+        String sql = "select " + column + " from (select " + column + ", ROW_NUMBER() OVER (ORDER BY " + column
+                + ") tdl_rn from " + table + " where " + baseWhere + lowerWhere + upperWhere + ") tdl_page where "
+                + pageFilter(dsType, sourceOption.getPartitionRecordCount()) + " order by " + column;
+        List<Object> bounds = queryBounds(conn, sql, sourceOption.getFetchsize());
+        if (bounds.isEmpty() || !Objects.equals(bounds.get(bounds.size() - 1), maxValue)) {
+            bounds.add(maxValue);
+        }
+
+        List<String> predicates = Lists.newArrayList();
+        String prev = lower;
+        Object prevBound = null;
+        for (Object bound : bounds) {
+            // 值相同的记录在同一页，跳过重复的边界
+            if (Objects.equals(bound, prevBound)) {
+                continue;
+            }
+            String boundLiteral = toLiteral(dsType, column, bound);
+            if (prev == null) {
+                predicates.add(column + " <= " + boundLiteral);
+            } else {
+                predicates.add(column + " > " + prev + " AND " + column + " <= " + boundLiteral);
+            }
+            prev = boundLiteral;
+            prevBound = bound;
+        }
+        stopWatch.stop();
+
+        LOG.info("ExecTimes: {}, table {} incremental {} > {}, new watermark: {}, numPartitions: {}",
+                stopWatch.formatTime(), table, column, lower, watermark, predicates.size());
+        LogUtils.info("ExecTimes: {}, table {} incremental {} > {}, new watermark: {}, numPartitions: {}",
+                stopWatch.formatTime(), table, column, lower, watermark, predicates.size());
+
+        split.setPredicates(predicates.toArray(new String[0]));
+        split.setWatermark(watermark);
+    }
+
+    private static String pageFilter(DataSourceType dsType, int pageSize) {
+        if (SQLSERVER == dsType) {
+            return "tdl_rn % " + pageSize + " = 0";
+        } else {
+            return "MOD(tdl_rn, " + pageSize + ") = 0";
+        }
+    }
+
+    /**
+     * checkpoint 中的 watermark 减去回看范围，数字类型减去 lookback，时间类型减去 lookback 秒
+     *
+     * @param watermark 上次读取的最大值，sql 字面量
+     * @param lookback  回看范围，不大于 0 时不回看
+     * @return 本次读取的下界，sql 字面量
+     */
+    static String lookbackLiteral(DataSourceType dsType, String watermark, long lookback) {
+        if (lookback <= 0) {
+            return watermark;
+        }
+        if (NUMBER.matcher(watermark).matches()) {
+            return new BigDecimal(watermark).subtract(BigDecimal.valueOf(lookback)).toPlainString();
+        }
+
+        Matcher quoted = QUOTED.matcher(watermark);
+        if (quoted.find()) {
+            String text = quoted.group(1).replace('T', ' ');
+            Matcher offset = OFFSET_DATE_TIME.matcher(text);
+            Object value = null;
+            if (offset.matches()) {
+                LocalDateTime dateTime = LocalDateTime.parse(offset.group(1), JdbcSplitPlanner.DATETIME_TEXT);
+                value = OffsetDateTime.of(dateTime, ZoneOffset.of(offset.group(2))).minusSeconds(lookback);
+            } else if (LOCAL_DATE_TIME.matcher(text).matches()) {
+                value = LocalDateTime.parse(text, JdbcSplitPlanner.DATETIME_TEXT).minusSeconds(lookback);
+            } else if (LOCAL_DATE.matcher(text).matches()) {
+                value = LocalDate.parse(text).minusDays((lookback + 86399) / 86400);
+            }
+            if (value != null) {
+                return JdbcSplitPlanner.toSqlLiteral(dsType, value);
+            }
+        }
+        throw new DataTunnelException("incrementalLookback 只支持数字、时间类型的增量字段, watermark: " + watermark);
+    }
+
+    private static String toLiteral(DataSourceType dsType, String column, Object value) {
+        String literal = JdbcSplitPlanner.toSqlLiteral(dsType, value);
+        if (literal == null) {
+            throw new DataTunnelException("incrementalColumn " + column + " data type "
+                    + value.getClass().getName() + " not support incremental read");
+        }
+        return literal;
+    }
+
+    private static List<Object> queryBounds(Connection conn, String sql, int fetchsize) {
+        LOG.info("incremental sql: {}", sql);
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(sql);
+            stmt.setFetchSize(fetchsize);
+            ResultSet resultSet = stmt.executeQuery();
+            int columnType = resultSet.getMetaData().getColumnType(1);
+            List<Object> bounds = Lists.newArrayList();
+            while (resultSet.next()) {
+                bounds.add(JdbcSplitPlanner.getValue(resultSet, columnType));
+            }
+            return bounds;
+        } catch (SQLException e) {
+            throw new DataTunnelException(e.getMessage(), e);
+        } finally {
+            JdbcUtils.close(stmt);
+        }
+    }
+
+    private static Object queryMax(Connection conn, String sql) {
+        LOG.info("incremental sql: {}", sql);
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(sql);
+            ResultSet resultSet = stmt.executeQuery();
+            resultSet.next();
+            return JdbcSplitPlanner.getValue(resultSet, resultSet.getMetaData().getColumnType(1));
+        } catch (SQLException e) {
+            throw new DataTunnelException(e.getMessage(), e);
+        } finally {
+            JdbcUtils.close(stmt);
+        }
+    }
+}
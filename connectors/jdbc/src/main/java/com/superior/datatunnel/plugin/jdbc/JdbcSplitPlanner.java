@@ -0,0 +1,464 @@
+package com.superior.datatunnel.plugin.jdbc;
+
+import com.clearspring.analytics.util.Lists;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.gitee.melin.bee.util.JsonUtils;
+import com.superior.datatunnel.api.DataSourceType;
+import com.superior.datatunnel.api.DataTunnelException;
+import com.superior.datatunnel.common.util.CommonUtils;
+import com.superior.datatunnel.common.util.JdbcUtils;
+import io.github.melin.jobserver.spark.api.LogUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.superior.datatunnel.api.DataSourceType.*;
+
+/**
+ * 采样切片字段，按记录数等量生成 predicates，避免数据倾斜或者主键稀疏时，spark 均匀步长切分导致部分分区过大、部分分区为空。
+ * 记录数优先使用数据库统计信息，避免 count(1) 全表扫描；mysql 切片字段有直方图时直接使用直方图的分桶边界，不需要采样。
+ */
+public class JdbcSplitPlanner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcSplitPlanner.class);
+
+    // 每个分区的采样记录数，采样越多，切分越均匀
+    private static final int SAMPLES_PER_PARTITION = 100;
+
+    private static final int MAX_SAMPLE_SIZE = 200000;
+
+    // yyyy-MM-dd HH:mm:ss[.fffffffff]，mysql 直方图和 watermark 中的时间格式
+    static final DateTimeFormatter DATETIME_TEXT = new DateTimeFormatterBuilder()
+            .appendPattern("yyyy-MM-dd HH:mm:ss")
+            .optionalStart()
+            .appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true)
+            .optionalEnd()
+            .toFormatter(Locale.ROOT);
+
+    /**
+     * 返回 null 表示无法采样切分（表为空、采样数据不足或者切片字段类型不支持），调用方回退到均匀步长切分
+     */
+    public static String[] planPredicates(
+            Connection conn, DataSourceType dsType, String schemaName, String tableName,
+            JdbcDataTunnelSourceOption sourceOption) {
+
+        String table = schemaName + "." + tableName;
+        String schema = CommonUtils.cleanQuote(schemaName);
+        String partitionColumn = sourceOption.getPartitionColumn();
+        String condition = cleanCondition(sourceOption.getCondition());
+        Integer numPartitions = sourceOption.getNumPartitions();
+
+        StopWatch stopWatch = StopWatch.createStarted();
+        // 统计信息是估算值，只用于计算分区数和采样比例；有过滤条件时，过滤后的记录数由采样结果估算
+        Long tableRows = estimateRowCount(conn, dsType, schema, tableName);
+        Long count;
+        if (tableRows == null) {
+            count = count(conn, table, condition);
+        } else {
+            count = StringUtils.isBlank(condition) ? tableRows : null;
+        }
+
+        if (count != null) {
+            numPartitions = resolveNumPartitions(numPartitions, count, sourceOption);
+            if (numPartitions <= 1 || count == 0) {
+                LogUtils.info("table {} record count: {}, numPartitions: 1, skip sample split", table, count);
+                return new String[]{"1=1"};
+            }
+        }
+
+        if (MYSQL == dsType && StringUtils.isBlank(condition)) {
+            List<Object> bounds = mysqlHistogramBounds(conn, schema, tableName,
+                    CommonUtils.cleanQuote(partitionColumn), numPartitions);
+            if (bounds != null) {
+                stopWatch.stop();
+                LogUtils.info("ExecTimes: {}, table {} record count: {}, split by histogram of {}",
+                        stopWatch.formatTime(), table, count, partitionColumn);
+                return checkPredicates(table, partitionColumn, buildPredicates(dsType, partitionColumn, bounds));
+            }
+        }
+
+        long sampleBase = tableRows != null ? tableRows : count;
+        int expectPartitions = numPartitions != null ? numPartitions
+                : (int) Math.ceil((double) sampleBase / sourceOption.getPartitionRecordCount());
+        int targetSamples = (int) Math.min((long) expectPartitions * SAMPLES_PER_PARTITION, MAX_SAMPLE_SIZE);
+        double fraction = Math.min(1.0, (double) targetSamples / sampleBase);
+
+        List<Object> samples = sample(conn, dsType, table, partitionColumn, condition, fraction, sourceOption.getFetchsize());
+        if (count == null) {
+            count = Math.round(samples.size() / fraction);
+            numPartitions = resolveNumPartitions(numPartitions, count, sourceOption);
+        }
+        stopWatch.stop();
+        LOG.info("ExecTimes: {}, table {} record count: {}, sample fraction: {}, sample count: {}",
+                stopWatch.formatTime(), table, count, fraction, samples.size());
+        LogUtils.info("ExecTimes: {}, table {} record count: {}, sample fraction: {}, sample count: {}",
+                stopWatch.formatTime(), table, count, fraction, samples.size());
+        if (MYSQL == dsType) {
+            LogUtils.info("mysql 8.0 can split without sample after: ANALYZE TABLE {} UPDATE HISTOGRAM ON {} WITH 1024 BUCKETS",
+                    table, partitionColumn);
+        }
+
+        if (numPartitions <= 1) {
+            LogUtils.info("table {} record count: {}, numPartitions: 1, skip sample split", table, count);
+            return new String[]{"1=1"};
+        }
+        if (samples.size() < numPartitions) {
+            LogUtils.warn("table {} sample count {} less than numPartitions {}, fallback uniform split",
+                    table, samples.size(), numPartitions);
+            return null;
+        }
+
+        // 采样数据由数据库排序，边界值顺序和数据库比较规则一致，保证 predicates 之间不重叠、不遗漏
+        List<Object> bounds = Lists.newArrayList();
+        for (int i = 1; i < numPartitions; i++) {
+            bounds.add(samples.get((int) ((long) i * samples.size() / numPartitions)));
+        }
+        return checkPredicates(table, partitionColumn, buildPredicates(dsType, partitionColumn, bounds));
+    }
+
+    private static int resolveNumPartitions(Integer numPartitions, long count, JdbcDataTunnelSourceOption sourceOption) {
+        if (numPartitions != null) {
+            return numPartitions;
+        }
+        return (int) Math.ceil((double) count / sourceOption.getPartitionRecordCount());
+    }
+
+    private static String[] checkPredicates(String table, String partitionColumn, String[] predicates) {
+        if (predicates == null) {
+            LogUtils.warn("partitionColumn {} data type not support sample split, fallback uniform split",
+                    partitionColumn);
+        } else {
+            LogUtils.info("table {} sample split numPartitions: {}", table, predicates.length);
+        }
+        return predicates;
+    }
+
+    /**
+     * 按有序的边界值生成 predicates，重复的边界值只保留一个，第一个分区包含切片字段为 null 的记录
+     *
+     * @return null 表示边界值类型不支持
+     */
+    static String[] buildPredicates(DataSourceType dsType, String partitionColumn, List<Object> bounds) {
+        List<String> literals = Lists.newArrayList();
+        Object prevBound = null;
+        for (Object bound : bounds) {
+            if (Objects.equals(bound, prevBound)) {
+                continue;
+            }
+
+            String literal = toSqlLiteral(dsType, bound);
+            if (literal == null) {
+                return null;
+            }
+            literals.add(literal);
+            prevBound = bound;
+        }
+        if (literals.isEmpty()) {
+            return new String[]{"1=1"};
+        }
+
+        String[] predicates = new String[literals.size() + 1];
+        predicates[0] = partitionColumn + " < " + literals.get(0) + " OR " + partitionColumn + " IS NULL";
+        for (int i = 1; i < literals.size(); i++) {
+            predicates[i] = partitionColumn + " >= " + literals.get(i - 1) + " AND " + partitionColumn + " < " + literals.get(i);
+        }
+        predicates[literals.size()] = partitionColumn + " >= " + literals.get(literals.size() - 1);
+        return predicates;
+    }
+
+    /**
+     * 从数据库统计信息读取表记录数，不扫描表
+     *
+     * @return null 表示数据库不支持或者没有统计信息
+     */
+    private static Long estimateRowCount(Connection conn, DataSourceType dsType, String schema, String tableName) {
+        String sql;
+        if (MYSQL == dsType) {
+            sql = "select TABLE_ROWS from information_schema.TABLES where TABLE_SCHEMA = ? and TABLE_NAME = ?";
+        } else if (ORACLE == dsType) {
+            sql = "select NUM_ROWS from ALL_TABLES where OWNER = ? and TABLE_NAME = ?";
+        } else if (POSTGRESQL == dsType || GAUSS == dsType || GREENPLUM == dsType) {
+            sql = "select c.reltuples from pg_class c join pg_namespace n on n.oid = c.relnamespace "
+                    + "where n.nspname = ? and c.relname = ?";
+        } else {
+            return null;
+        }
+
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(sql);
+            stmt.setString(1, schema);
+            stmt.setString(2, tableName);
+            ResultSet resultSet = stmt.executeQuery();
+            if (!resultSet.next()) {
+                return null;
+            }
+            // 没有统计信息时为 null、0 或者 -1
+            long rows = (long) resultSet.getDouble(1);
+            return rows > 0 ? rows : null;
+        } catch (SQLException e) {
+            LOG.warn("read statistics of table {}.{} failed: {}", schema, tableName, e.getMessage());
+            return null;
+        } finally {
+            JdbcUtils.close(stmt);
+        }
+    }
+
+    /**
+     * mysql 8.0 切片字段的直方图 (ANALYZE TABLE ... UPDATE HISTOGRAM) 按记录数等分的边界值
+     *
+     * @return null 表示没有直方图或者字段类型不支持
+     */
+    private static List<Object> mysqlHistogramBounds(
+            Connection conn, String schema, String tableName, String column, int numPartitions) {
+
+        String sql = "select HISTOGRAM from information_schema.COLUMN_STATISTICS "
+                + "where SCHEMA_NAME = ? and TABLE_NAME = ? and COLUMN_NAME = ?";
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(sql);
+            stmt.setString(1, schema);
+            stmt.setString(2, tableName);
+            stmt.setString(3, column);
+            ResultSet resultSet = stmt.executeQuery();
+            if (!resultSet.next()) {
+                return null;
+            }
+            Map<String, Object> histogram = JsonUtils.toJavaObject(resultSet.getString(1),
+                    new TypeReference<Map<String, Object>>() {});
+            return histogramBounds(histogram, numPartitions);
+        } catch (SQLException e) {
+            // mysql 5.7 没有 COLUMN_STATISTICS
+            LOG.debug("read histogram of {}.{}.{} failed: {}", schema, tableName, column, e.getMessage());
+            return null;
+        } finally {
+            JdbcUtils.close(stmt);
+        }
+    }
+
+    /**
+     * 按直方图的累计频率取 numPartitions - 1 个边界值，只支持数值和日期类型，字符串直方图的值是截断后的编码值
+     */
+    @SuppressWarnings("unchecked")
+    static List<Object> histogramBounds(Map<String, Object> histogram, int numPartitions) {
+        String dataType = (String) histogram.get("data-type");
+        List<List<Object>> buckets = (List<List<Object>>) histogram.get("buckets");
+        if (buckets == null || buckets.isEmpty()) {
+            return null;
+        }
+        boolean singleton = "singleton".equals(histogram.get("histogram-type"));
+        // singleton: [value, 累计频率]，equi-height: [下界, 上界, 累计频率, 不同值数量]
+        int valueIndex = singleton ? 0 : 1;
+        int frequencyIndex = singleton ? 1 : 2;
+        double total = ((Number) buckets.get(buckets.size() - 1).get(frequencyIndex)).doubleValue();
+
+        List<Object> bounds = Lists.newArrayList();
+        int bucket = 0;
+        for (int i = 1; i < numPartitions; i++) {
+            double quantile = total * i / numPartitions;
+            while (bucket < buckets.size() - 1
+                    && ((Number) buckets.get(bucket).get(frequencyIndex)).doubleValue() < quantile) {
+                bucket++;
+            }
+            Object value = histogramValue(dataType, buckets.get(bucket).get(valueIndex));
+            if (value == null) {
+                return null;
+            }
+            bounds.add(value);
+        }
+        return bounds;
+    }
+
+    private static Object histogramValue(String dataType, Object value) {
+        if ("int".equals(dataType) || "uint".equals(dataType) || "double".equals(dataType)) {
+            return value instanceof Number ? value : null;
+        } else if ("datetime".equals(dataType) && value instanceof String) {
+            return LocalDateTime.parse((String) value, DATETIME_TEXT);
+        } else if ("date".equals(dataType) && value instanceof String) {
+            return LocalDate.parse((String) value);
+        } else {
+            return null;
+        }
+    }
+
+    private static long count(Connection conn, String table, String condition) {
+        String sql = "select count(1) as num from " + table;
+        if (StringUtils.isNotBlank(condition)) {
+            sql = sql + " where " + condition;
+        }
+
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(sql);
+            ResultSet resultSet = stmt.executeQuery();
+            resultSet.next();
+            return Long.parseLong(resultSet.getString("num"));
+        } catch (SQLException e) {
+            throw new DataTunnelException(e.getMessage(), e);
+        } finally {
+            JdbcUtils.close(stmt);
+        }
+    }
+
+    private static List<Object> sample(
+            Connection conn, DataSourceType dsType, String table, String partitionColumn,
+            String condition, double fraction, int fetchsize) {
+
+        String where = partitionColumn + " IS NOT NULL";
+        if (StringUtils.isNotBlank(condition)) {
+            where = where + " AND (" + condition + ")";
+        }
+
+        String from = table;
+        if (fraction < 1.0) {
+            String percent = String.format(Locale.ROOT, "%.6f", fraction * 100);
+            if (ORACLE == dsType || DAMENG == dsType) {
+                from = table + " SAMPLE (" + percent + ")";
+            } else if (POSTGRESQL == dsType || GAUSS == dsType || GREENPLUM == dsType || DB2 == dsType) {
+                from = table + " TABLESAMPLE SYSTEM (" + percent + ")";
+            } else if (SQLSERVER == dsType) {
+                from = table + " TABLESAMPLE (" + percent + " PERCENT)";
+            } else if (HANA == dsType) {
+                from = table + " TABLESAMPLE BERNOULLI (" + percent + ")";
+            } else {
+                where = where + " AND RAND() < " + String.format(Locale.ROOT, "%.8f", fraction);
+            }
+        }
+
+        String sql = "select " + partitionColumn + " from " + from + " where " + where + " order by " + partitionColumn;
+        LOG.info("sample sql: {}", sql);
+
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(sql);
+            stmt.setFetchSize(fetchsize);
+            ResultSet resultSet = stmt.executeQuery();
+            int columnType = resultSet.getMetaData().getColumnType(1);
+            List<Object> samples = Lists.newArrayList();
+            while (resultSet.next()) {
+                samples.add(getValue(resultSet, columnType));
+            }
+            return samples;
+        } catch (SQLException e) {
+            throw new DataTunnelException(e.getMessage(), e);
+        } finally {
+            JdbcUtils.close(stmt);
+        }
+    }
+
+    /**
+     * 时间类型读取为 java.time 类型，不经过 JVM 时区转换，生成的字面量和数据库中的值一致
+     */
+    static Object getValue(ResultSet resultSet, int columnType) throws SQLException {
+        if (columnType == Types.TIMESTAMP) {
+            try {
+                return resultSet.getObject(1, LocalDateTime.class);
+            } catch (SQLException | UnsupportedOperationException e) {
+                // 驱动不支持 java.time 类型
+                java.sql.Timestamp value = resultSet.getTimestamp(1);
+                return value == null ? null : value.toLocalDateTime();
+            }
+        } else if (columnType == Types.TIMESTAMP_WITH_TIMEZONE) {
+            try {
+                return resultSet.getObject(1, OffsetDateTime.class);
+            } catch (SQLException | UnsupportedOperationException e) {
+                java.sql.Timestamp value = resultSet.getTimestamp(1);
+                return value == null ? null : value.toLocalDateTime();
+            }
+        } else if (columnType == Types.DATE) {
+            try {
+                return resultSet.getObject(1, LocalDate.class);
+            } catch (SQLException | UnsupportedOperationException e) {
+                java.sql.Date value = resultSet.getDate(1);
+                return value == null ? null : value.toLocalDate();
+            }
+        } else {
+            return resultSet.getObject(1);
+        }
+    }
+
+    static String toSqlLiteral(DataSourceType dsType, Object value) {
+        boolean oracleLike = ORACLE == dsType || DAMENG == dsType;
+        if (value instanceof java.sql.Timestamp) {
+            value = ((java.sql.Timestamp) value).toLocalDateTime();
+        } else if (value instanceof java.sql.Date) {
+            value = ((java.sql.Date) value).toLocalDate();
+        }
+
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        } else if (value instanceof Number) {
+            return value.toString();
+        } else if (value instanceof LocalDateTime) {
+            LocalDateTime dateTime = (LocalDateTime) value;
+            String text = dateTime.toLocalDate() + " " + timeText(dateTime.toLocalTime());
+            if (oracleLike) {
+                return "TO_TIMESTAMP('" + text + "', 'YYYY-MM-DD HH24:MI:SS.FF')";
+            } else if (SQLSERVER == dsType) {
+                return "CAST('" + text.replace(' ', 'T') + "' AS DATETIME2)";
+            }
+            return "TIMESTAMP '" + text + "'";
+        } else if (value instanceof OffsetDateTime) {
+            OffsetDateTime dateTime = (OffsetDateTime) value;
+            String text = dateTime.toLocalDate() + " " + timeText(dateTime.toLocalTime());
+            if (oracleLike) {
+                return "TO_TIMESTAMP_TZ('" + text + " " + dateTime.getOffset().getId().replace("Z", "+00:00")
+                        + "', 'YYYY-MM-DD HH24:MI:SS.FF TZH:TZM')";
+            } else if (SQLSERVER == dsType) {
+                return "CAST('" + text.replace(' ', 'T') + dateTime.getOffset().getId() + "' AS DATETIMEOFFSET)";
+            }
+            return "TIMESTAMP WITH TIME ZONE '" + text + dateTime.getOffset().getId().replace("Z", "+00:00") + "'";
+        } else if (value instanceof LocalDate) {
+            if (oracleLike) {
+                return "TO_DATE('" + value + "', 'YYYY-MM-DD')";
+            } else if (SQLSERVER == dsType) {
+                return "CAST('" + value + "' AS DATE)";
+            }
+            return "DATE '" + value + "'";
+        } else if (value instanceof String) {
+            return "'" + StringUtils.replace((String) value, "'", "''") + "'";
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * HH:mm:ss.ffffff，纳秒精度的值保留全部有效位，避免边界值被截断
+     */
+    private static String timeText(LocalTime time) {
+        String fraction = String.format(Locale.ROOT, "%09d", time.getNano());
+        int length = fraction.length();
+        while (length > 6 && fraction.charAt(length - 1) == '0') {
+            length--;
+        }
+        return String.format(Locale.ROOT, "%02d:%02d:%02d.", time.getHour(), time.getMinute(), time.getSecond())
+                + fraction.substring(0, length);
+    }
+
+    static String cleanCondition(String condition) {
+        condition = StringUtils.trim(condition);
+        if (condition != null && condition.matches("(?is)^where\\s.*")) {
+            condition = StringUtils.trim(StringUtils.substring(condition, 5));
+        }
+        return condition;
+    }
+}
@@ -0,0 +1,34 @@
+package com.superior.datatunnel.plugin.jdbc;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 单表读取切片信息，predicates 不为空时按 predicates 切分，否则按 partitionColumn 均匀步长切分
+ */
+@Data
+public class JdbcTableSplit implements Serializable {
+
+    private String tableName;
+
+    private String dbtable;
+
+    private String partitionColumn;
+
+    private String lowerBound;
+
+    private String upperBound;
+
+    private Integer numPartitions;
+
+    private String[] predicates;
+
+    // 增量读取的新 watermark
+    private String watermark;
+
+    public JdbcTableSplit(String tableName, String dbtable) {
+        this.tableName = tableName;
+        this.dbtable = dbtable;
+    }
+}
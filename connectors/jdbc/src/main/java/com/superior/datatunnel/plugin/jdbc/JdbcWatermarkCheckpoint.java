@@ -0,0 +1,92 @@
+package com.superior.datatunnel.plugin.jdbc;
+
+import com.gitee.melin.bee.util.JsonUtils;
+import com.google.common.collect.Maps;
+import com.google.common.io.CharStreams;
+import com.superior.datatunnel.api.DataTunnelException;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.sql.SparkSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 增量读取 checkpoint，记录每个表增量字段的最大值(sql 字面量)。
+ * 读取时先写入 watermark.pending, sink 写入成功后再提交为 watermark，任务失败时下次仍从上次提交的位置读取。
+ * 提交使用覆盖方式的原子 rename，不会出现 watermark 已删除、pending 还没有 rename 的中间状态。
+ */
+public class JdbcWatermarkCheckpoint {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcWatermarkCheckpoint.class);
+
+    private static final String COMMITTED_FILE = "watermark";
+
+    private static final String PENDING_FILE = "watermark.pending";
+
+    private final FileSystem fs;
+
+    private final FileContext fileContext;
+
+    private final Path committedPath;
+
+    private final Path pendingPath;
+
+    public JdbcWatermarkCheckpoint(SparkSession sparkSession, String checkpointLocation) {
+        try {
+            Path dir = new Path(checkpointLocation);
+            Configuration conf = sparkSession.sparkContext().hadoopConfiguration();
+            this.fs = dir.getFileSystem(conf);
+            this.fileContext = FileContext.getFileContext(fs.getUri(), conf);
+            this.committedPath = new Path(dir, COMMITTED_FILE);
+            this.pendingPath = new Path(dir, PENDING_FILE);
+        } catch (IOException e) {
+            throw new DataTunnelException("init checkpoint failed: " + checkpointLocation, e);
+        }
+    }
+
+    public Map<String, String> getWatermarks() {
+        try {
+            if (!fs.exists(committedPath)) {
+                return Maps.newHashMap();
+            }
+
+            try (FSDataInputStream input = fs.open(committedPath)) {
+                String json = CharStreams.toString(new InputStreamReader(input, StandardCharsets.UTF_8));
+                return Maps.newHashMap(JsonUtils.<String>toJavaMap(json));
+            }
+        } catch (IOException e) {
+            throw new DataTunnelException("read checkpoint failed: " + committedPath, e);
+        }
+    }
+
+    public void writePending(Map<String, String> watermarks) {
+        try (FSDataOutputStream output = fs.create(pendingPath, true)) {
+            output.write(JsonUtils.toJSONString(watermarks).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new DataTunnelException("write checkpoint failed: " + pendingPath, e);
+        }
+    }
+
+    public void commit() {
+        try {
+            if (!fs.exists(pendingPath)) {
+                return;
+            }
+
+            fileContext.rename(pendingPath, committedPath, Options.Rename.OVERWRITE);
+            LOG.info("commit checkpoint: {}", committedPath);
+        } catch (IOException e) {
+            throw new DataTunnelException("commit checkpoint failed: " + committedPath, e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.superior.datatunnel.plugin.jdbc.enums;
+
+public enum SplitStrategy {
+    // spark 默认切分方式: 按 lowerBound/upperBound 均匀步长切分
+    UNIFORM,
+    // 采样切片字段，按记录数等量切分, 适用数据倾斜、主键稀疏的表
+    SAMPLE;
+}
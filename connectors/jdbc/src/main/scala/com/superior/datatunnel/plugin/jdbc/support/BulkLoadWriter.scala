@@ -0,0 +1,142 @@
+package com.superior.datatunnel.plugin.jdbc.support
+
+import com.superior.datatunnel.api.DataTunnelException
+import org.apache.spark.internal.Logging
+import org.apache.spark.sql.Row
+import org.apache.spark.sql.execution.datasources.jdbc.JdbcOptionsInWrite
+import org.apache.spark.sql.jdbc.JdbcDialects
+import org.apache.spark.sql.types._
+
+import java.io.InputStream
+import java.nio.charset.StandardCharsets
+import java.sql.Connection
+import scala.util.control.NonFatal
+
+/**
+ * 使用数据库批量导入协议(COPY / LOAD DATA)写入分区数据，分区数据编码为 csv 流式发送，不落地临时文件。
+ * 事务隔离级别与 INSERT 批量写入一致，使用 isolationLevel 参数。导入记录数与发送记录数不一致时分区写入失败
+ */
+abstract class BulkLoadWriter(
+    val table: String,
+    val columns: Array[String],
+    val options: JdbcOptionsInWrite) extends Serializable with Logging {
+
+  protected def nullValue: String
+
+  protected def formatString(value: String): String
+
+  protected def formatBoolean(value: Boolean): String = value.toString
+
+  /**
+   * 执行导入，返回导入记录数
+   */
+  protected def load(conn: Connection, input: InputStream): Long
+
+  def savePartition(iterator: Iterator[Row]): Unit = {
+    val dialect = JdbcDialects.get(options.url)
+    val conn = dialect.createConnectionFactory(options)(-1)
+    var committed = false
+    var supportsTransactions = false
+    try {
+      // isolationLevel = NONE 时 autocommit，由数据库决定导入过程中的提交方式
+      supportsTransactions = JdbcDialectUtils.beginTransaction(conn, options.isolationLevel)
+      val input = new CsvRowInputStream(iterator, this)
+      val count = load(conn, input)
+      if (count != input.rowCount) {
+        throw new DataTunnelException(s"bulk load $table 发送 ${input.rowCount} 条记录，实际导入 $count 条记录")
+      }
+      if (supportsTransactions) {
+        conn.commit()
+      }
+      committed = true
+      logInfo(s"bulk load $count rows into $table")
+    } finally {
+      if (!committed && supportsTransactions) {
+        try conn.rollback() catch {
+          case NonFatal(e) => logWarning("rollback failed", e)
+        }
+      }
+      conn.close()
+    }
+  }
+
+  def formatRow(row: Row, builder: java.lang.StringBuilder): Unit = {
+    var i = 0
+    while (i < row.length) {
+      if (i > 0) builder.append(',')
+      builder.append(formatValue(row.get(i)))
+      i += 1
+    }
+    builder.append('\n')
+  }
+
+  private def formatValue(value: Any): String = value match {
+    case null => nullValue
+    case v: String => formatString(v)
+    case v: Boolean => formatBoolean(v)
+    case v: java.math.BigDecimal => v.toPlainString
+    case v: java.time.Instant => java.sql.Timestamp.from(v).toString
+    case v: java.time.LocalDateTime => java.sql.Timestamp.valueOf(v).toString
+    case v => v.toString
+  }
+}
+
+object BulkLoadWriter {
+
+  /**
+   * 只支持基础类型，包含二进制、复杂类型时使用 INSERT 批量写入
+   */
+  def isSupported(schema: StructType): Boolean = {
+    schema.fields.forall(field => field.dataType match {
+      case StringType | BooleanType | DateType | TimestampType | TimestampNTZType => true
+      case _: NumericType => true
+      case _ => false
+    })
+  }
+}
+
+private class CsvRowInputStream(iterator: Iterator[Row], writer: BulkLoadWriter) extends InputStream {
+
+  private val builder = new java.lang.StringBuilder()
+  private var buffer: Array[Byte] = Array.emptyByteArray
+  private var pos = 0
+  private var rows = 0L
+
+  def rowCount: Long = rows
+
+  private def fill(): Boolean = {
+    builder.setLength(0)
+    var count = 0
+    while (count < 1000 && iterator.hasNext) {
+      writer.formatRow(iterator.next(), builder)
+      count += 1
+    }
+    rows += count
+    buffer = builder.toString.getBytes(StandardCharsets.UTF_8)
+    pos = 0
+    buffer.nonEmpty
+  }
+
+  override def read(): Int = {
+    if (pos >= buffer.length && !fill()) {
+      -1
+    } else {
+      val b = buffer(pos) & 0xff
+      pos += 1
+      b
+    }
+  }
+
+  override def read(b: Array[Byte], off: Int, len: Int): Int = {
+    if (len == 0) {
+      0
+    } else if (pos >= buffer.length && !fill()) {
+      -1
+    } else {
+      val n = math.min(len, buffer.length - pos)
+      System.arraycopy(buffer, pos, b, off, n)
+      pos += n
+      n
+    }
+  }
+}
@@ -8,6 +8,9 @@ import org.apache.spark.sql.execution.datasources.jdbc.{JdbcOptionsInWrite, Jdbc
 import org.apache.spark.sql.internal.SQLConf
 import org.apache.spark.sql.jdbc.JdbcDialects
 import org.apache.spark.sql.sources.BaseRelation
+import org.apache.spark.sql.types.StructType
+
+import java.sql.Connection
 
 class DataTunnelJdbcRelationProvider extends JdbcRelationProvider {
 
@@ -34,17 +37,18 @@ class DataTunnelJdbcRelationProvider extends JdbcRelationProvider {
             if (options.isTruncate && isCascadingTruncateTable(options.url) == Some(false)) {
               // In this case, we should truncate table and then load.
               truncateTable(conn, options)
-              val tableSchema = SparkJdbcUtils.getSchemaOption(conn, options)
+              val tableSchema = getSchemaOption(conn, options)
               saveTable(conn, df, tableSchema, isCaseSensitive, options, writeMode, dataSourceType)
             } else {
               // Otherwise, do not truncate the table, instead drop and recreate it
               dropTable(conn, options.table, options)
               createTable(conn, options.table, df.schema, isCaseSensitive, options)
+              JdbcMetadataCache.invalidate(conn.getMetaData.getURL, options.table)
               saveTable(conn, df, Some(df.schema), isCaseSensitive, options, writeMode, dataSourceType)
             }
 
           case SaveMode.Append =>
-            val tableSchema = SparkJdbcUtils.getSchemaOption(conn, options)
+            val tableSchema = getSchemaOption(conn, options)
             saveTable(conn, df, tableSchema, isCaseSensitive, options, writeMode, dataSourceType)
 
           case SaveMode.ErrorIfExists =>
@@ -58,6 +62,7 @@ class DataTunnelJdbcRelationProvider extends JdbcRelationProvider {
         }
       } else {
         createTable(conn, options.table, df.schema, isCaseSensitive, options)
+        JdbcMetadataCache.invalidate(conn.getMetaData.getURL, options.table)
         saveTable(conn, df, Some(df.schema), isCaseSensitive, options, writeMode, dataSourceType)
       }
     } finally {
@@ -66,4 +71,10 @@ class DataTunnelJdbcRelationProvider extends JdbcRelationProvider {
 
     createRelation(sqlContext, parameters)
   }
+
+  private def getSchemaOption(conn: Connection, options: JdbcOptionsInWrite): Option[StructType] = {
+    JdbcMetadataCache.get(conn.getMetaData.getURL, options.table, "schema") {
+      SparkJdbcUtils.getSchemaOption(conn, options)
+    }
+  }
 }
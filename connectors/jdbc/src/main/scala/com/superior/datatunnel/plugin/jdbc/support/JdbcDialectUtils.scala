@@ -1,17 +1,24 @@
 package com.superior.datatunnel.plugin.jdbc.support
 
 import com.superior.datatunnel.api.DataTunnelException
+import com.superior.datatunnel.common.util.{JdbcUtils => CommonJdbcUtils}
 import com.superior.datatunnel.plugin.jdbc.support.dialect.{DatabaseDialect, MySqlDatabaseDialect, PostgreSqlDatabaseDialect, SupportMergeDatabaseDialect}
 import org.apache.commons.lang3.StringUtils
-import org.apache.spark.sql.DataFrame
+import org.apache.spark.internal.Logging
+import org.apache.spark.sql.{DataFrame, Row}
 import org.apache.spark.sql.execution.datasources.jdbc.{JDBCOptions, JdbcOptionsInWrite}
 import org.apache.spark.sql.execution.datasources.jdbc.JdbcUtils.savePartition
-import org.apache.spark.sql.jdbc.JdbcDialects
-import org.apache.spark.sql.types.{StructField, StructType}
+import org.apache.spark.sql.jdbc.{JdbcDialect, JdbcDialects}
+import org.apache.spark.sql.functions.monotonically_increasing_id
+import org.apache.spark.sql.types.{LongType, StructField, StructType}
 
 import java.sql.Connection
+import scala.util.control.NonFatal
 
-object JdbcDialectUtils {
+object JdbcDialectUtils extends Logging {
+
+  // 临时表名后缀 "_stg" 加 8 位数字，表名部分最长 18 个字符
+  private val STAGING_TABLE_BASE_NAME_LENGTH = 18
 
   def saveTable(
        conn: Connection,
@@ -22,30 +29,207 @@ object JdbcDialectUtils {
        writeMode: String,
        dataSourceType: String): Unit = {
 
-    val url = options.url
     val table = options.table
-    val dialect = JdbcDialects.get(url)
+    val dialect = JdbcDialects.get(options.url)
+    val rddSchema = df.schema
+
+    val databaseDialect = getDatabaseDialect(conn, dataSourceType)
+    if ("upsert_staging" == writeMode) {
+      saveTableWithStaging(conn, df, tableSchema, options, databaseDialect)
+    } else {
+      val statementKey = s"statement:$writeMode:${tableSchema.isDefined}:${rddSchema.json}"
+      val insertStmt = JdbcMetadataCache.get(conn.getMetaData.getURL, table, statementKey) {
+        if ("upsert" == writeMode) {
+          databaseDialect.getUpsertStatement(table, rddSchema, tableSchema, dialect)
+        } else {
+          databaseDialect.getInsertStatement(table, rddSchema, tableSchema, dialect)
+        }
+      }
+      writePartitions(df, tableSchema, options, databaseDialect, insertStmt, "upsert" == writeMode)
+    }
+  }
+
+  /**
+   * 数据先批量写入临时表，所有 task 完成后，在 driver 端执行一次 merge 合并到目标表，最后删除临时表
+   */
+  private def saveTableWithStaging(
+       conn: Connection,
+       df: DataFrame,
+       tableSchema: Option[StructType],
+       options: JdbcOptionsInWrite,
+       databaseDialect: DatabaseDialect): Unit = {
+
+    val table = options.table
+    val dialect = JdbcDialects.get(options.url)
+    val rddSchema = df.schema
+    val stagingTable = getStagingTableName(table, dialect)
+
+    // 先生成 merge sql，没有主键时在创建临时表之前失败
+    val mergeSql = databaseDialect.getStagingMergeStatement(stagingTable, table, rddSchema, tableSchema, dialect)
+    CommonJdbcUtils.execute(conn, databaseDialect.getCreateStagingTableStatement(stagingTable, table, dialect))
+    try {
+      val stagingOptions = new JdbcOptionsInWrite(
+        options.parameters + (JDBCOptions.JDBC_TABLE_NAME -> stagingTable))
+      // 写入序号在合并分区之前生成，同一分区内后面的记录序号更大，合并时相同主键保留最后一条
+      val sequenceColumn = DatabaseDialect.STAGING_SEQUENCE_COLUMN
+      val stagingDF = df.withColumn(sequenceColumn, monotonically_increasing_id())
+      val stagingSchema = tableSchema.map(_.add(sequenceColumn, LongType))
+      val insertStmt = databaseDialect.getInsertStatement(stagingTable, stagingDF.schema, stagingSchema, dialect)
+      writePartitions(stagingDF, stagingSchema, stagingOptions, databaseDialect, insertStmt, upsert = false)
+
+      logInfo(s"merge staging table $stagingTable into $table: \n$mergeSql")
+      CommonJdbcUtils.execute(conn, mergeSql)
+    } finally {
+      try CommonJdbcUtils.execute(conn, s"DROP TABLE $stagingTable") catch {
+        case NonFatal(e) => logWarning(s"drop staging table $stagingTable failed", e)
+      }
+    }
+  }
+
+  /**
+   * 临时表和目标表在同一个 schema 下，表名去掉引号后加上后缀，再使用 dialect 加引号，
+   * 支持 "s"."T"、`db`.`t` 这类带引号的表名。表名超过 18 个字符时截断并加上 hash，
+   * 临时表名不超过 30 个字符(oracle 12.2 之前的标识符长度上限)
+   */
+  private[support] def getStagingTableName(table: String, dialect: JdbcDialect): String = {
+    val index = lastSeparatorIndex(table)
+    val schema = if (index >= 0) table.substring(0, index + 1) else ""
+    var name = StringUtils.strip(table.substring(index + 1), "\"`[]")
+    if (name.length > STAGING_TABLE_BASE_NAME_LENGTH) {
+      name = name.substring(0, STAGING_TABLE_BASE_NAME_LENGTH - 8) + "%08x".format(name.hashCode)
+    }
+    schema + dialect.quoteIdentifier(name + "_stg" + (System.currentTimeMillis() % 100000000))
+  }
+
+  // 最后一个不在引号中的 "."
+  private def lastSeparatorIndex(table: String): Int = {
+    var quote: Char = 0
+    var index = -1
+    var i = 0
+    while (i < table.length) {
+      val c = table.charAt(i)
+      if (quote != 0) {
+        if (c == quote) quote = 0
+      } else if (c == '"' || c == '`') {
+        quote = c
+      } else if (c == '[') {
+        quote = ']'
+      } else if (c == '.') {
+        index = i
+      }
+      i += 1
+    }
+    index
+  }
+
+  private def writePartitions(
+       df: DataFrame,
+       tableSchema: Option[StructType],
+       options: JdbcOptionsInWrite,
+       databaseDialect: DatabaseDialect,
+       insertStmt: String,
+       upsert: Boolean): Unit = {
+
+    val table = options.table
+    val dialect = JdbcDialects.get(options.url)
     val rddSchema = df.schema
     val batchSize = options.batchSize
     val isolationLevel = options.isolationLevel
 
-    val databaseDialect = getDatabaseDialect(conn, dataSourceType)
-    val insertStmt = if ("upsert" == writeMode) {
-      databaseDialect.getUpsertStatement(table, rddSchema, tableSchema, dialect)
+    val bulkLoad = options.parameters.getOrElse("bulkLoad", "false").toBoolean
+    val bulkLoadWriter = if (bulkLoad && !upsert) {
+      val writer = databaseDialect.getBulkLoadWriter(table, rddSchema, tableSchema, dialect, options)
+      if (writer.isEmpty) {
+        logWarning(s"${options.url} not support bulk load, use batch insert")
+      }
+      writer
+    } else {
+      None
+    }
+
+    val multiRowInsert = options.parameters.getOrElse("multiRowInsert", "false").toBoolean
+    val multiRowWriter = if (bulkLoadWriter.isEmpty && multiRowInsert) {
+      databaseDialect.getMultiRowInsertWriter(table, rddSchema, tableSchema, dialect, options, upsert)
     } else {
-      databaseDialect.getInsertStatement(table, rddSchema, tableSchema, dialect)
+      None
     }
+    multiRowWriter.foreach(writer => logInfo(s"multi-row insert, rows per statement: ${writer.rowsPerStatement}"))
 
-    val repartitionedDF = options.numPartitions match {
+    // 每个分区同时只占用一个连接，合并分区限制整个作业的写入连接数量
+    val maxConnections = options.parameters.get("maxConnections").map(_.toInt)
+    maxConnections.filter(_ <= 0).foreach(n => throw invalidJdbcNumPartitionsError(n, "maxConnections"))
+    val partitionLimit = (options.numPartitions ++ maxConnections).reduceOption(math.min)
+    val repartitionedDF = partitionLimit match {
       case Some(n) if n <= 0 => throw invalidJdbcNumPartitionsError(
         n, JDBCOptions.JDBC_NUM_PARTITIONS)
       case Some(n) if n < df.rdd.getNumPartitions => df.coalesce(n)
       case _ => df
     }
+
+    // 合并分区限制整个作业的连接数，executor 内的初始并发上限为 maxConnections 平均分配到每个 executor 的数量，
+    // 在此基础上根据写入耗时和连接数超限错误调整。driver 之外的 executor 数量，local 模式为 1
+    val executors = math.max(1, df.sparkSession.sparkContext.getExecutorMemoryStatus.size - 1)
+    val executorLimit = maxConnections.map(limit => (limit + executors - 1) / executors)
+    executorLimit.foreach(limit => logInfo(s"max connections: ${maxConnections.get}, executors: $executors, " +
+      s"concurrency limit per executor: $limit"))
+
+    val url = options.url
     repartitionedDF.rdd.foreachPartition { iterator =>
-      savePartition(
-        table, iterator, rddSchema, insertStmt, batchSize, dialect, isolationLevel, options)
+      val write = (rows: Iterator[Row]) => {
+        if (bulkLoadWriter.isDefined) {
+          bulkLoadWriter.get.savePartition(rows)
+        } else if (multiRowWriter.isDefined) {
+          multiRowWriter.get.savePartition(rows)
+        } else {
+          savePartition(table, rows, rddSchema, insertStmt, batchSize, dialect, isolationLevel, options)
+        }
+      }
+
+      // 只有设置 maxConnections 时才限制 executor 内的写入并发
+      executorLimit match {
+        case Some(limit) => JdbcWriteGovernor.write(url, limit, iterator)(write)
+        case None => write(iterator)
+      }
+    }
+  }
+
+  /**
+   * 与 spark JdbcUtils.savePartition 一致设置事务隔离级别，返回是否使用事务。
+   * isolationLevel = NONE 或者数据库不支持事务时使用 autocommit
+   */
+  def beginTransaction(conn: Connection, isolationLevel: Int): Boolean = {
+    var finalIsolationLevel = Connection.TRANSACTION_NONE
+    if (isolationLevel != Connection.TRANSACTION_NONE) {
+      try {
+        val metadata = conn.getMetaData
+        if (metadata.supportsTransactions()) {
+          // Update to at least use the default isolation, if any transaction level
+          // has been chosen and transactions are supported
+          val defaultIsolation = metadata.getDefaultTransactionIsolation
+          finalIsolationLevel = defaultIsolation
+          if (metadata.supportsTransactionIsolationLevel(isolationLevel)) {
+            // Finally update to actually requested level if possible
+            if (isolationLevel != defaultIsolation) {
+              conn.setTransactionIsolation(isolationLevel)
+            }
+            finalIsolationLevel = isolationLevel
+          } else {
+            logWarning(s"Requested isolation level $isolationLevel is not supported; " +
+              s"falling back to default isolation level $defaultIsolation")
+          }
+        } else {
+          logWarning(s"Requested isolation level $isolationLevel, but transactions are unsupported")
+        }
+      } catch {
+        case NonFatal(e) => logWarning("Exception while detecting transaction support", e)
+      }
+    }
+
+    val supportsTransactions = finalIsolationLevel != Connection.TRANSACTION_NONE
+    if (supportsTransactions) {
+      conn.setAutoCommit(false)
     }
+    supportsTransactions
   }
 
   def getDatabaseDialect(conn: Connection, dataSourceType: String): DatabaseDialect = {
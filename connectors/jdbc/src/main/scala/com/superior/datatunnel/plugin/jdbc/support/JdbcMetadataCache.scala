@@ -0,0 +1,43 @@
+package com.superior.datatunnel.plugin.jdbc.support
+
+import com.google.common.cache.{Cache, CacheBuilder}
+import com.google.common.util.concurrent.{ExecutionError, UncheckedExecutionException}
+
+import java.util.concurrent.{Callable, ExecutionException, TimeUnit}
+import scala.concurrent.duration._
+
+/**
+ * 缓存数据库版本、主键、表结构和生成的 insert/upsert sql，key 为 jdbc url(connection.getMetaData.getURL) + 表名。
+ * kafka foreachBatch 写入 jdbc 时，避免每个微批次重复查询元数据
+ */
+object JdbcMetadataCache {
+
+  private val cacheExpireTimeout = 5.minutes.toMillis
+
+  private val cache: Cache[String, AnyRef] = CacheBuilder.newBuilder()
+    .expireAfterWrite(cacheExpireTimeout, TimeUnit.MILLISECONDS)
+    .maximumSize(10000)
+    .build[String, AnyRef]()
+
+  def get[T <: AnyRef](url: String, table: String, name: String)(loader: => T): T =
+    try {
+      cache.get(cacheKey(url, table, name), new Callable[AnyRef] {
+        override def call(): AnyRef = loader
+      }).asInstanceOf[T]
+    } catch {
+      case e@(_: ExecutionException | _: UncheckedExecutionException | _: ExecutionError)
+        if e.getCause != null => throw e.getCause
+    }
+
+  /**
+   * 删除、重建表之后清除表相关的缓存
+   */
+  def invalidate(url: String, table: String): Unit = {
+    val prefix = cacheKey(url, table, "")
+    cache.asMap().keySet().removeIf(key => key.startsWith(prefix))
+  }
+
+  private def cacheKey(url: String, table: String, name: String): String = {
+    url + "\u0001" + table + "\u0001" + name
+  }
+}
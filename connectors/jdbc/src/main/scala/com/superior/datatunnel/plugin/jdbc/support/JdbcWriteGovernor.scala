@@ -0,0 +1,135 @@
+package com.superior.datatunnel.plugin.jdbc.support
+
+import org.apache.commons.lang3.StringUtils
+import org.apache.spark.internal.Logging
+import org.apache.spark.sql.Row
+
+import java.sql.SQLException
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * 设置 maxConnections 时，限制 executor 内同一个 jdbc url 同时写入的连接数量。集群级别的连接上限通过 maxConnections
+ * 合并分区实现，executor 内的并发上限为 ceil(maxConnections / executor 数量)，一个 executor 上运行多个写入 task 时生效。
+ * executor 内根据每行写入耗时和 "too many connections" 错误自适应调整并发：出现连接数超限错误时并发减半，
+ * 写入耗时超过基线两倍时并发减一，否则逐步恢复到上限。写入耗时不包含读取上游数据(计算、shuffle read)的时间，
+ * 基线为写入耗时的指数加权平均值，数据库负载变化后基线随之调整
+ */
+object JdbcWriteGovernor extends Logging {
+
+  private val MAX_RETRIES = 5
+
+  private val limiters = new ConcurrentHashMap[String, AdaptiveLimiter]()
+
+  def write(url: String, executorLimit: Int, iterator: Iterator[Row])(writer: Iterator[Row] => Unit): Unit = {
+    // 不同作业的并发上限可能不同，按 url 和上限区分
+    val limiter = limiters.computeIfAbsent(url + "#" + executorLimit, _ => new AdaptiveLimiter(url, executorLimit))
+    val counted = new CountingIterator(iterator)
+
+    var attempt = 0
+    var done = false
+    while (!done) {
+      limiter.acquire()
+      val start = System.nanoTime()
+      try {
+        writer(counted)
+        val writeNanos = System.nanoTime() - start - counted.upstreamNanos
+        limiter.release(writeNanos, counted.count, overloaded = false)
+        done = true
+      } catch {
+        // 获取连接失败时还没有消费数据，可以重试
+        case e: Throwable if isTooManyConnections(e) && counted.count == 0 && attempt < MAX_RETRIES =>
+          limiter.release(-1, 0, overloaded = true)
+          attempt += 1
+          val backoff = 1000L << attempt
+          logWarning(s"too many connections: $url, retry $attempt after ${backoff}ms, " +
+            s"concurrency limit: ${limiter.currentLimit}")
+          Thread.sleep(backoff)
+        case e: Throwable =>
+          limiter.release(-1, 0, overloaded = isTooManyConnections(e))
+          throw e
+      }
+    }
+  }
+
+  def isTooManyConnections(e: Throwable): Boolean = {
+    var cause = e
+    while (cause != null) {
+      cause match {
+        case sqlException: SQLException =>
+          // postgresql: 53300, mysql: 1040 too many connections / 1203 max_user_connections
+          if ("53300" == sqlException.getSQLState || "08004" == sqlException.getSQLState ||
+            sqlException.getErrorCode == 1040 || sqlException.getErrorCode == 1203) {
+            return true
+          }
+        case _ =>
+      }
+      if (StringUtils.containsIgnoreCase(cause.getMessage, "too many connections")) {
+        return true
+      }
+      cause = cause.getCause
+    }
+    false
+  }
+}
+
+private class AdaptiveLimiter(url: String, maxLimit: Int) extends Logging {
+
+  // 新的耗时样本在基线中的权重
+  private val BASELINE_DECAY = 0.2
+
+  private var limit = math.max(1, maxLimit)
+  private var inFlight = 0
+  // 每行写入耗时(纳秒)的指数加权平均值，作为基线
+  private var baselineNanos = -1.0
+
+  def currentLimit: Int = synchronized(limit)
+
+  def acquire(): Unit = synchronized {
+    while (inFlight >= limit) {
+      wait()
+    }
+    inFlight += 1
+  }
+
+  def release(elapsedNanos: Long, rows: Long, overloaded: Boolean): Unit = synchronized {
+    inFlight -= 1
+    if (overloaded) {
+      limit = math.max(1, limit / 2)
+      logWarning(s"$url overloaded, decrease concurrency limit to $limit")
+    } else if (elapsedNanos >= 0 && rows > 0) {
+      val rowNanos = elapsedNanos.toDouble / rows
+      val baseline = if (baselineNanos < 0) rowNanos else baselineNanos
+      baselineNanos = baseline * (1 - BASELINE_DECAY) + rowNanos * BASELINE_DECAY
+      if (rowNanos > baseline * 2 && limit > 1) {
+        limit -= 1
+        logInfo(s"$url write latency increased, decrease concurrency limit to $limit")
+      } else if (limit < maxLimit) {
+        limit += 1
+      }
+    }
+    notifyAll()
+  }
+}
+
+private class CountingIterator(iterator: Iterator[Row]) extends Iterator[Row] {
+
+  var count = 0L
+
+  // 读取上游数据的耗时
+  var upstreamNanos = 0L
+
+  override def hasNext: Boolean = {
+    val start = System.nanoTime()
+    try iterator.hasNext finally upstreamNanos += System.nanoTime() - start
+  }
+
+  override def next(): Row = {
+    val start = System.nanoTime()
+    try {
+      count += 1
+      iterator.next()
+    } finally {
+      upstreamNanos += System.nanoTime() - start
+    }
+  }
+}
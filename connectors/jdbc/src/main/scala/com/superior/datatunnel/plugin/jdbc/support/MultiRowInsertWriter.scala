@@ -0,0 +1,192 @@
+package com.superior.datatunnel.plugin.jdbc.support
+
+import org.apache.spark.internal.Logging
+import org.apache.spark.sql.Row
+import org.apache.spark.sql.execution.datasources.jdbc.JdbcOptionsInWrite
+import org.apache.spark.sql.execution.datasources.jdbc.JdbcUtils.getCommonJDBCType
+import org.apache.spark.sql.jdbc.{JdbcDialect, JdbcDialects}
+import org.apache.spark.sql.types._
+
+import java.sql.{Date, PreparedStatement, Timestamp}
+import scala.collection.mutable.ArrayBuffer
+import scala.util.control.NonFatal
+
+/**
+ * INSERT INTO t (...) VALUES (?,?),(?,?)... 多行语句，prefix + values * rows + suffix
+ */
+case class MultiRowStatement(prefix: String, values: String, suffix: String) {
+
+  def sql(rows: Int): String = {
+    val builder = new java.lang.StringBuilder(prefix.length + (values.length + 1) * rows + suffix.length)
+    builder.append(prefix)
+    var i = 0
+    while (i < rows) {
+      if (i > 0) builder.append(',')
+      builder.append(values)
+      i += 1
+    }
+    builder.append(suffix).toString
+  }
+}
+
+/**
+ * 每条语句绑定多行数据，不依赖驱动 rewriteBatchedStatements / reWriteBatchedInserts 参数。
+ * 每条语句行数不超过 batchsize 和 maxParameters / 字段数量，并且估算的语句大小不超过 maxStatementBytes
+ */
+class MultiRowInsertWriter(
+    table: String,
+    statement: MultiRowStatement,
+    rddSchema: StructType,
+    maxParameters: Int,
+    maxStatementBytes: Long,
+    options: JdbcOptionsInWrite) extends Serializable with Logging {
+
+  private type Setter = (PreparedStatement, Int, Row, Int) => Unit
+
+  private val numFields = rddSchema.length
+
+  val rowsPerStatement: Int = math.max(1, math.min(options.batchSize, maxParameters / math.max(1, numFields)))
+
+  def savePartition(iterator: Iterator[Row]): Unit = {
+    val dialect = JdbcDialects.get(options.url)
+    val conn = dialect.createConnectionFactory(options)(-1)
+    val setters = rddSchema.fields.map(field => makeSetter(field.dataType))
+    val nullTypes = rddSchema.fields.map(field => getJdbcType(field.dataType, dialect))
+
+    var fullStatement: PreparedStatement = null
+    var committed = false
+    var supportsTransactions = false
+    try {
+      // 与 INSERT 批量写入一致，isolationLevel = NONE 时 autocommit，每条语句单独提交
+      supportsTransactions = JdbcDialectUtils.beginTransaction(conn, options.isolationLevel)
+
+      val group = new ArrayBuffer[Row](rowsPerStatement)
+      var groupBytes = 0L
+      var totalRows = 0L
+
+      def flush(): Unit = {
+        if (group.nonEmpty) {
+          // 行数固定的语句复用，按大小提前截断的语句单独创建
+          val isFull = group.length == rowsPerStatement
+          val stmt = if (isFull) {
+            if (fullStatement == null) {
+              fullStatement = conn.prepareStatement(statement.sql(rowsPerStatement))
+              fullStatement.setQueryTimeout(options.queryTimeout)
+            }
+            fullStatement
+          } else {
+            val partial = conn.prepareStatement(statement.sql(group.length))
+            partial.setQueryTimeout(options.queryTimeout)
+            partial
+          }
+
+          try {
+            var pos = 1
+            group.foreach { row =>
+              var i = 0
+              while (i < numFields) {
+                if (row.isNullAt(i)) {
+                  stmt.setNull(pos, nullTypes(i))
+                } else {
+                  setters(i).apply(stmt, pos, row, i)
+                }
+                pos += 1
+                i += 1
+              }
+            }
+            stmt.executeUpdate()
+          } finally {
+            if (!isFull) stmt.close()
+          }
+
+          totalRows += group.length
+          group.clear()
+          groupBytes = 0
+        }
+      }
+
+      while (iterator.hasNext) {
+        val row = iterator.next()
+        group += row
+        groupBytes += estimateSize(row)
+        if (group.length >= rowsPerStatement || groupBytes >= maxStatementBytes) {
+          flush()
+        }
+      }
+      flush()
+
+      if (supportsTransactions) {
+        conn.commit()
+      }
+      committed = true
+      logInfo(s"write $totalRows rows into $table, rows per statement: $rowsPerStatement")
+    } finally {
+      if (fullStatement != null) {
+        fullStatement.close()
+      }
+      if (!committed && supportsTransactions) {
+        try conn.rollback() catch {
+          case NonFatal(e) => logWarning("rollback failed", e)
+        }
+      }
+      conn.close()
+    }
+  }
+
+  private def estimateSize(row: Row): Long = {
+    var size = 0L
+    var i = 0
+    while (i < numFields) {
+      size += (row.get(i) match {
+        case null => 4
+        case v: String => v.length * 3 + 2
+        case v: Array[Byte] => v.length * 2 + 3
+        case _ => 24
+      })
+      i += 1
+    }
+    size
+  }
+
+  private def getJdbcType(dataType: DataType, dialect: JdbcDialect): Int = {
+    dialect.getJDBCType(dataType).orElse(getCommonJDBCType(dataType))
+      .map(_.jdbcNullType)
+      .getOrElse(java.sql.Types.NULL)
+  }
+
+  private def makeSetter(dataType: DataType): Setter = dataType match {
+    case IntegerType =>
+      (stmt: PreparedStatement, pos: Int, row: Row, i: Int) => stmt.setInt(pos, row.getInt(i))
+    case LongType =>
+      (stmt: PreparedStatement, pos: Int, row: Row, i: Int) => stmt.setLong(pos, row.getLong(i))
+    case DoubleType =>
+      (stmt: PreparedStatement, pos: Int, row: Row, i: Int) => stmt.setDouble(pos, row.getDouble(i))
+    case FloatType =>
+      (stmt: PreparedStatement, pos: Int, row: Row, i: Int) => stmt.setFloat(pos, row.getFloat(i))
+    case ShortType =>
+      (stmt: PreparedStatement, pos: Int, row: Row, i: Int) => stmt.setInt(pos, row.getShort(i))
+    case ByteType =>
+      (stmt: PreparedStatement, pos: Int, row: Row, i: Int) => stmt.setInt(pos, row.getByte(i))
+    case BooleanType =>
+      (stmt: PreparedStatement, pos: Int, row: Row, i: Int) => stmt.setBoolean(pos, row.getBoolean(i))
+    case StringType =>
+      (stmt: PreparedStatement, pos: Int, row: Row, i: Int) => stmt.setString(pos, row.getString(i))
+    case BinaryType =>
+      (stmt: PreparedStatement, pos: Int, row: Row, i: Int) => stmt.setBytes(pos, row.getAs[Array[Byte]](i))
+    case _: DecimalType =>
+      (stmt: PreparedStatement, pos: Int, row: Row, i: Int) => stmt.setBigDecimal(pos, row.getDecimal(i))
+    case TimestampType | TimestampNTZType =>
+      (stmt: PreparedStatement, pos: Int, row: Row, i: Int) => row.get(i) match {
+        case v: java.time.Instant => stmt.setTimestamp(pos, Timestamp.from(v))
+        case v: java.time.LocalDateTime => stmt.setTimestamp(pos, Timestamp.valueOf(v))
+        case v => stmt.setTimestamp(pos, v.asInstanceOf[Timestamp])
+      }
+    case DateType =>
+      (stmt: PreparedStatement, pos: Int, row: Row, i: Int) => row.get(i) match {
+        case v: java.time.LocalDate => stmt.setDate(pos, Date.valueOf(v))
+        case v => stmt.setDate(pos, v.asInstanceOf[Date])
+      }
+    case _ =>
+      (stmt: PreparedStatement, pos: Int, row: Row, i: Int) => stmt.setObject(pos, row.get(i))
+  }
+}
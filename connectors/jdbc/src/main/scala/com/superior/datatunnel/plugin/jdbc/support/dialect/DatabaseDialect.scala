@@ -4,8 +4,11 @@ import com.gitee.melin.bee.core.jdbc.JdbcDialectHolder
 import com.gitee.melin.bee.core.jdbc.enums.DataSourceType
 import com.gitee.melin.bee.core.jdbc.relational.DatabaseVersion
 import com.google.common.collect.Lists
+import com.superior.datatunnel.plugin.jdbc.support.{BulkLoadWriter, JdbcMetadataCache, MultiRowInsertWriter}
 import com.superior.datatunnel.plugin.jdbc.support.JdbcDialectUtils.columnNotFoundInSchemaError
+import org.apache.commons.lang3.StringUtils
 import org.apache.spark.internal.Logging
+import org.apache.spark.sql.execution.datasources.jdbc.JdbcOptionsInWrite
 import org.apache.spark.sql.execution.datasources.jdbc.JdbcUtils.conf
 import org.apache.spark.sql.jdbc.JdbcDialect
 import org.apache.spark.sql.types.StructType
@@ -16,9 +19,18 @@ import java.util
 abstract class DatabaseDialect(connection: Connection, dataSourceType: String) extends Logging {
 
   private val dsType = DataSourceType.valueOf(dataSourceType.toUpperCase)
-  private val jdbcDialect = JdbcDialectHolder.buildJdbcDialect(dsType, connection)
+  // 只有读取时获取 schema、表名使用，写入时不创建
+  private lazy val jdbcDialect = JdbcDialectHolder.buildJdbcDialect(dsType, connection)
+
+  protected lazy val url: String = connection.getMetaData.getURL
 
   protected def getDatabaseVersion(connection: Connection): DatabaseVersion = {
+    JdbcMetadataCache.get(url, "", "version") {
+      loadDatabaseVersion(connection)
+    }
+  }
+
+  private def loadDatabaseVersion(connection: Connection): DatabaseVersion = {
     val metaData = connection.getMetaData
 
     try new DatabaseVersion(metaData.getDatabaseProductVersion)
@@ -74,6 +86,12 @@ abstract class DatabaseDialect(connection: Connection, dataSourceType: String) e
   }
 
   def getKeyFieldNames(schema: String, tableName: String): Array[String] = {
+    JdbcMetadataCache.get(url, schema + "." + tableName, "primaryKeys") {
+      loadKeyFieldNames(schema, tableName)
+    }
+  }
+
+  private def loadKeyFieldNames(schema: String, tableName: String): Array[String] = {
     var keyFieldNames = new Array[String](0)
     val rs: ResultSet = connection.getMetaData.getPrimaryKeys(schema, null, tableName)
     try while (rs.next()) {
@@ -96,6 +114,27 @@ abstract class DatabaseDialect(connection: Connection, dataSourceType: String) e
     s"INSERT INTO $table (${columns.mkString(",")}) VALUES ($placeholders)"
   }
 
+  /**
+   * 数据库批量导入写入器(COPY / LOAD DATA)，返回 None 时使用 INSERT 批量写入
+   */
+  def getBulkLoadWriter(
+      table: String,
+      rddSchema: StructType,
+      tableSchema: Option[StructType],
+      dialect: JdbcDialect,
+      options: JdbcOptionsInWrite): Option[BulkLoadWriter] = None
+
+  /**
+   * 多行 VALUES 写入器，每条 INSERT 语句绑定多行数据，返回 None 时使用 jdbc batch 写入
+   */
+  def getMultiRowInsertWriter(
+      table: String,
+      rddSchema: StructType,
+      tableSchema: Option[StructType],
+      dialect: JdbcDialect,
+      options: JdbcOptionsInWrite,
+      upsert: Boolean): Option[MultiRowInsertWriter] = None
+
   def getUpsertStatement(
       table: String,
       rddSchema: StructType,
@@ -104,4 +143,63 @@ abstract class DatabaseDialect(connection: Connection, dataSourceType: String) e
 
     return null;
   }
+
+  /**
+   * 临时表包含目标表的字段和写入序号字段 dt_stg_seq，合并时相同主键保留序号最大的记录
+   */
+  def getCreateStagingTableStatement(stagingTable: String, table: String, dialect: JdbcDialect): String = {
+    s"CREATE TABLE $stagingTable AS ${getStagingTableQuery(table, dialect)} WHERE 1=0"
+  }
+
+  protected def getStagingTableQuery(table: String, dialect: JdbcDialect): String = {
+    val sequenceColumn = dialect.quoteIdentifier(DatabaseDialect.STAGING_SEQUENCE_COLUMN)
+    s"SELECT t.*, CAST(NULL AS DECIMAL(19)) AS $sequenceColumn FROM $table t"
+  }
+
+  /**
+   * 临时表数据合并到目标表的 sql, writeMode = upsert_staging 时使用
+   */
+  def getStagingMergeStatement(
+      stagingTable: String,
+      table: String,
+      rddSchema: StructType,
+      tableSchema: Option[StructType],
+      dialect: JdbcDialect): String = {
+
+    throw new UnsupportedOperationException(s"$dataSourceType not support upsert_staging")
+  }
+
+  /**
+   * 临时表按主键去重后的数据。临时表使用 INSERT 写入，输入数据重复或者 task 重试、推测执行都可能写入重复主键，
+   * ON CONFLICT DO UPDATE、MERGE 不允许同一行被更新多次。与 upsert 一致，重复记录中保留最后写入(序号最大)的一条
+   */
+  protected def getDistinctStagingQuery(
+      stagingTable: String,
+      columns: Array[String],
+      primaryKeys: Array[String],
+      dialect: JdbcDialect): String = {
+
+    val columnList = columns.mkString(",")
+    val keyList = primaryKeys.mkString(",")
+    val sequenceColumn = dialect.quoteIdentifier(DatabaseDialect.STAGING_SEQUENCE_COLUMN)
+    s"SELECT $columnList FROM (\n" +
+      s"    SELECT $columnList, ROW_NUMBER() OVER (PARTITION BY $keyList ORDER BY $sequenceColumn DESC) AS dt_row_num\n" +
+      s"    FROM $stagingTable\n" +
+      ") stg WHERE dt_row_num = 1"
+  }
+
+  protected def getPrimaryKeys(table: String, dialect: JdbcDialect): Array[String] = {
+    val items = StringUtils.split(table, ".")
+    val primaryKeys = this.getKeyFieldNames(items(0), items(1)).map(dialect.quoteIdentifier)
+    if (primaryKeys.length == 0) {
+      throw new IllegalArgumentException("not primary key, not support upsert")
+    }
+    primaryKeys
+  }
+}
+
+object DatabaseDialect {
+
+  // upsert_staging 临时表的写入序号字段，值为 monotonically_increasing_id，分区内按写入顺序递增
+  val STAGING_SEQUENCE_COLUMN = "dt_stg_seq"
 }
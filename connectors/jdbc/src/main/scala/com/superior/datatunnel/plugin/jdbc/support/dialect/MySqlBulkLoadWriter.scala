@@ -0,0 +1,56 @@
+package com.superior.datatunnel.plugin.jdbc.support.dialect
+
+import com.mysql.cj.jdbc.JdbcStatement
+import com.superior.datatunnel.api.DataTunnelException
+import com.superior.datatunnel.plugin.jdbc.support.BulkLoadWriter
+import org.apache.spark.sql.execution.datasources.jdbc.JdbcOptionsInWrite
+
+import java.io.InputStream
+import java.sql.Connection
+
+/**
+ * LOAD DATA LOCAL INFILE，通过 setLocalInfileInputStream 流式发送数据，需要服务端开启 local_infile。
+ * LOCAL 导入总是按 IGNORE 处理：主键冲突的记录被跳过，截断、类型转换错误只产生 warning，
+ * 有 warning 或者导入记录数少于发送记录数时分区写入失败
+ */
+class MySqlBulkLoadWriter(table: String, columns: Array[String], options: JdbcOptionsInWrite)
+  extends BulkLoadWriter(table, columns,
+    new JdbcOptionsInWrite(options.parameters + ("allowLoadLocalInfile" -> "true"))) {
+
+  override protected def nullValue: String = "\\N"
+
+  override protected def formatString(value: String): String = {
+    val builder = new java.lang.StringBuilder(value.length + 2)
+    builder.append('"')
+    value.foreach {
+      case '\\' => builder.append("\\\\")
+      case '"' => builder.append("\\\"")
+      case '\n' => builder.append("\\n")
+      case '\r' => builder.append("\\r")
+      case '\u0000' => builder.append("\\0")
+      case c => builder.append(c)
+    }
+    builder.append('"').toString
+  }
+
+  override protected def formatBoolean(value: Boolean): String = if (value) "1" else "0"
+
+  override protected def load(conn: Connection, input: InputStream): Long = {
+    val sql = s"LOAD DATA LOCAL INFILE 'datatunnel.csv' INTO TABLE $table CHARACTER SET utf8mb4 " +
+      "FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY '\\\\' " +
+      s"LINES TERMINATED BY '\\n' (${columns.mkString(",")})"
+
+    val stmt = conn.createStatement()
+    try {
+      stmt.unwrap(classOf[JdbcStatement]).setLocalInfileInputStream(input)
+      val count = stmt.executeUpdate(sql)
+      val warning = stmt.getWarnings
+      if (warning != null) {
+        throw new DataTunnelException(s"load data $table 产生 warning: ${warning.getMessage}", warning)
+      }
+      count
+    } finally {
+      stmt.close()
+    }
+  }
+}
@@ -1,28 +1,74 @@
 package com.superior.datatunnel.plugin.jdbc.support.dialect
 import org.apache.commons.lang3.StringUtils
+import com.superior.datatunnel.plugin.jdbc.support.{BulkLoadWriter, JdbcMetadataCache, MultiRowInsertWriter, MultiRowStatement}
+import org.apache.spark.sql.execution.datasources.jdbc.JdbcOptionsInWrite
 import org.apache.spark.sql.jdbc.JdbcDialect
 import org.apache.spark.sql.types.StructType
 
-import java.sql.Connection
+import java.sql.{Connection, SQLException}
 
 class MySqlDatabaseDialect(connection: Connection, dataSourceType: String)
   extends DatabaseDialect(connection, dataSourceType) {
 
+  // prepared statement 占位符数量上限
+  private val MAX_PARAMETERS = 65535
+
+  private val DEFAULT_MAX_ALLOWED_PACKET = 4L * 1024 * 1024
+
+  override def getBulkLoadWriter(
+      table: String,
+      rddSchema: StructType,
+      tableSchema: Option[StructType],
+      dialect: JdbcDialect,
+      options: JdbcOptionsInWrite): Option[BulkLoadWriter] = {
+
+    if (StringUtils.startsWith(options.url, "jdbc:mysql") && BulkLoadWriter.isSupported(rddSchema)) {
+      val columns = getColumns(rddSchema, tableSchema, dialect)
+      Some(new MySqlBulkLoadWriter(table, columns, options))
+    } else {
+      None
+    }
+  }
+
+  override def getMultiRowInsertWriter(
+      table: String,
+      rddSchema: StructType,
+      tableSchema: Option[StructType],
+      dialect: JdbcDialect,
+      options: JdbcOptionsInWrite,
+      upsert: Boolean): Option[MultiRowInsertWriter] = {
+
+    val statement = buildStatement(table, rddSchema, tableSchema, dialect, upsert)
+    // 预留一半空间给协议开销和估算误差
+    val maxStatementBytes = getMaxAllowedPacket / 2
+    Some(new MultiRowInsertWriter(table, statement, rddSchema, MAX_PARAMETERS, maxStatementBytes, options))
+  }
+
   override def getUpsertStatement(
       table: String,
       rddSchema: StructType,
       tableSchema: Option[StructType],
       dialect: JdbcDialect): String = {
 
-    val version = getDatabaseVersion(connection)
+    buildStatement(table, rddSchema, tableSchema, dialect, upsert = true).sql(1)
+  }
+
+  private def buildStatement(
+      table: String,
+      rddSchema: StructType,
+      tableSchema: Option[StructType],
+      dialect: JdbcDialect,
+      upsert: Boolean): MultiRowStatement = {
 
     val columns = getColumns(rddSchema, tableSchema, dialect)
     val placeholders = rddSchema.fields.map(_ => "?").mkString(",")
+    val prefix = s"INSERT INTO $table (${columns.mkString(",")}) VALUES "
 
-    val builder = new StringBuilder()
-    var sql = s"INSERT INTO $table (${columns.mkString(",")}) VALUES ($placeholders)"
-    builder.append(sql)
+    if (!upsert) {
+      return MultiRowStatement(prefix, s"($placeholders)", "")
+    }
 
+    val version = getDatabaseVersion(connection)
     val items = StringUtils.split(table, ".")
     val primaryKeys = this.getKeyFieldNames(items(0), items(1)).map(dialect.quoteIdentifier)
 
@@ -30,17 +76,60 @@ class MySqlDatabaseDialect(connection: Connection, dataSourceType: String)
       throw new IllegalArgumentException("not primary key, not support upsert")
     }
 
+    val builder = new StringBuilder()
     if (version.isSameOrAfter(8, 0, 20)) {
       builder.append("\nAS new ON DUPLICATE KEY UPDATE ")
-      sql = columns.filter(!primaryKeys.contains(_))
-        .map(col => s"\t$col = new.$col").mkString(",\n")
-      builder.append(sql);
+      builder.append(columns.filter(!primaryKeys.contains(_))
+        .map(col => s"\t$col = new.$col").mkString(",\n"))
     } else {
-      builder.append(sql).append("\nON DUPLICATE KEY UPDATE\n")
-      sql = columns.filter(!primaryKeys.contains(_))
-        .map(col => s"\t$col = VALUES($col)").mkString(",\n")
-      builder.append(sql);
+      builder.append("\nON DUPLICATE KEY UPDATE\n")
+      builder.append(columns.filter(!primaryKeys.contains(_))
+        .map(col => s"\t$col = VALUES($col)").mkString(",\n"))
+    }
+    MultiRowStatement(prefix, s"($placeholders)", builder.toString())
+  }
+
+  private def getMaxAllowedPacket: Long = {
+    JdbcMetadataCache.get(url, "", "maxAllowedPacket") {
+      Long.box(loadMaxAllowedPacket)
+    }
+  }
+
+  private def loadMaxAllowedPacket: Long = {
+    try {
+      val stmt = connection.createStatement()
+      try {
+        val rs = stmt.executeQuery("SELECT @@max_allowed_packet")
+        if (rs.next()) rs.getLong(1) else DEFAULT_MAX_ALLOWED_PACKET
+      } finally {
+        stmt.close()
+      }
+    } catch {
+      case e: SQLException =>
+        logWarning("query max_allowed_packet failed, use default: " + DEFAULT_MAX_ALLOWED_PACKET, e)
+        DEFAULT_MAX_ALLOWED_PACKET
     }
-    builder.toString()
+  }
+
+  override def getStagingMergeStatement(
+      stagingTable: String,
+      table: String,
+      rddSchema: StructType,
+      tableSchema: Option[StructType],
+      dialect: JdbcDialect): String = {
+
+    val columns = getColumns(rddSchema, tableSchema, dialect)
+    val primaryKeys = getPrimaryKeys(table, dialect)
+    val updateColumns = columns.filter(!primaryKeys.contains(_)) match {
+      case cols if cols.isEmpty => primaryKeys
+      case cols => cols
+    }
+
+    // 按写入序号顺序插入，相同主键最后写入的记录生效，与 upsert 一致
+    val columnList = columns.mkString(",")
+    val sequenceColumn = dialect.quoteIdentifier(DatabaseDialect.STAGING_SEQUENCE_COLUMN)
+    s"INSERT INTO $table ($columnList)\nSELECT $columnList FROM $stagingTable ORDER BY $sequenceColumn\n" +
+      "ON DUPLICATE KEY UPDATE\n" +
+      updateColumns.map(col => s"\t$col = VALUES($col)").mkString(",\n")
   }
 }
@@ -0,0 +1,26 @@
+package com.superior.datatunnel.plugin.jdbc.support.dialect
+
+import com.superior.datatunnel.plugin.jdbc.support.BulkLoadWriter
+import org.apache.spark.sql.execution.datasources.jdbc.JdbcOptionsInWrite
+import org.postgresql.PGConnection
+
+import java.io.InputStream
+import java.sql.Connection
+
+/**
+ * COPY ... FROM STDIN (FORMAT csv)，csv 格式中未加引号的空值为 NULL
+ */
+class PostgreSqlBulkLoadWriter(table: String, columns: Array[String], options: JdbcOptionsInWrite)
+  extends BulkLoadWriter(table, columns, options) {
+
+  override protected def nullValue: String = ""
+
+  override protected def formatString(value: String): String = {
+    "\"" + value.replace("\"", "\"\"") + "\""
+  }
+
+  override protected def load(conn: Connection, input: InputStream): Long = {
+    val sql = s"COPY $table (${columns.mkString(",")}) FROM STDIN WITH (FORMAT csv)"
+    conn.unwrap(classOf[PGConnection]).getCopyAPI.copyIn(sql, input)
+  }
+}
@@ -1,6 +1,8 @@
 package com.superior.datatunnel.plugin.jdbc.support.dialect
 
 import org.apache.commons.lang3.StringUtils
+import com.superior.datatunnel.plugin.jdbc.support.{BulkLoadWriter, MultiRowInsertWriter, MultiRowStatement}
+import org.apache.spark.sql.execution.datasources.jdbc.JdbcOptionsInWrite
 import org.apache.spark.sql.jdbc.JdbcDialect
 import org.apache.spark.sql.types.StructType
 
@@ -9,25 +11,99 @@ import java.sql.Connection
 class PostgreSqlDatabaseDialect(connection: Connection, dataSourceType: String)
   extends DatabaseDialect(connection, dataSourceType) {
 
+  // 协议中参数数量为 int16
+  private val MAX_PARAMETERS = 32767
+
+  private val MAX_STATEMENT_BYTES = 32L * 1024 * 1024
+
+  override def getBulkLoadWriter(
+      table: String,
+      rddSchema: StructType,
+      tableSchema: Option[StructType],
+      dialect: JdbcDialect,
+      options: JdbcOptionsInWrite): Option[BulkLoadWriter] = {
+
+    if (StringUtils.startsWith(options.url, "jdbc:postgresql") && BulkLoadWriter.isSupported(rddSchema)) {
+      val columns = getColumns(rddSchema, tableSchema, dialect)
+      Some(new PostgreSqlBulkLoadWriter(table, columns, options))
+    } else {
+      None
+    }
+  }
+
+  override def getMultiRowInsertWriter(
+      table: String,
+      rddSchema: StructType,
+      tableSchema: Option[StructType],
+      dialect: JdbcDialect,
+      options: JdbcOptionsInWrite,
+      upsert: Boolean): Option[MultiRowInsertWriter] = {
+
+    if (upsert) {
+      // ON CONFLICT DO UPDATE 不允许同一条语句中出现重复主键，upsert 使用 jdbc batch 逐行写入
+      None
+    } else {
+      val statement = buildStatement(table, rddSchema, tableSchema, dialect, upsert)
+      Some(new MultiRowInsertWriter(table, statement, rddSchema, MAX_PARAMETERS, MAX_STATEMENT_BYTES, options))
+    }
+  }
+
   override def getUpsertStatement(
       table: String,
       rddSchema: StructType,
       tableSchema: Option[StructType],
       dialect: JdbcDialect): String = {
 
+    buildStatement(table, rddSchema, tableSchema, dialect, upsert = true).sql(1)
+  }
+
+  private def buildStatement(
+      table: String,
+      rddSchema: StructType,
+      tableSchema: Option[StructType],
+      dialect: JdbcDialect,
+      upsert: Boolean): MultiRowStatement = {
+
     val columns = getColumns(rddSchema, tableSchema, dialect)
     val placeholders = rddSchema.fields.map(_ => "?").mkString(",")
+    val prefix = s"INSERT INTO $table (${columns.mkString(",")}) VALUES "
 
-    val items = StringUtils.split(table, ".")
-    val primaryKeys = this.getKeyFieldNames(items(0), items(1)).map(dialect.quoteIdentifier)
+    if (!upsert) {
+      return MultiRowStatement(prefix, s"($placeholders)", "")
+    }
 
-    val builder = new StringBuilder()
-    val sql = s"INSERT INTO $table (${columns.mkString(",")}) VALUES ($placeholders)"
-    builder.append(sql).append("\nON CONFLICT (" + primaryKeys.mkString(",") + ") \nDO NOTHING;\n")
+    val primaryKeys = getPrimaryKeys(table, dialect)
+    MultiRowStatement(prefix, s"($placeholders)", "\n" + getConflictClause(columns, primaryKeys))
+  }
 
-    if (primaryKeys.length == 0) {
-      throw new IllegalArgumentException("not primary key, not support upsert")
+  /**
+   * upsert 和 upsert_staging 使用相同的语义：主键冲突时更新非主键字段，只有主键字段时忽略
+   */
+  private def getConflictClause(columns: Array[String], primaryKeys: Array[String]): String = {
+    val updateColumns = columns.filter(!primaryKeys.contains(_))
+    val builder = new StringBuilder()
+    builder.append(s"ON CONFLICT (${primaryKeys.mkString(",")})")
+    if (updateColumns.isEmpty) {
+      builder.append(" DO NOTHING")
+    } else {
+      builder.append(" DO UPDATE SET\n")
+      builder.append(updateColumns.map(col => s"\t$col = EXCLUDED.$col").mkString(",\n"))
     }
     builder.toString()
   }
+
+  override def getStagingMergeStatement(
+      stagingTable: String,
+      table: String,
+      rddSchema: StructType,
+      tableSchema: Option[StructType],
+      dialect: JdbcDialect): String = {
+
+    val columns = getColumns(rddSchema, tableSchema, dialect)
+    val primaryKeys = getPrimaryKeys(table, dialect)
+
+    s"INSERT INTO $table (${columns.mkString(",")})\n" +
+      getDistinctStagingQuery(stagingTable, columns, primaryKeys, dialect) + "\n" +
+      getConflictClause(columns, primaryKeys)
+  }
 }
@@ -16,39 +16,65 @@ class SupportMergeDatabaseDialect(conn: Connection, dataSourceType: String)
       dialect: JdbcDialect): String = {
 
     val columns = getColumns(rddSchema, tableSchema, dialect)
-    val items = StringUtils.split(table, ".")
-    val primaryKeys = this.getKeyFieldNames(items(0), items(1)).map(dialect.quoteIdentifier)
+    val primaryKeys = getPrimaryKeys(table, dialect)
 
-    if (primaryKeys.length == 0) {
-      throw new IllegalArgumentException("not primary key, not support upsert")
-    }
-
-    val builder = new StringBuffer()
-    var sql = s"MERGE INTO $table dist \nUSING (\n    SELECT "
-    builder.append(sql);
-    sql = columns.map(col => s"? AS $col").mkString(",")
-    builder.append(sql);
+    val builder = new StringBuilder()
+    builder.append("(\n    SELECT ")
+    builder.append(columns.map(col => s"? AS $col").mkString(","))
 
     if (StringUtils.equalsIgnoreCase("oracle", dataSourceType)) {
       builder.append("\n    FROM DUAL")
     } else if (StringUtils.equalsIgnoreCase("db2", dataSourceType)) {
       builder.append("\n    FROM sysibm.sysdummy1")
     }
+    builder.append("\n)")
+
+    buildMergeStatement(table, builder.toString(), columns, primaryKeys)
+  }
+
+  override def getCreateStagingTableStatement(stagingTable: String, table: String, dialect: JdbcDialect): String = {
+    if (StringUtils.equalsIgnoreCase("db2", dataSourceType)) {
+      s"CREATE TABLE $stagingTable AS (${getStagingTableQuery(table, dialect)}) WITH NO DATA"
+    } else if (StringUtils.equalsIgnoreCase("hana", dataSourceType)) {
+      s"CREATE COLUMN TABLE $stagingTable AS (${getStagingTableQuery(table, dialect)}) WITH NO DATA"
+    } else {
+      super.getCreateStagingTableStatement(stagingTable, table, dialect)
+    }
+  }
+
+  override def getStagingMergeStatement(
+      stagingTable: String,
+      table: String,
+      rddSchema: StructType,
+      tableSchema: Option[StructType],
+      dialect: JdbcDialect): String = {
+
+    val columns = getColumns(rddSchema, tableSchema, dialect)
+    val primaryKeys = getPrimaryKeys(table, dialect)
+    val source = "(" + getDistinctStagingQuery(stagingTable, columns, primaryKeys, dialect) + ")"
+    buildMergeStatement(table, source, columns, primaryKeys)
+  }
+
+  private def buildMergeStatement(
+      table: String,
+      source: String,
+      columns: Array[String],
+      primaryKeys: Array[String]): String = {
 
-    builder.append("\n) src\n")
+    val builder = new StringBuilder()
+    builder.append(s"MERGE INTO $table dist \nUSING ")
+    builder.append(source)
+    builder.append(" src\n")
     builder.append("on (")
-    sql = primaryKeys.map(key => s"src.${key} = dist.${key}").mkString(" AND ")
-    builder.append(sql);
+    builder.append(primaryKeys.map(key => s"src.${key} = dist.${key}").mkString(" AND "))
     builder.append(")\n")
 
     builder.append("WHEN MATCHED THEN\n    UPDATE SET ")
-    sql = columns.filter(!primaryKeys.contains(_))
-      .map(key => s"dist.${key} = src.${key}").mkString(", ")
-    builder.append(sql);
+    builder.append(columns.filter(!primaryKeys.contains(_))
+      .map(key => s"dist.${key} = src.${key}").mkString(", "))
     builder.append("\nWHEN NOT MATCHED THEN\n")
     builder.append(s"    insert(${columns.mkString(",")})\n")
-    sql = columns.map(col => s"src.${col}").mkString(",")
-    builder.append(s"    VALUES ($sql)")
+    builder.append(s"    VALUES (${columns.map(col => s"src.${col}").mkString(",")})")
     builder.toString
   }
 }
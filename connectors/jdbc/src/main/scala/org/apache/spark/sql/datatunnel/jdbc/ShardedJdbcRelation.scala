@@ -0,0 +1,83 @@
+package org.apache.spark.sql.datatunnel.jdbc
+
+import com.superior.datatunnel.plugin.jdbc.JdbcTableSplit
+import org.apache.commons.lang3.StringUtils
+import org.apache.spark.Partition
+import org.apache.spark.rdd.RDD
+import org.apache.spark.sql.execution.datasources.jdbc.{JDBCOptions, JDBCPartition, JDBCRelation}
+import org.apache.spark.sql.sources.{BaseRelation, Filter, PrunedFilteredScan}
+import org.apache.spark.sql.types.StructType
+import org.apache.spark.sql.{DataFrame, Row, SQLContext, SparkSession}
+
+import java.util
+import scala.collection.JavaConverters._
+
+/**
+ * 分表读取: 多个结构相同的表合并为一个扫描节点，所有表的切片平铺在一个 UnionRDD 中，
+ * 避免 unionAll 嵌套导致逻辑计划过深、driver 端分析耗时。
+ */
+case class ShardedJdbcRelation(
+    override val schema: StructType,
+    shards: Seq[JDBCRelation])(@transient val sparkSession: SparkSession)
+  extends BaseRelation with PrunedFilteredScan {
+
+  override def sqlContext: SQLContext = sparkSession.sqlContext
+
+  // 和 JDBCRelation 一致，buildScan 直接返回 InternalRow
+  override val needConversion: Boolean = false
+
+  override def unhandledFilters(filters: Array[Filter]): Array[Filter] = {
+    shards.head.unhandledFilters(filters)
+  }
+
+  override def buildScan(requiredColumns: Array[String], filters: Array[Filter]): RDD[Row] = {
+    sparkSession.sparkContext.union(shards.map(_.buildScan(requiredColumns, filters)))
+  }
+
+  override def toString: String = {
+    s"ShardedJDBCRelation(${shards.head.jdbcOptions.tableOrQuery}, ...) [numShards=${shards.size}]"
+  }
+}
+
+object ShardedJdbcRelation {
+
+  def createDataFrame(
+      sparkSession: SparkSession,
+      parameters: util.Map[String, String],
+      splits: util.List[JdbcTableSplit]): DataFrame = {
+
+    val params = parameters.asScala.toMap
+    val resolver = sparkSession.sessionState.conf.resolver
+    val timeZoneId = sparkSession.sessionState.conf.sessionLocalTimeZone
+
+    // 分表结构相同，只需要获取一次 schema
+    val schema = JDBCRelation.getSchema(resolver, buildOptions(params, splits.get(0)))
+    val shards = splits.asScala.map { split =>
+      val options = buildOptions(params, split)
+      val parts: Array[Partition] = if (split.getPredicates != null) {
+        split.getPredicates.zipWithIndex.map { case (predicate, index) =>
+          JDBCPartition(predicate, index): Partition
+        }
+      } else {
+        JDBCRelation.columnPartition(schema, resolver, timeZoneId, options)
+      }
+      JDBCRelation(schema, parts, options)(sparkSession)
+    }
+
+    sparkSession.baseRelationToDataFrame(ShardedJdbcRelation(schema, shards)(sparkSession))
+  }
+
+  private def buildOptions(params: Map[String, String], split: JdbcTableSplit): JDBCOptions = {
+    var options = params + (JDBCOptions.JDBC_TABLE_NAME -> split.getDbtable)
+    if (split.getPredicates == null && StringUtils.isNotBlank(split.getPartitionColumn)) {
+      options = options +
+        (JDBCOptions.JDBC_PARTITION_COLUMN -> split.getPartitionColumn) +
+        (JDBCOptions.JDBC_LOWER_BOUND -> split.getLowerBound) +
+        (JDBCOptions.JDBC_UPPER_BOUND -> split.getUpperBound)
+      if (split.getNumPartitions != null) {
+        options = options + (JDBCOptions.JDBC_NUM_PARTITIONS -> split.getNumPartitions.toString)
+      }
+    }
+    new JDBCOptions(options)
+  }
+}
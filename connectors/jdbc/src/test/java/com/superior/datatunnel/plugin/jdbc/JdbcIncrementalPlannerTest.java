@@ -0,0 +1,61 @@
+package com.superior.datatunnel.plugin.jdbc;
+
+import com.superior.datatunnel.api.DataTunnelException;
+import org.junit.Test;
+
+import static com.superior.datatunnel.api.DataSourceType.MYSQL;
+import static com.superior.datatunnel.api.DataSourceType.ORACLE;
+import static com.superior.datatunnel.api.DataSourceType.POSTGRESQL;
+import static com.superior.datatunnel.api.DataSourceType.SQLSERVER;
+import static org.junit.Assert.assertEquals;
+
+public class JdbcIncrementalPlannerTest {
+
+    @Test
+    public void testNoLookback() {
+        assertEquals("100", JdbcIncrementalPlanner.lookbackLiteral(MYSQL, "100", 0));
+        assertEquals("'abc'", JdbcIncrementalPlanner.lookbackLiteral(MYSQL, "'abc'", 0));
+    }
+
+    @Test
+    public void testNumberLookback() {
+        assertEquals("90", JdbcIncrementalPlanner.lookbackLiteral(MYSQL, "100", 10));
+        assertEquals("-5.5", JdbcIncrementalPlanner.lookbackLiteral(MYSQL, "4.5", 10));
+    }
+
+    @Test
+    public void testTimestampLookback() {
+        assertEquals("TIMESTAMP '2024-01-01 09:59:00.000001'", JdbcIncrementalPlanner.lookbackLiteral(
+                MYSQL, "TIMESTAMP '2024-01-01 10:00:00.000001'", 60));
+        // watermark written by Timestamp.toString
+        assertEquals("TIMESTAMP '2023-12-31 23:55:00.000000'", JdbcIncrementalPlanner.lookbackLiteral(
+                POSTGRESQL, "TIMESTAMP '2024-01-01 00:00:00.0'", 300));
+        assertEquals("TO_TIMESTAMP('2024-01-01 09:00:00.123456789', 'YYYY-MM-DD HH24:MI:SS.FF')",
+                JdbcIncrementalPlanner.lookbackLiteral(ORACLE,
+                        "TO_TIMESTAMP('2024-01-01 10:00:00.123456789', 'YYYY-MM-DD HH24:MI:SS.FF')", 3600));
+        assertEquals("CAST('2024-01-01T09:59:59.000000' AS DATETIME2)", JdbcIncrementalPlanner.lookbackLiteral(
+                SQLSERVER, "CAST('2024-01-01T10:00:00.000000' AS DATETIME2)", 1));
+    }
+
+    @Test
+    public void testTimestampWithTimeZoneLookback() {
+        assertEquals("TIMESTAMP WITH TIME ZONE '2024-01-01 09:59:00.000000+08:00'",
+                JdbcIncrementalPlanner.lookbackLiteral(POSTGRESQL,
+                        "TIMESTAMP WITH TIME ZONE '2024-01-01 10:00:00.000000+08:00'", 60));
+        assertEquals("CAST('2024-01-01T09:59:00.000000Z' AS DATETIMEOFFSET)", JdbcIncrementalPlanner.lookbackLiteral(
+                SQLSERVER, "CAST('2024-01-01T10:00:00.000000Z' AS DATETIMEOFFSET)", 60));
+    }
+
+    @Test
+    public void testDateLookback() {
+        // less than one day still goes back a whole day
+        assertEquals("DATE '2023-12-31'", JdbcIncrementalPlanner.lookbackLiteral(MYSQL, "DATE '2024-01-01'", 60));
+        assertEquals("TO_DATE('2023-12-30', 'YYYY-MM-DD')", JdbcIncrementalPlanner.lookbackLiteral(
+                ORACLE, "TO_DATE('2024-01-01', 'YYYY-MM-DD')", 86401));
+    }
+
+    @Test(expected = DataTunnelException.class)
+    public void testStringLookback() {
+        JdbcIncrementalPlanner.lookbackLiteral(MYSQL, "'abc'", 10);
+    }
+}
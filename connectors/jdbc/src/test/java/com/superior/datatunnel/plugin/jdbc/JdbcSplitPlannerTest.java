@@ -0,0 +1,127 @@
+package com.superior.datatunnel.plugin.jdbc;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.superior.datatunnel.api.DataSourceType.MYSQL;
+import static com.superior.datatunnel.api.DataSourceType.ORACLE;
+import static com.superior.datatunnel.api.DataSourceType.POSTGRESQL;
+import static com.superior.datatunnel.api.DataSourceType.SQLSERVER;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JdbcSplitPlannerTest {
+
+    @Test
+    public void testNumberAndStringLiteral() {
+        assertEquals("12", JdbcSplitPlanner.toSqlLiteral(MYSQL, 12L));
+        assertEquals("0.00000001", JdbcSplitPlanner.toSqlLiteral(MYSQL, new BigDecimal("1E-8")));
+        assertEquals("'it''s'", JdbcSplitPlanner.toSqlLiteral(ORACLE, "it's"));
+        assertNull(JdbcSplitPlanner.toSqlLiteral(MYSQL, new byte[]{1}));
+    }
+
+    @Test
+    public void testTimestampLiteral() {
+        LocalDateTime value = LocalDateTime.of(2024, 3, 1, 8, 5, 9, 120000000);
+        assertEquals("TIMESTAMP '2024-03-01 08:05:09.120000'", JdbcSplitPlanner.toSqlLiteral(MYSQL, value));
+        assertEquals("TIMESTAMP '2024-03-01 08:05:09.120000'", JdbcSplitPlanner.toSqlLiteral(POSTGRESQL, value));
+        assertEquals("TO_TIMESTAMP('2024-03-01 08:05:09.120000', 'YYYY-MM-DD HH24:MI:SS.FF')",
+                JdbcSplitPlanner.toSqlLiteral(ORACLE, value));
+        assertEquals("CAST('2024-03-01T08:05:09.120000' AS DATETIME2)",
+                JdbcSplitPlanner.toSqlLiteral(SQLSERVER, value));
+
+        // nanoseconds are kept, 100ns precision of sql server
+        assertEquals("CAST('2024-03-01T08:05:09.1234567' AS DATETIME2)",
+                JdbcSplitPlanner.toSqlLiteral(SQLSERVER, value.withNano(123456700)));
+        assertEquals("TO_TIMESTAMP('2024-03-01 08:05:09.123456789', 'YYYY-MM-DD HH24:MI:SS.FF')",
+                JdbcSplitPlanner.toSqlLiteral(ORACLE, value.withNano(123456789)));
+
+        // java.sql.Timestamp is rendered from its local date time, no time zone shift
+        assertEquals("TIMESTAMP '2024-03-01 08:05:09.120000'",
+                JdbcSplitPlanner.toSqlLiteral(MYSQL, java.sql.Timestamp.valueOf(value)));
+    }
+
+    @Test
+    public void testOffsetTimestampLiteral() {
+        OffsetDateTime value = OffsetDateTime.of(2024, 3, 1, 8, 5, 9, 0, ZoneOffset.ofHours(8));
+        assertEquals("TIMESTAMP WITH TIME ZONE '2024-03-01 08:05:09.000000+08:00'",
+                JdbcSplitPlanner.toSqlLiteral(POSTGRESQL, value));
+        assertEquals("TO_TIMESTAMP_TZ('2024-03-01 08:05:09.000000 +08:00', 'YYYY-MM-DD HH24:MI:SS.FF TZH:TZM')",
+                JdbcSplitPlanner.toSqlLiteral(ORACLE, value));
+        assertEquals("TIMESTAMP WITH TIME ZONE '2024-03-01 08:05:09.000000+00:00'",
+                JdbcSplitPlanner.toSqlLiteral(POSTGRESQL, value.withOffsetSameLocal(ZoneOffset.UTC)));
+    }
+
+    @Test
+    public void testDateLiteral() {
+        LocalDate value = LocalDate.of(2024, 3, 1);
+        assertEquals("DATE '2024-03-01'", JdbcSplitPlanner.toSqlLiteral(MYSQL, value));
+        assertEquals("TO_DATE('2024-03-01', 'YYYY-MM-DD')", JdbcSplitPlanner.toSqlLiteral(ORACLE, value));
+        assertEquals("CAST('2024-03-01' AS DATE)", JdbcSplitPlanner.toSqlLiteral(SQLSERVER, value));
+        assertEquals("DATE '2024-03-01'", JdbcSplitPlanner.toSqlLiteral(MYSQL, java.sql.Date.valueOf(value)));
+    }
+
+    @Test
+    public void testBuildPredicates() {
+        String[] predicates = JdbcSplitPlanner.buildPredicates(MYSQL, "id", Arrays.asList(10, 10, 20, 35));
+        assertArrayEquals(new String[]{
+                "id < 10 OR id IS NULL",
+                "id >= 10 AND id < 20",
+                "id >= 20 AND id < 35",
+                "id >= 35"}, predicates);
+
+        assertArrayEquals(new String[]{"1=1"},
+                JdbcSplitPlanner.buildPredicates(MYSQL, "id", Collections.emptyList()));
+        assertNull(JdbcSplitPlanner.buildPredicates(MYSQL, "id", Collections.singletonList(new Object())));
+    }
+
+    private static Map<String, Object> histogram(String type, String dataType, List<?>... buckets) {
+        Map<String, Object> histogram = new HashMap<>();
+        histogram.put("histogram-type", type);
+        histogram.put("data-type", dataType);
+        histogram.put("buckets", Arrays.asList(buckets));
+        return histogram;
+    }
+
+    @Test
+    public void testEquiHeightHistogramBounds() {
+        // 25% of the values are null, the last cumulative frequency is 0.75
+        Map<String, Object> histogram = histogram("equi-height", "int",
+                Arrays.asList(1, 100, 0.25, 100),
+                Arrays.asList(101, 102, 0.5, 2),
+                Arrays.asList(103, 5000, 0.75, 3000));
+        assertEquals(Arrays.asList(100, 102), JdbcSplitPlanner.histogramBounds(histogram, 3));
+        assertEquals(Arrays.asList(100, 102, 102, 5000), JdbcSplitPlanner.histogramBounds(histogram, 5));
+    }
+
+    @Test
+    public void testSingletonHistogramBounds() {
+        Map<String, Object> histogram = histogram("singleton", "datetime",
+                Arrays.asList("2024-01-01 00:00:00.000000", 0.5),
+                Arrays.asList("2024-01-02 12:30:00.500000", 1.0));
+        assertEquals(Collections.singletonList(LocalDateTime.of(2024, 1, 1, 0, 0)),
+                JdbcSplitPlanner.histogramBounds(histogram, 2));
+
+        Map<String, Object> strings = histogram("singleton", "string",
+                Arrays.asList("base64:type254:YQ==", 0.5), Arrays.asList("base64:type254:Yg==", 1.0));
+        assertNull(JdbcSplitPlanner.histogramBounds(strings, 2));
+    }
+
+    @Test
+    public void testCleanCondition() {
+        assertEquals("id > 1", JdbcSplitPlanner.cleanCondition(" WHERE id > 1 "));
+        assertEquals("whereabouts = 1", JdbcSplitPlanner.cleanCondition("whereabouts = 1"));
+        assertNull(JdbcSplitPlanner.cleanCondition(null));
+    }
+}
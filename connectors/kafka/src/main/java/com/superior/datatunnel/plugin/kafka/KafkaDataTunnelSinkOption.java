@@ -2,6 +2,7 @@ package com.superior.datatunnel.plugin.kafka;
 
 import com.superior.datatunnel.api.ParamKey;
 import com.superior.datatunnel.api.model.BaseSinkOption;
+import com.superior.datatunnel.common.annotation.OptionDesc;
 
 import javax.validation.constraints.NotBlank;
 
@@ -14,6 +15,54 @@ public class KafkaDataTunnelSinkOption extends BaseSinkOption {
     @NotBlank(message = "kafka.bootstrap.servers can not blank")
     private String servers;
 
+    @OptionDesc("消息序列化格式，可选值：json, avro, protobuf, raw。raw 要求只有一个字段，按原始字节写入")
+    @NotBlank(message = "format can not blank")
+    private String format = "json";
+
+    @OptionDesc("avro schema(json 格式)，为空时根据字段类型生成")
+    private String avroSchema;
+
+    @OptionDesc("protobuf 消息名称，指定 protobufDescriptorFile 时为消息名，否则为 protobuf java 类全名")
+    private String protobufMessageName;
+
+    @OptionDesc("protobuf descriptor 文件路径(protoc --descriptor_set_out 生成)")
+    private String protobufDescriptorFile;
+
+    @OptionDesc("每个 task 已发送未确认的最大消息数，超过时阻塞发送")
+    private int maxInFlightRecords = 10000;
+
+    @OptionDesc("作为消息 key 的字段，相同 key 写入同一个分区")
+    private String keyColumn;
+
+    @OptionDesc("指定消息写入分区的字段(整数)，优先于 keyColumn")
+    private String partitionColumn;
+
+    @OptionDesc("写入前按目标 kafka 分区重新分区，每个 task 只写少量分区")
+    private boolean repartitionByKafkaPartition = false;
+
+    @OptionDesc("投递语义，可选值：at_least_once, transactional。transactional 每个 task 一个 kafka 事务，只保证单个 task 的写入原子性，"
+            + "不是 exactly once：不保证整个作业原子提交，task 事务提交后重试仍会重复写入。不支持 spark.speculation，"
+            + "消费端需要设置 isolation.level=read_committed")
+    @NotBlank(message = "deliveryGuarantee can not blank")
+    private String deliveryGuarantee = "at_least_once";
+
+    @OptionDesc("transactional 事务 id 前缀，同时写同一个 topic 的作业需要不同的前缀，默认为 topic 名称。"
+            + "事务 id 为 前缀-stageId-partitionId，作业异常退出后重新运行时 stageId 不同，不会 fence 上次运行未结束的事务，"
+            + "read_committed 消费端会阻塞到该事务超时(transactionTimeoutMs)后被 broker 回滚")
+    private String transactionalIdPrefix;
+
+    @OptionDesc("transactional 事务超时时间(毫秒)，需要大于单个 task 的写入时间，不能超过 broker 的 transaction.max.timeout.ms。"
+            + "作业异常退出时未提交的事务最长阻塞 read_committed 消费端这段时间")
+    private int transactionTimeoutMs = 900000;
+
+    public int getTransactionTimeoutMs() {
+        return transactionTimeoutMs;
+    }
+
+    public void setTransactionTimeoutMs(int transactionTimeoutMs) {
+        this.transactionTimeoutMs = transactionTimeoutMs;
+    }
+
     public String getTopic() {
         return topic;
     }
@@ -29,4 +78,84 @@ public class KafkaDataTunnelSinkOption extends BaseSinkOption {
     public void setServers(String servers) {
         this.servers = servers;
     }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public String getAvroSchema() {
+        return avroSchema;
+    }
+
+    public void setAvroSchema(String avroSchema) {
+        this.avroSchema = avroSchema;
+    }
+
+    public String getProtobufMessageName() {
+        return protobufMessageName;
+    }
+
+    public void setProtobufMessageName(String protobufMessageName) {
+        this.protobufMessageName = protobufMessageName;
+    }
+
+    public String getProtobufDescriptorFile() {
+        return protobufDescriptorFile;
+    }
+
+    public void setProtobufDescriptorFile(String protobufDescriptorFile) {
+        this.protobufDescriptorFile = protobufDescriptorFile;
+    }
+
+    public int getMaxInFlightRecords() {
+        return maxInFlightRecords;
+    }
+
+    public void setMaxInFlightRecords(int maxInFlightRecords) {
+        this.maxInFlightRecords = maxInFlightRecords;
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    public void setKeyColumn(String keyColumn) {
+        this.keyColumn = keyColumn;
+    }
+
+    public String getPartitionColumn() {
+        return partitionColumn;
+    }
+
+    public void setPartitionColumn(String partitionColumn) {
+        this.partitionColumn = partitionColumn;
+    }
+
+    public boolean isRepartitionByKafkaPartition() {
+        return repartitionByKafkaPartition;
+    }
+
+    public void setRepartitionByKafkaPartition(boolean repartitionByKafkaPartition) {
+        this.repartitionByKafkaPartition = repartitionByKafkaPartition;
+    }
+
+    public String getDeliveryGuarantee() {
+        return deliveryGuarantee;
+    }
+
+    public void setDeliveryGuarantee(String deliveryGuarantee) {
+        this.deliveryGuarantee = deliveryGuarantee;
+    }
+
+    public String getTransactionalIdPrefix() {
+        return transactionalIdPrefix;
+    }
+
+    public void setTransactionalIdPrefix(String transactionalIdPrefix) {
+        this.transactionalIdPrefix = transactionalIdPrefix;
+    }
 }
@@ -8,9 +8,22 @@ import javax.validation.constraints.NotBlank;
 
 public class KafkaDataTunnelSourceOption extends BaseSourceOption {
 
-    @NotBlank(message = "如果是json 格式，解析第一层")
+    @OptionDesc("消息格式，可选值：text, json, avro, csv。text 输出 message 字段，其它格式每条消息只解析一次，第一层字段展开为列")
+    @NotBlank(message = "format can not blank")
     private String format = "text";
 
+    @OptionDesc("json、csv 消息的 schema，DDL 格式，例如: id INT, name STRING。未设置时从 topic 每个分区最新的消息中采样推断，schema 只在启动时推断一次")
+    private String schema;
+
+    @OptionDesc("推断 schema 时采样的消息数量，平均分配到每个分区")
+    private int schemaSampleSize = 1000;
+
+    @OptionDesc("avro 消息的 schema，json 格式，format = avro 时必须设置")
+    private String avroSchema;
+
+    @OptionDesc("csv 消息字段分隔符")
+    private String csvDelimiter = ",";
+
     private String assign;
 
     private String subscribe;
@@ -36,10 +49,18 @@ public class KafkaDataTunnelSourceOption extends BaseSourceOption {
     @ParamKey("kafka.group.id")
     private String kafkaGroupId;
 
+    @OptionDesc("查询结果包含 kafka key、topic、timestamp、timestampType、partition、offset 字段。写入 jdbc 且 writeMode 为 upsert、upsert_staging 时必须为 true。json、csv、avro 消息字段与这些字段重名时，消息字段加 value_ 前缀")
     private boolean includeHeaders = false;
 
     private String startingOffsetsByTimestampStrategy = "error";
 
+    @OptionDesc("每个 micro-batch 最多读取的 offset 数量，按 topic 分区的数据量比例分配，默认不限制")
+    private Long maxOffsetsPerTrigger;
+
+    @OptionDesc("micro-batch 触发间隔，例如: 1 seconds, 1 minute")
+    @NotBlank(message = "triggerInterval can not blank")
+    private String triggerInterval = "1 seconds";
+
     @OptionDesc("checkpoint 存储位置")
     @NotBlank(message = "checkpointLocation can not blank")
     private String checkpointLocation;
@@ -52,6 +73,38 @@ public class KafkaDataTunnelSourceOption extends BaseSourceOption {
         this.format = format;
     }
 
+    public String getSchema() {
+        return schema;
+    }
+
+    public void setSchema(String schema) {
+        this.schema = schema;
+    }
+
+    public int getSchemaSampleSize() {
+        return schemaSampleSize;
+    }
+
+    public void setSchemaSampleSize(int schemaSampleSize) {
+        this.schemaSampleSize = schemaSampleSize;
+    }
+
+    public String getAvroSchema() {
+        return avroSchema;
+    }
+
+    public void setAvroSchema(String avroSchema) {
+        this.avroSchema = avroSchema;
+    }
+
+    public String getCsvDelimiter() {
+        return csvDelimiter;
+    }
+
+    public void setCsvDelimiter(String csvDelimiter) {
+        this.csvDelimiter = csvDelimiter;
+    }
+
     public String getAssign() {
         return assign;
     }
@@ -148,6 +201,22 @@ public class KafkaDataTunnelSourceOption extends BaseSourceOption {
         this.startingOffsetsByTimestampStrategy = startingOffsetsByTimestampStrategy;
     }
 
+    public Long getMaxOffsetsPerTrigger() {
+        return maxOffsetsPerTrigger;
+    }
+
+    public void setMaxOffsetsPerTrigger(Long maxOffsetsPerTrigger) {
+        this.maxOffsetsPerTrigger = maxOffsetsPerTrigger;
+    }
+
+    public String getTriggerInterval() {
+        return triggerInterval;
+    }
+
+    public void setTriggerInterval(String triggerInterval) {
+        this.triggerInterval = triggerInterval;
+    }
+
     public String getCheckpointLocation() {
         return checkpointLocation;
     }
@@ -8,19 +8,21 @@ import com.superior.datatunnel.common.util.JdbcUtils.execute
 import com.superior.datatunnel.common.util.{CommonUtils, JdbcUtils}
 import com.superior.datatunnel.plugin.hive.HiveDataTunnelSinkOption
 import com.superior.datatunnel.plugin.jdbc.JdbcDataTunnelSinkOption
+import com.superior.datatunnel.plugin.jdbc.support.JdbcDialectUtils
 import com.superior.datatunnel.plugin.kafka.{KafkaDataTunnelSinkOption, KafkaDataTunnelSourceOption}
 import com.superior.datatunnel.plugin.kafka.util.HudiUtils
 import org.apache.commons.lang3.StringUtils
 import org.apache.hadoop.fs.{FileSystem, Path}
 import org.apache.spark.internal.Logging
 import org.apache.spark.sql.execution.datasources.jdbc.JDBCOptions
+import org.apache.spark.sql.expressions.Window
+import org.apache.spark.sql.functions.{col, expr, row_number}
 import org.apache.spark.sql.jdbc.JdbcDialects
 import org.apache.spark.sql.streaming.{OutputMode, Trigger}
 import org.apache.spark.sql.{DataFrame, Dataset, Row, SaveMode, SparkSession}
 
 import java.sql.Connection
 import java.util
-import scala.concurrent.duration.DurationInt
 import scala.collection.JavaConverters._
 
 /**
@@ -28,6 +30,8 @@ import scala.collection.JavaConverters._
  */
 class KafkaDataTunnelSource extends DataTunnelSource with Logging {
 
+  import KafkaDataTunnelSource._
+
   override def read(context: DataTunnelContext): Dataset[Row] = {
     val tmpTable = "tdl_datatunnel_kafka_" + System.currentTimeMillis()
     val sourceOption = context.getSourceOption.asInstanceOf[KafkaDataTunnelSourceOption]
@@ -99,13 +103,14 @@ class KafkaDataTunnelSource extends DataTunnelSource with Logging {
       dataset.createTempView(tdlName)
 
       val jdbcSinkOption = context.getSinkOption.asInstanceOf[JdbcDataTunnelSinkOption]
-      val sinkDatabaseName = jdbcSinkOption.getDatabaseName
+      val dataSourceType = jdbcSinkOption.getDataSourceType
+      val schemaName = StringUtils.defaultIfBlank(jdbcSinkOption.getSchemaName, jdbcSinkOption.getDatabaseName)
       val sinkTableName = jdbcSinkOption.getTableName
-      val table = sinkDatabaseName + "." + sinkTableName
+      val table = schemaName + "." + sinkTableName
 
       var jdbcUrl = jdbcSinkOption.getJdbcUrl
       if (StringUtils.isBlank(jdbcUrl)) {
-        jdbcUrl = JdbcUtils.buildJdbcUrl(jdbcSinkOption.getDataSourceType, jdbcSinkOption.getHost,
+        jdbcUrl = JdbcUtils.buildJdbcUrl(dataSourceType, jdbcSinkOption.getHost,
           jdbcSinkOption.getPort, jdbcSinkOption.getDatabaseName, jdbcSinkOption.getSid, jdbcSinkOption.getServiceName)
       }
 
@@ -115,14 +120,26 @@ class KafkaDataTunnelSource extends DataTunnelSource with Logging {
       val writeMode = jdbcSinkOption.getWriteMode
       var mode = SaveMode.Append
       if (WriteMode.OVERWRITE == writeMode) mode = SaveMode.Overwrite
+      val upsert = WriteMode.UPSERT == writeMode || WriteMode.UPSERT_STAGING == writeMode
 
       val truncate = jdbcSinkOption.isTruncate
 
-      val sql = CommonUtils.genOutputSql(dataset, sourceOption.getColumns, jdbcSinkOption.getColumns, jdbcSinkOption.getDataSourceType)
-      dataset = sparkSession.sql(sql)
+      val projections = CommonUtils.genOutputColumns(sourceOption.getColumns, jdbcSinkOption.getColumns).map(expr)
+      dataset = if (upsert) {
+        // upsert 去重时按 kafka 消息的 partition、offset、timestamp 确定先后顺序，作为隐藏字段保留到写入前
+        val sourceColumns = dataset.columns.map(_.toLowerCase)
+        if (!KAFKA_ORDER_COLUMNS.forall(sourceColumns.contains)) {
+          throw new DataTunnelException("writeMode = upsert 需要设置 includeHeaders = true，查询结果需要包含 kafka "
+            + KAFKA_ORDER_COLUMNS.mkString("、") + " 字段，用于相同主键的消息按写入顺序去重")
+        }
+        val orderColumns = KAFKA_ORDER_COLUMNS.map(name => col(name).as(KAFKA_ORDER_COLUMN_PREFIX + name))
+        dataset.select(projections ++ orderColumns: _*)
+      } else {
+        dataset.select(projections: _*)
+      }
 
       val preactions = jdbcSinkOption.getPreActions
-      if (StringUtils.isNotBlank(preactions)) {
+      if (StringUtils.isNotBlank(preactions) || upsert) {
         val options = jdbcSinkOption.getParams
         options.put("user", jdbcSinkOption.getUsername)
         connection = buildConnection(jdbcUrl, table, options)
@@ -136,15 +153,38 @@ class KafkaDataTunnelSource extends DataTunnelSource with Logging {
         }
       }
 
+      // upsert 模式下，同一个 micro-batch 中相同主键只写入最后一条记录
+      val keyColumns = if (upsert) {
+        val databaseDialect = JdbcDialectUtils.getDatabaseDialect(connection, dataSourceType.name)
+        val primaryKeys = databaseDialect.getKeyFieldNames(schemaName, sinkTableName)
+        if (primaryKeys.isEmpty) {
+          throw new DataTunnelException(s"$table 没有主键，不支持 upsert")
+        }
+        logInfo(s"$table primary keys: ${primaryKeys.mkString(",")}")
+        primaryKeys
+      } else {
+        Array.empty[String]
+      }
+
+      // 元数据读取完成后关闭连接，不在整个流式作业期间占用
+      JdbcUtils.close(connection)
+      connection = null
+
       val checkpointLocation = sourceOption.getCheckpointLocation
       val query = dataset.writeStream
-        .trigger(Trigger.ProcessingTime(1.seconds))
+        .trigger(Trigger.ProcessingTime(sourceOption.getTriggerInterval))
         .outputMode(OutputMode.Update)
         .option("checkpointLocation", checkpointLocation)
         .foreachBatch { (batchDF: DataFrame, batchId: Long) =>
-          batchDF.write
-            .format("jdbc")
+          val dataFrame = if (keyColumns.nonEmpty) {
+            KafkaDataTunnelSource.dropDuplicateKeys(batchDF, keyColumns)
+          } else {
+            batchDF
+          }
+          val dataFrameWriter = dataFrame.write
+            .format("datatunnel-jdbc")
             .mode(mode)
+            .options(jdbcSinkOption.getProperties)
             .option("url", jdbcUrl)
             .option("dbtable", table)
             .option("batchsize", batchsize)
@@ -152,7 +192,16 @@ class KafkaDataTunnelSource extends DataTunnelSource with Logging {
             .option("truncate", truncate)
             .option("user", jdbcSinkOption.getUsername)
             .option("password", jdbcSinkOption.getPassword)
-            .save
+            .option("writeMode", writeMode.name().toLowerCase)
+            .option("dataSourceType", dataSourceType.name)
+            .option("isolationLevel", jdbcSinkOption.getIsolationLevel)
+            .option("bulkLoad", jdbcSinkOption.isBulkLoad)
+            .option("multiRowInsert", jdbcSinkOption.isMultiRowInsert)
+
+          if (jdbcSinkOption.getMaxConnections != null) {
+            dataFrameWriter.option("maxConnections", jdbcSinkOption.getMaxConnections.toString)
+          }
+          dataFrameWriter.save()
         }.start()
 
       query.awaitTermination()
@@ -188,3 +237,32 @@ class KafkaDataTunnelSource extends DataTunnelSource with Logging {
     if (!fs.exists(new Path(path))) fs.mkdirs(new Path(path))
   }
 }
+
+object KafkaDataTunnelSource {
+
+  // upsert 去重使用的 kafka 消息字段，写入前删除
+  private[reader] val KAFKA_ORDER_COLUMNS = Seq("partition", "offset", "timestamp")
+
+  private[reader] val KAFKA_ORDER_COLUMN_PREFIX = "__kafka_"
+
+  /**
+   * 按主键去重，保留 micro-batch 中最后一条记录。offset 只在同一个 kafka 分区内有序：
+   * 先在每个主键、kafka 分区内保留 offset 最大的记录，不同分区之间再按 timestamp 保留最新的记录，
+   * timestamp 相同时保留 kafka 分区编号大的记录
+   */
+  def dropDuplicateKeys(batchDF: DataFrame, keyColumns: Array[String]): DataFrame = {
+    val rowNumCol = "__datatunnel_row_num"
+    val partitionCol = col(KAFKA_ORDER_COLUMN_PREFIX + "partition")
+    val offsetCol = col(KAFKA_ORDER_COLUMN_PREFIX + "offset")
+    val timestampCol = col(KAFKA_ORDER_COLUMN_PREFIX + "timestamp")
+    val keys = keyColumns.map(col)
+
+    val partitionWindow = Window.partitionBy(keys :+ partitionCol: _*).orderBy(offsetCol.desc)
+    val keyWindow = Window.partitionBy(keys: _*).orderBy(timestampCol.desc, partitionCol.desc)
+    batchDF.withColumn(rowNumCol, row_number().over(partitionWindow))
+      .where(col(rowNumCol) === 1)
+      .withColumn(rowNumCol, row_number().over(keyWindow))
+      .where(col(rowNumCol) === 1)
+      .drop(rowNumCol +: KAFKA_ORDER_COLUMNS.map(KAFKA_ORDER_COLUMN_PREFIX + _): _*)
+  }
+}
@@ -47,6 +47,9 @@ object KafkaSupport {
     if (StringUtils.isNotBlank(sourceOption.getMaxTriggerDelay)) {
       params.put("maxTriggerDelay", sourceOption.getMaxTriggerDelay)
     }
+    if (sourceOption.getMaxOffsetsPerTrigger != null) {
+      params.put("maxOffsetsPerTrigger", sourceOption.getMaxOffsetsPerTrigger.toString)
+    }
 
     params.put("kafka.bootstrap.servers", sourceOption.getServers)
     params.put("startingOffsets", sourceOption.getStartingOffsets)
@@ -90,7 +93,10 @@ object KafkaSupport {
     val lines = SparkSession.active.readStream.format("kafka")
       .options(options).load
 
-    if (sourceOption.isIncludeHeaders) {
+    val format = StringUtils.defaultIfBlank(sourceOption.getFormat, "text")
+    if (!"text".equalsIgnoreCase(format)) {
+      KafkaValueDeserializer.deserialize(lines, options, sourceOption)
+    } else if (sourceOption.isIncludeHeaders) {
       lines.selectExpr("key", "value", "topic", "timestamp", "timestampType", "partition", "offset")
     } else {
       lines.selectExpr("CAST(value AS STRING) as message")
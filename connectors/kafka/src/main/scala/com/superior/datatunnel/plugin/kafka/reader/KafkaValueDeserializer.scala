@@ -0,0 +1,210 @@
+package com.superior.datatunnel.plugin.kafka.reader
+
+import com.fasterxml.jackson.core.`type`.TypeReference
+import com.gitee.melin.bee.util.JsonUtils
+import com.superior.datatunnel.api.DataTunnelException
+import com.superior.datatunnel.plugin.kafka.KafkaDataTunnelSourceOption
+import org.apache.commons.lang3.StringUtils
+import org.apache.kafka.clients.consumer.KafkaConsumer
+import org.apache.kafka.common.TopicPartition
+import org.apache.kafka.common.serialization.ByteArrayDeserializer
+import org.apache.spark.internal.Logging
+import org.apache.spark.sql.avro.{functions => avro}
+import org.apache.spark.sql.functions.{col, from_csv, from_json}
+import org.apache.spark.sql.types.StructType
+import org.apache.spark.sql.{Column, DataFrame, Encoders, SparkSession}
+
+import java.util
+import java.util.Properties
+import java.util.regex.Pattern
+import scala.collection.JavaConverters._
+
+/**
+ * 把 kafka value 解析为多个字段，每条消息只解析一次(from_json、from_csv、from_avro)，第一层字段展开为列，
+ * 避免在 transform sql 中对每个字段调用一次 get_json_object。json、csv 未指定 schema 时，从 topic 每个分区最新的消息中采样推断
+ */
+object KafkaValueDeserializer extends Logging {
+
+  private val DATA_COLUMN = "__datatunnel_data"
+
+  // 只用于流式读取的参数，批量读取采样消息时去掉
+  private val STREAM_ONLY_OPTIONS = Set("startingOffsets", "maxOffsetsPerTrigger", "maxTriggerDelay",
+    "failOnDataLoss", "startingOffsetsByTimestampStrategy")
+
+  private val TOPIC_OPTIONS = Set("assign", "subscribe", "subscribePattern")
+
+  val HEADER_COLUMNS: Seq[String] = Seq("key", "topic", "timestamp", "timestampType", "partition", "offset")
+
+  // 消息字段与 kafka 字段重名时，消息字段加前缀
+  val VALUE_FIELD_PREFIX = "value_"
+
+  def deserialize(lines: DataFrame, options: util.Map[String, String],
+                  sourceOption: KafkaDataTunnelSourceOption): DataFrame = {
+    val format = StringUtils.lowerCase(sourceOption.getFormat)
+    val data: Column = format match {
+      case "json" =>
+        from_json(col("value").cast("string"), resolveSchema(options, sourceOption))
+      case "csv" =>
+        from_csv(col("value").cast("string"), resolveSchema(options, sourceOption), csvOptions(sourceOption).asJava)
+      case "avro" =>
+        if (StringUtils.isBlank(sourceOption.getAvroSchema)) {
+          throw new DataTunnelException("format = avro 时 avroSchema 不能为空")
+        }
+        avro.from_avro(col("value"), sourceOption.getAvroSchema)
+      case _ =>
+        throw new DataTunnelException("不支持的 format: " + sourceOption.getFormat + ", 可选值：text, json, avro, csv")
+    }
+
+    val parsed = lines.withColumn(DATA_COLUMN, data)
+    if (sourceOption.isIncludeHeaders) {
+      parsed.select(HEADER_COLUMNS.map(col) ++ valueColumns(parsed): _*)
+    } else {
+      parsed.selectExpr(s"$DATA_COLUMN.*")
+    }
+  }
+
+  /**
+   * 展开消息字段，与 kafka 字段重名(不区分大小写)的消息字段加 value_ 前缀，避免出现重复的列
+   */
+  private def valueColumns(parsed: DataFrame): Seq[Column] = {
+    val fields = parsed.schema(DATA_COLUMN).dataType.asInstanceOf[StructType].fieldNames.toSeq
+    val columns = fields.map { name =>
+      if (HEADER_COLUMNS.exists(_.equalsIgnoreCase(name))) {
+        logWarning(s"kafka 消息字段 $name 与 kafka 字段重名，重命名为 $VALUE_FIELD_PREFIX$name")
+        name -> (VALUE_FIELD_PREFIX + name)
+      } else {
+        name -> name
+      }
+    }
+
+    val duplicates = (HEADER_COLUMNS ++ columns.map(_._2))
+      .groupBy(_.toLowerCase).filter(_._2.size > 1).keys
+    if (duplicates.nonEmpty) {
+      throw new DataTunnelException("kafka 消息字段重名: " + duplicates.mkString(",") +
+        "，请设置 schema 参数或者关闭 includeHeaders")
+    }
+    columns.map { case (field, alias) => col(DATA_COLUMN).getField(field).as(alias) }
+  }
+
+  private def csvOptions(sourceOption: KafkaDataTunnelSourceOption): Map[String, String] = {
+    Map("sep" -> sourceOption.getCsvDelimiter)
+  }
+
+  private def resolveSchema(options: util.Map[String, String],
+                            sourceOption: KafkaDataTunnelSourceOption): StructType = {
+    if (StringUtils.isNotBlank(sourceOption.getSchema)) {
+      StructType.fromDDL(sourceOption.getSchema)
+    } else {
+      val schema = inferSchema(options, sourceOption)
+      logInfo("kafka message schema: " + schema.toDDL)
+      schema
+    }
+  }
+
+  /**
+   * 批量读取 topic 每个分区最新的消息推断 schema，共 schemaSampleSize 条。新版本消息增加的字段可以推断出来，
+   * 从最早的消息推断时新增字段会被 from_json 丢弃
+   */
+  private def inferSchema(options: util.Map[String, String],
+                          sourceOption: KafkaDataTunnelSourceOption): StructType = {
+    val spark = SparkSession.active
+    val batchOptions = options.asScala.filter { case (key, _) =>
+      !STREAM_ONLY_OPTIONS.contains(key) && !TOPIC_OPTIONS.contains(key)
+    }
+    val (assign, startingOffsets, endingOffsets) =
+      latestSampleOffsets(options.asScala.toMap, sourceOption.getSchemaSampleSize)
+    val samples = spark.read.format("kafka")
+      .options(batchOptions)
+      .option("assign", assign)
+      .option("startingOffsets", startingOffsets)
+      .option("endingOffsets", endingOffsets)
+      .load()
+      .selectExpr("CAST(value AS STRING)")
+      .where("value IS NOT NULL")
+      .limit(sourceOption.getSchemaSampleSize)
+      .as(Encoders.STRING)
+      .cache()
+
+    try {
+      if (samples.isEmpty) {
+        throw new DataTunnelException("topic 没有消息，无法推断 schema，请设置 schema 参数")
+      }
+
+      val format = StringUtils.lowerCase(sourceOption.getFormat)
+      val schema = if ("json" == format) {
+        spark.read.json(samples).schema
+      } else {
+        spark.read.options(csvOptions(sourceOption)).option("inferSchema", "true").csv(samples).schema
+      }
+
+      val corruptColumn = spark.conf.get("spark.sql.columnNameOfCorruptRecord", "_corrupt_record")
+      StructType(schema.filter(_.name != corruptColumn))
+    } finally {
+      samples.unpersist()
+    }
+  }
+
+  /**
+   * 计算每个分区最新 sampleSize / 分区数 条消息的 offset 范围
+   *
+   * @return (assign, startingOffsets, endingOffsets) json
+   */
+  private def latestSampleOffsets(options: Map[String, String], sampleSize: Int): (String, String, String) = {
+    val props = new Properties()
+    options.foreach { case (key, value) =>
+      if (key.startsWith("kafka.")) {
+        props.put(key.substring("kafka.".length), value)
+      }
+    }
+    props.put("key.deserializer", classOf[ByteArrayDeserializer].getName)
+    props.put("value.deserializer", classOf[ByteArrayDeserializer].getName)
+    props.put("enable.auto.commit", "false")
+
+    val consumer = new KafkaConsumer[Array[Byte], Array[Byte]](props)
+    try {
+      val partitions = topicPartitions(consumer, options)
+      if (partitions.isEmpty) {
+        throw new DataTunnelException("topic 没有分区，无法推断 schema，请设置 schema 参数")
+      }
+
+      val beginning = consumer.beginningOffsets(partitions.asJava)
+      val end = consumer.endOffsets(partitions.asJava)
+      val perPartition = math.max(1, (sampleSize + partitions.size - 1) / partitions.size)
+
+      val assign = new util.HashMap[String, util.List[Integer]]()
+      val startingOffsets = new util.HashMap[String, util.Map[String, java.lang.Long]]()
+      val endingOffsets = new util.HashMap[String, util.Map[String, java.lang.Long]]()
+      partitions.foreach { partition =>
+        val to = end.get(partition).longValue()
+        val from = math.max(beginning.get(partition).longValue(), to - perPartition)
+        val id = partition.partition.toString
+        assign.computeIfAbsent(partition.topic, (_: String) => new util.ArrayList[Integer]())
+          .add(Int.box(partition.partition))
+        startingOffsets.computeIfAbsent(partition.topic, (_: String) => new util.HashMap[String, java.lang.Long]())
+          .put(id, Long.box(from))
+        endingOffsets.computeIfAbsent(partition.topic, (_: String) => new util.HashMap[String, java.lang.Long]())
+          .put(id, Long.box(to))
+      }
+      (JsonUtils.toJSONString(assign), JsonUtils.toJSONString(startingOffsets), JsonUtils.toJSONString(endingOffsets))
+    } finally {
+      consumer.close()
+    }
+  }
+
+  private def topicPartitions(consumer: KafkaConsumer[Array[Byte], Array[Byte]],
+                              options: Map[String, String]): Seq[TopicPartition] = {
+    if (StringUtils.isNotBlank(options.getOrElse("assign", ""))) {
+      JsonUtils.toJavaObject(options("assign"), new TypeReference[util.Map[String, util.List[Integer]]]() {})
+        .asScala.toSeq.flatMap { case (topic, ids) => ids.asScala.map(id => new TopicPartition(topic, id)) }
+    } else {
+      val topics = if (StringUtils.isNotBlank(options.getOrElse("subscribe", ""))) {
+        StringUtils.split(options("subscribe"), ",").map(_.trim).toSeq
+      } else {
+        val pattern = Pattern.compile(options("subscribePattern"))
+        consumer.listTopics().keySet().asScala.filter(topic => pattern.matcher(topic).matches()).toSeq
+      }
+      topics.flatMap(topic => Option(consumer.partitionsFor(topic)).map(_.asScala).getOrElse(Nil))
+        .map(info => new TopicPartition(info.topic, info.partition))
+    }
+  }
+}
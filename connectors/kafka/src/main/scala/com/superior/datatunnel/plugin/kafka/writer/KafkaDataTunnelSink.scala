@@ -1,45 +1,174 @@
 package com.superior.datatunnel.plugin.kafka.writer
 
-import com.gitee.melin.bee.util.JsonUtils
+import com.superior.datatunnel.api.DataTunnelException
 import com.superior.datatunnel.api.model.DataTunnelSinkOption
 import com.superior.datatunnel.api.{DataTunnelContext, DataTunnelSink}
 import com.superior.datatunnel.plugin.kafka.KafkaDataTunnelSinkOption
-import org.apache.kafka.clients.producer.ProducerRecord
-import org.apache.kafka.common.serialization.StringSerializer
+import com.superior.datatunnel.plugin.kafka.writer.KafkaValueSerializer.{KEY_ORDINAL, PARTITION_ORDINAL, VALUE_ORDINAL}
+import org.apache.commons.lang3.StringUtils
+import org.apache.kafka.clients.admin.AdminClient
+import org.apache.kafka.clients.producer.{KafkaProducer, ProducerConfig, ProducerRecord}
+import org.apache.kafka.common.config.ConfigResource
+import org.apache.kafka.common.serialization.ByteArraySerializer
+import org.apache.kafka.common.utils.Utils
+import org.apache.spark.Partitioner
+import org.apache.spark.internal.Logging
+import org.apache.spark.sql.catalyst.InternalRow
 import org.apache.spark.sql.{Dataset, Row}
 
+import java.util.Collections
+import java.util.concurrent.TimeUnit
 import scala.collection.JavaConverters._
+import scala.util.control.NonFatal
 
 /**
  * huaixin 2021/12/7 8:12 PM
  */
-class KafkaDataTunnelSink extends DataTunnelSink {
+class KafkaDataTunnelSink extends DataTunnelSink with Logging {
+
+  import KafkaDataTunnelSink.toRecord
 
   override def sink(dataset: Dataset[Row], context: DataTunnelContext): Unit = {
     val sinkOption = context.getSinkOption.asInstanceOf[KafkaDataTunnelSinkOption]
     val topic = sinkOption.getTopic
-    val options = sinkOption.getParams
+    if (sinkOption.getMaxInFlightRecords <= 0) {
+      throw new DataTunnelException("maxInFlightRecords 必须大于 0")
+    }
 
-    options.put("key.serializer", classOf[StringSerializer].getName)
-    options.put("value.serializer", classOf[StringSerializer].getName)
+    // properties 中为 kafka producer 参数
+    val options = new java.util.HashMap[String, String](sinkOption.getProperties)
+    options.put("key.serializer", classOf[ByteArraySerializer].getName)
+    options.put("value.serializer", classOf[ByteArraySerializer].getName)
     options.put("bootstrap.servers", sinkOption.getServers)
 
     val map = options.asScala.filter{ case (key, _) => !key.startsWith("__") && key != "topic" }
-    val config = collection.immutable.Map(map.toSeq: _*)
-    dataset.writeToKafka(
-      config,
-      row => new ProducerRecord[String, String](topic, convertRowToJSON(row))
-    )
-  }
+    val producerConfig = collection.immutable.Map(map.toSeq: _*)
+
+    val transactional = StringUtils.lowerCase(sinkOption.getDeliveryGuarantee) match {
+      case "at_least_once" => false
+      case "transactional" => true
+      case "exactly_once" => throw new DataTunnelException("不支持 deliveryGuarantee = exactly_once，"
+        + "每个 task 单独提交事务，task 重试会重复写入，使用 transactional 保证单个 task 的写入原子性")
+      case _ => throw new DataTunnelException("不支持的 deliveryGuarantee: " + sinkOption.getDeliveryGuarantee
+        + ", 可选值：at_least_once, transactional")
+    }
+    val config = if (transactional) {
+      // 每个 task 单独提交事务，推测执行的 task 不会被 fence，数据会重复写入
+      if (dataset.sparkSession.sparkContext.getConf.getBoolean("spark.speculation", defaultValue = false)) {
+        throw new DataTunnelException("deliveryGuarantee = transactional 不支持推测执行，请设置 spark.speculation=false")
+      }
+      val timeout = sinkOption.getTransactionTimeoutMs
+      checkTransactionTimeout(producerConfig, timeout)
+      producerConfig + (ProducerConfig.TRANSACTION_TIMEOUT_CONFIG -> timeout.toString)
+    } else {
+      producerConfig
+    }
+    val transactionalIdPrefix = StringUtils.defaultIfBlank(sinkOption.getTransactionalIdPrefix, topic)
+
+    // 直接写 InternalRow，不需要转换为 Row
+    val rdd = KafkaValueSerializer.serialize(dataset, sinkOption).queryExecution.toRdd
+    if (sinkOption.isRepartitionByKafkaPartition) {
+      // 按目标分区 shuffle，每个 task 只写一个或少数几个分区，消息 batch 更大
+      val numPartitions = topicPartitions(config, topic)
+      val partitioned = rdd.mapPartitionsWithIndex { (index, rows) =>
+        var next = index
+        rows.map { row =>
+          val partition = if (!row.isNullAt(PARTITION_ORDINAL)) {
+            row.getInt(PARTITION_ORDINAL)
+          } else if (!row.isNullAt(KEY_ORDINAL)) {
+            // 与 kafka 默认分区器一致
+            Utils.toPositive(Utils.murmur2(row.getBinary(KEY_ORDINAL))) % numPartitions
+          } else {
+            next += 1
+            next % numPartitions
+          }
+          (partition, row.copy())
+        }
+      }.partitionBy(new KafkaPartitioner(numPartitions))
 
-  def convertRowToJSON(row: Row): String = {
-    if (row.schema.fieldNames.length == 1) {
-      row.getString(0)
+      val writer = new RDDKafkaWriter[(Int, InternalRow)](partitioned, sinkOption.getMaxInFlightRecords)
+      val transform = (pair: (Int, InternalRow)) => toRecord(topic, Int.box(pair._1), pair._2)
+      if (transactional) {
+        writer.writeToKafkaTransactional(config, transform, transactionalIdPrefix)
+      } else {
+        writer.writeToKafka(config, transform)
+      }
     } else {
-      val m = row.getValuesMap(row.schema.fieldNames)
-      JsonUtils.toJSONString(m)
+      val writer = new RDDKafkaWriter[InternalRow](rdd, sinkOption.getMaxInFlightRecords)
+      val transform = (row: InternalRow) => {
+        val partition = if (row.isNullAt(PARTITION_ORDINAL)) null else Int.box(row.getInt(PARTITION_ORDINAL))
+        toRecord(topic, partition, row)
+      }
+      if (transactional) {
+        writer.writeToKafkaTransactional(config, transform, transactionalIdPrefix)
+      } else {
+        writer.writeToKafka(config, transform)
+      }
+    }
+  }
+
+  /**
+   * 事务超时时间不能超过 broker 的 transaction.max.timeout.ms，否则 initTransactions 失败
+   */
+  private def checkTransactionTimeout(config: Map[String, String], timeout: Int): Unit = {
+    if (timeout <= 0) {
+      throw new DataTunnelException("transactionTimeoutMs 必须大于 0")
+    }
+
+    val adminConfig: Map[String, Object] = config.filter { case (key, _) => !key.endsWith(".serializer") }
+    val admin = AdminClient.create(adminConfig.asJava)
+    val maxTimeout = try {
+      val node = admin.describeCluster().nodes().get(30, TimeUnit.SECONDS).iterator().next()
+      val resource = new ConfigResource(ConfigResource.Type.BROKER, node.idString())
+      val entry = admin.describeConfigs(Collections.singleton(resource)).all()
+        .get(30, TimeUnit.SECONDS).get(resource).get("transaction.max.timeout.ms")
+      Option(entry).flatMap(e => Option(e.value())).map(_.toLong)
+    } catch {
+      case NonFatal(e) =>
+        logWarning("Failed to get transaction.max.timeout.ms of kafka broker", e)
+        None
+    } finally {
+      admin.close()
+    }
+
+    maxTimeout.filter(timeout > _).foreach { max =>
+      throw new DataTunnelException(s"transactionTimeoutMs($timeout) 超过 broker 的 transaction.max.timeout.ms($max)")
+    }
+  }
+
+  private def topicPartitions(config: Map[String, Object], topic: String): Int = {
+    val producer = new KafkaProducer[Array[Byte], Array[Byte]](config.asJava)
+    try {
+      producer.partitionsFor(topic).size()
+    } finally {
+      producer.close()
     }
   }
 
   override def getOptionClass: Class[_ <: DataTunnelSinkOption] = classOf[KafkaDataTunnelSinkOption]
 }
+
+object KafkaDataTunnelSink {
+
+  private def toRecord(topic: String, partition: Integer, row: InternalRow): ProducerRecord[Array[Byte], Array[Byte]] = {
+    val key = if (row.isNullAt(KEY_ORDINAL)) null else row.getBinary(KEY_ORDINAL)
+    new ProducerRecord[Array[Byte], Array[Byte]](topic, partition, key, row.getBinary(VALUE_ORDINAL))
+  }
+}
+
+/**
+ * spark 分区和 kafka 分区一一对应
+ */
+private class KafkaPartitioner(partitions: Int) extends Partitioner {
+
+  override def numPartitions: Int = partitions
+
+  override def getPartition(key: Any): Int = Utils.toPositive(key.asInstanceOf[Int]) % partitions
+
+  override def equals(other: Any): Boolean = other match {
+    case p: KafkaPartitioner => p.numPartitions == numPartitions
+    case _ => false
+  }
+
+  override def hashCode(): Int = partitions
+}
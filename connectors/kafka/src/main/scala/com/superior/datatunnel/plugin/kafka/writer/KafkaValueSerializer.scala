@@ -0,0 +1,84 @@
+package com.superior.datatunnel.plugin.kafka.writer
+
+import com.superior.datatunnel.api.DataTunnelException
+import com.superior.datatunnel.plugin.kafka.KafkaDataTunnelSinkOption
+import org.apache.commons.lang3.StringUtils
+import org.apache.spark.sql.avro.{functions => avro}
+import org.apache.spark.sql.functions.{col, lit, struct, to_json}
+import org.apache.spark.sql.protobuf.{functions => protobuf}
+import org.apache.spark.sql.types.{BinaryType, IntegerType, StringType}
+import org.apache.spark.sql.{Column, DataFrame}
+
+/**
+ * 把待写入的数据转换为 value(binary), key(binary), partition(int) 三个字段的 DataFrame，序列化由 spark 表达式
+ * (代码生成)完成，写入时直接从 InternalRow 取字节数组，避免每行构建 Map 和 String。
+ * keyColumn 和 partitionColumn 不写入 value，未设置时对应字段为 null
+ */
+object KafkaValueSerializer {
+
+  val VALUE_COLUMN = "value"
+  val KEY_COLUMN = "key"
+  val PARTITION_COLUMN = "partition"
+
+  val VALUE_ORDINAL = 0
+  val KEY_ORDINAL = 1
+  val PARTITION_ORDINAL = 2
+
+  def serialize(dataset: DataFrame, sinkOption: KafkaDataTunnelSinkOption): DataFrame = {
+    val format = StringUtils.lowerCase(sinkOption.getFormat)
+    val keyColumn = sinkOption.getKeyColumn
+    val partitionColumn = sinkOption.getPartitionColumn
+    val fields = dataset.schema.fields
+      .filter(f => !StringUtils.equalsIgnoreCase(f.name, keyColumn) && !StringUtils.equalsIgnoreCase(f.name, partitionColumn))
+    if (fields.isEmpty) {
+      throw new DataTunnelException("除 keyColumn 和 partitionColumn 外没有可以写入 value 的字段")
+    }
+    val row: Column = struct(fields.map(f => col(s"`${f.name}`")): _*)
+
+    val value = format match {
+      case "json" =>
+        // 只有一个字符串字段时按原值写入
+        if (fields.length == 1 && (fields(0).dataType == StringType || fields(0).dataType == BinaryType)) {
+          col(s"`${fields(0).name}`")
+        } else {
+          to_json(row)
+        }
+      case "avro" =>
+        if (StringUtils.isNotBlank(sinkOption.getAvroSchema)) {
+          avro.to_avro(row, sinkOption.getAvroSchema)
+        } else {
+          avro.to_avro(row)
+        }
+      case "protobuf" =>
+        if (StringUtils.isBlank(sinkOption.getProtobufMessageName)) {
+          throw new DataTunnelException("protobuf 格式需要设置 protobufMessageName")
+        }
+        if (StringUtils.isNotBlank(sinkOption.getProtobufDescriptorFile)) {
+          protobuf.to_protobuf(row, sinkOption.getProtobufMessageName, sinkOption.getProtobufDescriptorFile)
+        } else {
+          protobuf.to_protobuf(row, sinkOption.getProtobufMessageName)
+        }
+      case "raw" =>
+        if (fields.length != 1) {
+          throw new DataTunnelException("raw 格式只能写入一个字段, 当前字段: " + fields.map(_.name).mkString(","))
+        }
+        col(s"`${fields(0).name}`")
+      case _ =>
+        throw new DataTunnelException("不支持的 kafka 消息格式: " + sinkOption.getFormat + ", 可选值：json, avro, protobuf, raw")
+    }
+
+    val key = if (StringUtils.isNotBlank(keyColumn)) {
+      // 字符串 key 按 utf8 编码
+      col(s"`$keyColumn`").cast(StringType).cast(BinaryType)
+    } else {
+      lit(null).cast(BinaryType)
+    }
+    val partition = if (StringUtils.isNotBlank(partitionColumn)) {
+      col(s"`$partitionColumn`").cast(IntegerType)
+    } else {
+      lit(null).cast(IntegerType)
+    }
+
+    dataset.select(value.cast(BinaryType).as(VALUE_COLUMN), key.as(KEY_COLUMN), partition.as(PARTITION_COLUMN))
+  }
+}
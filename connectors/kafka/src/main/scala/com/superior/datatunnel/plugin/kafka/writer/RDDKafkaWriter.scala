@@ -21,17 +21,32 @@
 
 package com.superior.datatunnel.plugin.kafka.writer
 
-import org.apache.kafka.clients.producer.{Callback, ProducerRecord}
+import java.util.concurrent.Semaphore
+import java.util.concurrent.atomic.{AtomicLong, AtomicReference}
+
+import org.apache.kafka.clients.producer.{Callback, KafkaProducer, ProducerConfig, ProducerRecord, RecordMetadata}
+import org.apache.kafka.common.errors.ProducerFencedException
+import org.apache.spark.{SparkContext, SparkException, TaskContext}
+import org.apache.spark.internal.Logging
 import org.apache.spark.rdd.RDD
 
+import scala.collection.JavaConverters._
 import scala.reflect.ClassTag
 
 /**
- * Class used for writing [[RDD]]s to Kafka
+ * Class used for writing [[RDD]]s to Kafka. The number of records sent but
+ * not yet acknowledged by each task is bounded, failed sends fail the task and
+ * all records are flushed before the task completes, so a successful task
+ * means all its records were written.
  * @param rdd [[RDD]] to be written to Kafka
+ * @param maxInFlightRecords max number of not acknowledged records of a task
  */
-class RDDKafkaWriter[T: ClassTag](@transient private val rdd: RDD[T])
-    extends KafkaWriter[T] with Serializable {
+class RDDKafkaWriter[T: ClassTag](
+    @transient private val rdd: RDD[T],
+    maxInFlightRecords: Int = RDDKafkaWriter.DEFAULT_MAX_IN_FLIGHT_RECORDS)
+    extends KafkaWriter[T] with Serializable with Logging {
+  require(maxInFlightRecords > 0, s"maxInFlightRecords must be positive: $maxInFlightRecords")
+
   /**
    * Write a [[RDD]] to Kafka
    * @param producerConfig producer configuration for creating KafkaProducer
@@ -42,11 +57,168 @@ class RDDKafkaWriter[T: ClassTag](@transient private val rdd: RDD[T])
     producerConfig: Map[String, Object],
     transformFunc: T => ProducerRecord[K, V],
     callback: Option[Callback] = None
-  ): Unit =
+  ): Unit = {
+    val metrics = new WriteMetrics(rdd.sparkContext)
     rdd.foreachPartition { partition =>
       val producer = KafkaProducerCache.getProducer[K, V](producerConfig)
+      writePartition(producer, partition, transformFunc, callback, metrics)
+    }
+  }
+
+  /**
+   * Write a [[RDD]] to Kafka, records of each task are written in one Kafka
+   * transaction, so the output of a task is atomic. This is not exactly-once:
+   * each task commits its own transaction, the write is not atomic across
+   * tasks and a task retried after its transaction was committed writes its
+   * records again. The transactional id is derived from the stage and the
+   * partition, not from the attempt number, so a retried attempt fences the
+   * previous one while its transaction is still open. A rerun of a crashed
+   * job has different stage ids, so it does not fence the transactions left
+   * open by the previous run: read_committed consumers are blocked until the
+   * broker aborts them after the transaction timeout. Speculative execution
+   * must be disabled and the transaction timeout of the producer config must
+   * be longer than the write of a task. Consumers must read with
+   * isolation.level=read_committed.
+   * @param producerConfig producer configuration for creating KafkaProducer
+   * @param transformFunc a function used to transform values of T type into [[ProducerRecord]]s
+   * @param transactionalIdPrefix prefix of the transactional id of the tasks
+   */
+  def writeToKafkaTransactional[K, V](
+    producerConfig: Map[String, Object],
+    transformFunc: T => ProducerRecord[K, V],
+    transactionalIdPrefix: String
+  ): Unit = {
+    val metrics = new WriteMetrics(rdd.sparkContext)
+    rdd.foreachPartition { partition =>
+      val context = TaskContext.get()
+      val transactionalId = s"$transactionalIdPrefix-${context.stageId()}-${context.partitionId()}"
+      val config = producerConfig +
+        (ProducerConfig.TRANSACTIONAL_ID_CONFIG -> transactionalId) +
+        (ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG -> "true")
+      // Transactional producers can't be shared by tasks
+      val producer = new KafkaProducer[K, V](config.asJava)
+      try {
+        producer.initTransactions()
+        producer.beginTransaction()
+        writePartition(producer, partition, transformFunc, None, metrics)
+        producer.commitTransaction()
+      } catch {
+        case e: ProducerFencedException =>
+          // Another attempt took over the transactional id, nothing to abort
+          throw e
+        case e: Exception =>
+          try producer.abortTransaction() catch {
+            case abortError: Exception => e.addSuppressed(abortError)
+          }
+          throw e
+      } finally {
+        producer.close()
+      }
+    }
+  }
+
+  private def writePartition[K, V](
+    producer: KafkaProducer[K, V],
+    partition: Iterator[T],
+    transformFunc: T => ProducerRecord[K, V],
+    callback: Option[Callback],
+    metrics: WriteMetrics
+  ): Unit = {
+    val tracker = new DeliveryTracker(maxInFlightRecords, callback.orNull)
+    val startTime = System.currentTimeMillis()
+    try {
       partition
         .map(transformFunc)
-        .foreach(record => producer.send(record, callback.orNull))
+        .foreach(record => tracker.send(producer, record))
+    } finally {
+      // Wait for in flight records also when the task fails, so their
+      // callbacks don't outlive the task
+      producer.flush()
+    }
+    tracker.checkFailure()
+
+    metrics.add(tracker)
+    logTaskMetrics(tracker, System.currentTimeMillis() - startTime)
+  }
+
+  private def logTaskMetrics(tracker: DeliveryTracker, elapsedMs: Long): Unit = {
+    val records = tracker.records
+    val taskId = Option(TaskContext.get()).map(_.taskAttemptId()).getOrElse(-1L)
+    val seconds = math.max(elapsedMs, 1) / 1000.0
+    val avgLatency = if (records > 0) tracker.totalLatencyNanos.get() / records / 1000000.0 else 0.0
+    logInfo(f"task $taskId%d wrote $records%d records (${tracker.bytes.get()}%d bytes) to kafka " +
+      f"in $elapsedMs%d ms, ${records / seconds}%.1f records/s, " +
+      f"ack latency avg $avgLatency%.1f ms, max ${tracker.maxLatencyNanos.get() / 1000000}%d ms")
+  }
+}
+
+object RDDKafkaWriter {
+  val DEFAULT_MAX_IN_FLIGHT_RECORDS = 10000
+}
+
+/**
+ * Accumulators of a write, shown per task in the Spark UI
+ */
+private class WriteMetrics(sc: SparkContext) extends Serializable {
+  private val recordsWritten = sc.longAccumulator("kafka.records.written")
+  private val bytesWritten = sc.longAccumulator("kafka.bytes.written")
+  private val ackLatencyMs = sc.longAccumulator("kafka.ack.latency.total.ms")
+
+  def add(tracker: DeliveryTracker): Unit = {
+    recordsWritten.add(tracker.records)
+    bytesWritten.add(tracker.bytes.get())
+    ackLatencyMs.add(tracker.totalLatencyNanos.get() / 1000000)
+  }
+}
+
+/**
+ * Tracks the records of a task sent to Kafka: bounds the not acknowledged
+ * records, keeps the first failure and collects delivery metrics.
+ */
+private class DeliveryTracker(maxInFlightRecords: Int, userCallback: Callback) {
+  private val inFlight = new Semaphore(maxInFlightRecords)
+  private val failure = new AtomicReference[Exception]()
+
+  var records: Long = 0
+  val bytes = new AtomicLong()
+  val totalLatencyNanos = new AtomicLong()
+  val maxLatencyNanos = new AtomicLong()
+
+  def send[K, V](producer: KafkaProducer[K, V], record: ProducerRecord[K, V]): Unit = {
+    checkFailure()
+    // Blocks when the producer can't keep up
+    inFlight.acquire()
+    val sendTime = System.nanoTime()
+    try {
+      producer.send(record, new Callback {
+        override def onCompletion(metadata: RecordMetadata, exception: Exception): Unit = {
+          inFlight.release()
+          if (exception != null) {
+            failure.compareAndSet(null, exception)
+          } else {
+            val latency = System.nanoTime() - sendTime
+            totalLatencyNanos.addAndGet(latency)
+            maxLatencyNanos.accumulateAndGet(latency, (a: Long, b: Long) => math.max(a, b))
+            bytes.addAndGet(math.max(metadata.serializedKeySize(), 0) +
+              math.max(metadata.serializedValueSize(), 0))
+          }
+          if (userCallback != null) {
+            userCallback.onCompletion(metadata, exception)
+          }
+        }
+      })
+    } catch {
+      case e: Exception =>
+        inFlight.release()
+        throw e
+    }
+    records += 1
+  }
+
+  def checkFailure(): Unit = {
+    val e = failure.get()
+    if (e != null) {
+      throw new SparkException("Failed to send records to kafka: " + e.getMessage, e)
     }
+  }
 }
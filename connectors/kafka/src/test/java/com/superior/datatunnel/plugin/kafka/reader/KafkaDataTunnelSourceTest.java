@@ -0,0 +1,73 @@
+package com.superior.datatunnel.plugin.kafka.reader;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class KafkaDataTunnelSourceTest {
+
+    private static SparkSession spark;
+
+    @BeforeClass
+    public static void setUp() {
+        spark = SparkSession.builder()
+                .master("local[1]")
+                .appName("kafka-source-test")
+                .config("spark.ui.enabled", "false")
+                .getOrCreate();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        spark.stop();
+    }
+
+    private static Row row(int id, String name, int partition, long offset, long timestamp) {
+        return RowFactory.create(id, name, partition, offset, new Timestamp(timestamp));
+    }
+
+    @Test
+    public void testDropDuplicateKeys() {
+        StructType schema = new StructType()
+                .add("id", DataTypes.IntegerType)
+                .add("name", DataTypes.StringType)
+                .add("__kafka_partition", DataTypes.IntegerType)
+                .add("__kafka_offset", DataTypes.LongType)
+                .add("__kafka_timestamp", DataTypes.TimestampType);
+
+        List<Row> rows = Arrays.asList(
+                // partition 0: offset 7 is the last record even with an older timestamp
+                row(1, "a", 0, 5, 100),
+                row(1, "b", 0, 7, 90),
+                // partition 1: newer timestamp than the last record of partition 0
+                row(1, "c", 1, 1, 95),
+                row(2, "d", 0, 3, 50),
+                row(2, "e", 0, 4, 50),
+                // same timestamp in two partitions, the larger partition is kept
+                row(3, "f", 2, 8, 70),
+                row(3, "g", 1, 9, 70));
+        Dataset<Row> batch = spark.createDataFrame(rows, schema);
+
+        Dataset<Row> result = KafkaDataTunnelSource.dropDuplicateKeys(batch, new String[]{"id"});
+        assertArrayEquals(new String[]{"id", "name"}, result.columns());
+
+        List<Row> values = result.orderBy("id").collectAsList();
+        assertEquals(3, values.size());
+        assertEquals("c", values.get(0).getString(1));
+        assertEquals("e", values.get(1).getString(1));
+        assertEquals("f", values.get(2).getString(1));
+    }
+}
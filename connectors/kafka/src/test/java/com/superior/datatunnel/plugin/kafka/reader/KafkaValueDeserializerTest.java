@@ -0,0 +1,92 @@
+package com.superior.datatunnel.plugin.kafka.reader;
+
+import com.superior.datatunnel.api.DataTunnelException;
+import com.superior.datatunnel.plugin.kafka.KafkaDataTunnelSourceOption;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class KafkaValueDeserializerTest {
+
+    private static SparkSession spark;
+
+    private static Dataset<Row> lines;
+
+    @BeforeClass
+    public static void setUp() {
+        spark = SparkSession.builder()
+                .master("local[1]")
+                .appName("kafka-value-deserializer-test")
+                .config("spark.ui.enabled", "false")
+                .getOrCreate();
+
+        StructType schema = new StructType()
+                .add("key", DataTypes.BinaryType)
+                .add("value", DataTypes.StringType)
+                .add("topic", DataTypes.StringType)
+                .add("partition", DataTypes.IntegerType)
+                .add("offset", DataTypes.LongType)
+                .add("timestamp", DataTypes.TimestampType)
+                .add("timestampType", DataTypes.IntegerType);
+        Row row = RowFactory.create(new byte[]{1}, "{\"id\": 1, \"timestamp\": 100, \"name\": \"a\"}",
+                "orders", 2, 7L, new Timestamp(1000), 0);
+        lines = spark.createDataFrame(Collections.singletonList(row), schema);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        spark.stop();
+    }
+
+    private static KafkaDataTunnelSourceOption option(String schema, boolean includeHeaders) {
+        KafkaDataTunnelSourceOption option = new KafkaDataTunnelSourceOption();
+        option.setFormat("json");
+        option.setSchema(schema);
+        option.setIncludeHeaders(includeHeaders);
+        return option;
+    }
+
+    @Test
+    public void testValueColumns() {
+        Dataset<Row> result = KafkaValueDeserializer.deserialize(lines, new HashMap<>(),
+                option("id INT, timestamp BIGINT, name STRING", false));
+        assertArrayEquals(new String[]{"id", "timestamp", "name"}, result.columns());
+
+        Row row = result.first();
+        assertEquals(1, row.getInt(0));
+        assertEquals(100L, row.getLong(1));
+        assertEquals("a", row.getString(2));
+    }
+
+    @Test
+    public void testHeaderColumnClash() {
+        Dataset<Row> result = KafkaValueDeserializer.deserialize(lines, new HashMap<>(),
+                option("id INT, timestamp BIGINT, name STRING", true));
+        assertArrayEquals(new String[]{"key", "topic", "timestamp", "timestampType", "partition", "offset",
+                "id", "value_timestamp", "name"}, result.columns());
+
+        Row row = result.first();
+        assertEquals(new Timestamp(1000), row.getTimestamp(2));
+        assertEquals(7L, row.getLong(5));
+        assertEquals(100L, row.getLong(7));
+    }
+
+    @Test(expected = DataTunnelException.class)
+    public void testDuplicateAfterPrefix() {
+        KafkaValueDeserializer.deserialize(lines, new HashMap<>(),
+                option("offset BIGINT, value_offset BIGINT", true));
+    }
+}
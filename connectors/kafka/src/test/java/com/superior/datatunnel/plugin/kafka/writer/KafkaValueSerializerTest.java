@@ -0,0 +1,101 @@
+package com.superior.datatunnel.plugin.kafka.writer;
+
+import com.superior.datatunnel.api.DataTunnelException;
+import com.superior.datatunnel.plugin.kafka.KafkaDataTunnelSinkOption;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KafkaValueSerializerTest {
+
+    private static SparkSession spark;
+
+    @BeforeClass
+    public static void setUp() {
+        spark = SparkSession.builder()
+                .master("local[1]")
+                .appName("kafka-sink-test")
+                .config("spark.ui.enabled", "false")
+                .getOrCreate();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        spark.stop();
+    }
+
+    private static Dataset<Row> dataset() {
+        StructType schema = new StructType()
+                .add("id", DataTypes.IntegerType)
+                .add("name", DataTypes.StringType)
+                .add("part", DataTypes.LongType);
+        return spark.createDataFrame(Collections.singletonList(RowFactory.create(1, "a", 2L)), schema);
+    }
+
+    private static String text(Row row, int ordinal) {
+        return new String((byte[]) row.get(ordinal), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testColumnLayout() {
+        KafkaDataTunnelSinkOption sinkOption = new KafkaDataTunnelSinkOption();
+        sinkOption.setKeyColumn("id");
+        sinkOption.setPartitionColumn("part");
+
+        Dataset<Row> result = KafkaValueSerializer.serialize(dataset(), sinkOption);
+        assertArrayEquals(new String[]{"value", "key", "partition"}, result.columns());
+        assertEquals(DataTypes.BinaryType, result.schema().fields()[KafkaValueSerializer.VALUE_ORDINAL()].dataType());
+        assertEquals(DataTypes.BinaryType, result.schema().fields()[KafkaValueSerializer.KEY_ORDINAL()].dataType());
+        assertEquals(DataTypes.IntegerType,
+                result.schema().fields()[KafkaValueSerializer.PARTITION_ORDINAL()].dataType());
+
+        Row row = result.collectAsList().get(0);
+        // keyColumn and partitionColumn are not written into value
+        assertEquals("{\"name\":\"a\"}", text(row, KafkaValueSerializer.VALUE_ORDINAL()));
+        assertEquals("1", text(row, KafkaValueSerializer.KEY_ORDINAL()));
+        assertEquals(2, row.getInt(KafkaValueSerializer.PARTITION_ORDINAL()));
+    }
+
+    @Test
+    public void testWithoutKeyAndPartition() {
+        Dataset<Row> result = KafkaValueSerializer.serialize(dataset(), new KafkaDataTunnelSinkOption());
+        assertArrayEquals(new String[]{"value", "key", "partition"}, result.columns());
+
+        Row row = result.collectAsList().get(0);
+        assertEquals("{\"id\":1,\"name\":\"a\",\"part\":2}", text(row, KafkaValueSerializer.VALUE_ORDINAL()));
+        assertTrue(row.isNullAt(KafkaValueSerializer.KEY_ORDINAL()));
+        assertTrue(row.isNullAt(KafkaValueSerializer.PARTITION_ORDINAL()));
+    }
+
+    @Test
+    public void testRawFormat() {
+        KafkaDataTunnelSinkOption sinkOption = new KafkaDataTunnelSinkOption();
+        sinkOption.setFormat("raw");
+        sinkOption.setKeyColumn("id");
+
+        Dataset<Row> result = KafkaValueSerializer.serialize(dataset().drop("part"), sinkOption);
+        Row row = result.collectAsList().get(0);
+        assertEquals("a", text(row, KafkaValueSerializer.VALUE_ORDINAL()));
+        assertEquals("1", text(row, KafkaValueSerializer.KEY_ORDINAL()));
+    }
+
+    @Test(expected = DataTunnelException.class)
+    public void testRawFormatWithManyColumns() {
+        KafkaDataTunnelSinkOption sinkOption = new KafkaDataTunnelSinkOption();
+        sinkOption.setFormat("raw");
+        KafkaValueSerializer.serialize(dataset(), sinkOption);
+    }
+}
@@ -29,4 +29,11 @@ public interface SplitReader<T> extends Iterator<T> {
     long getBytesRead();
 
     long getRowsRead();
+
+    /**
+     * Rows read from the table but dropped by pushed down filters.
+     */
+    default long getRowsSkipped() {
+        return 0;
+    }
 }
@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.odps.cupid.table.v1.reader.filter;
+
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.type.TypeInfoParser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates pushed down {@link FilterExpression}s against tunnel records before they are converted.
+ * Only BIGINT/INT/SMALLINT/TINYINT/DOUBLE/FLOAT/STRING/BOOLEAN columns are supported.
+ *
+ * <p>An expression evaluates to the set of results it may have under SQL three-valued logic
+ * (TRUE, FALSE, NULL). A predicate on a column that is not read may have any result, and the
+ * set propagates through NOT/AND/OR. A record is dropped only when TRUE is not possible, so it is
+ * never dropped when the original filter would keep it; callers still evaluate the original
+ * filters after the scan.
+ */
+public final class RecordFilter {
+
+    static final int TRUE = 1;
+
+    static final int FALSE = 2;
+
+    static final int NULL = 4;
+
+    static final int UNKNOWN = TRUE | FALSE | NULL;
+
+    private final FilterExpression[] filters;
+
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+
+    private final Map<String, OdpsType> columnTypes = new HashMap<>();
+
+    public RecordFilter(List<FilterExpression> filters, List<Attribute> readDataColumns) {
+        this.filters = filters.toArray(new FilterExpression[0]);
+        for (int i = 0; i < readDataColumns.size(); i++) {
+            Attribute column = readDataColumns.get(i);
+            columnIndexes.put(column.getName(), i);
+            columnTypes.put(column.getName(),
+                    TypeInfoParser.getTypeInfoFromTypeString(column.getType()).getOdpsType());
+        }
+    }
+
+    public static boolean isSupported(OdpsType odpsType) {
+        switch (odpsType) {
+            case BIGINT:
+            case INT:
+            case SMALLINT:
+            case TINYINT:
+            case DOUBLE:
+            case FLOAT:
+            case STRING:
+            case BOOLEAN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public boolean test(Record record) {
+        for (FilterExpression filter : filters) {
+            if ((eval(filter, record) & TRUE) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int eval(FilterExpression expr, Record record) {
+        switch (expr.getType()) {
+            case AND: {
+                int result = TRUE;
+                for (FilterExpression child : expr.getChildren()) {
+                    result = and(result, eval(child, record));
+                }
+                return result;
+            }
+            case OR: {
+                int result = FALSE;
+                for (FilterExpression child : expr.getChildren()) {
+                    result = or(result, eval(child, record));
+                }
+                return result;
+            }
+            case NOT:
+                return not(eval(expr.getChildren()[0], record));
+            default:
+                break;
+        }
+
+        Integer index = columnIndexes.get(expr.getAttribute());
+        if (index == null) {
+            // column is not read, the predicate may have any result
+            return UNKNOWN;
+        }
+        OdpsType odpsType = columnTypes.get(expr.getAttribute());
+        Object value = getValue(record, index, odpsType);
+        Object literal = expr.getLiteral();
+
+        switch (expr.getType()) {
+            case IS_NULL:
+                return of(value == null);
+            case IS_NOT_NULL:
+                return of(value != null);
+            case EQUAL_NULL_SAFE:
+                if (value == null || literal == null) {
+                    return of(value == null && literal == null);
+                }
+                return of(compare(value, literal) == 0);
+            case IN:
+                if (value == null) {
+                    return NULL;
+                }
+                boolean hasNull = false;
+                for (Object item : (Object[]) literal) {
+                    if (item == null) {
+                        hasNull = true;
+                    } else if (compare(value, item) == 0) {
+                        return TRUE;
+                    }
+                }
+                return hasNull ? NULL : FALSE;
+            default:
+                break;
+        }
+
+        if (value == null || literal == null) {
+            return NULL;
+        }
+
+        switch (expr.getType()) {
+            case EQUAL_TO:
+                return of(compare(value, literal) == 0);
+            case GREATER_THAN:
+                return of(compare(value, literal) > 0);
+            case GREATER_THAN_OR_EQUAL:
+                return of(compare(value, literal) >= 0);
+            case LESS_THAN:
+                return of(compare(value, literal) < 0);
+            case LESS_THAN_OR_EQUAL:
+                return of(compare(value, literal) <= 0);
+            case STRING_STARTS_WITH:
+                return of(value.toString().startsWith(literal.toString()));
+            case STRING_ENDS_WITH:
+                return of(value.toString().endsWith(literal.toString()));
+            case STRING_CONTAINS:
+                return of(value.toString().contains(literal.toString()));
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    private static int of(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    // NOT TRUE = FALSE, NOT FALSE = TRUE, NOT NULL = NULL
+    static int not(int result) {
+        return (result & NULL) | ((result & TRUE) << 1) | ((result & FALSE) >> 1);
+    }
+
+    // possible results of "left AND right" for any combination of possible operand results
+    static int and(int left, int right) {
+        int result = 0;
+        if ((left & TRUE) != 0 && (right & TRUE) != 0) {
+            result |= TRUE;
+        }
+        if (((left | right) & FALSE) != 0) {
+            result |= FALSE;
+        }
+        if (((left & NULL) != 0 && (right & (TRUE | NULL)) != 0)
+                || ((right & NULL) != 0 && (left & (TRUE | NULL)) != 0)) {
+            result |= NULL;
+        }
+        return result;
+    }
+
+    // possible results of "left OR right", the dual of and
+    static int or(int left, int right) {
+        return not(and(not(left), not(right)));
+    }
+
+    private static Object getValue(Record record, int index, OdpsType odpsType) {
+        if (record.isNull(index)) {
+            return null;
+        }
+        if (odpsType == OdpsType.STRING) {
+            return record.getString(index);
+        }
+        return record.get(index);
+    }
+
+    private static int compare(Object value, Object literal) {
+        if (value instanceof Number && literal instanceof Number) {
+            if (isIntegral(value) && isIntegral(literal)) {
+                return Long.compare(((Number) value).longValue(), ((Number) literal).longValue());
+            }
+            return compareDouble(((Number) value).doubleValue(), ((Number) literal).doubleValue());
+        } else if (value instanceof String && literal instanceof String) {
+            // same order as spark UTF8String: unsigned utf-8 bytes
+            return compareUtf8((String) value, (String) literal);
+        } else if (value instanceof Boolean && literal instanceof Boolean) {
+            return Boolean.compare((Boolean) value, (Boolean) literal);
+        }
+        throw new IllegalArgumentException("Can not compare " + value.getClass().getName()
+                + " with " + literal.getClass().getName());
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte;
+    }
+
+    // -0.0 equals 0.0 and NaN is larger than any other value, same as spark
+    private static int compareDouble(double left, double right) {
+        if (left == right) {
+            return 0;
+        }
+        if (Double.isNaN(left)) {
+            return Double.isNaN(right) ? 0 : 1;
+        }
+        if (Double.isNaN(right)) {
+            return -1;
+        }
+        return left < right ? -1 : 1;
+    }
+
+    private static int compareUtf8(String left, String right) {
+        byte[] leftBytes = left.getBytes(StandardCharsets.UTF_8);
+        byte[] rightBytes = right.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(leftBytes.length, rightBytes.length);
+        for (int i = 0; i < length; i++) {
+            int result = (leftBytes[i] & 0xff) - (rightBytes[i] & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return leftBytes.length - rightBytes.length;
+    }
+}
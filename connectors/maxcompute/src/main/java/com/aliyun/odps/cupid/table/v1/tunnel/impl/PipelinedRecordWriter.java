@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.odps.cupid.table.v1.tunnel.impl;
+
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.RecordWriter;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.io.Checksum;
+import com.aliyun.odps.tunnel.io.CompressOption;
+import com.aliyun.odps.tunnel.io.ProtobufRecordPack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 任务线程把 record 序列化、压缩到 ProtobufRecordPack，达到 blockSize 后交给上传线程写入新的 block，
+ * 多个 block 并发上传。最多 maxPendingBlocks 个 pack 等待上传，超过后任务线程等待上传完成，限制内存占用，
+ * 每个 writer 最多缓存 (maxPendingBlocks + 1) 个 pack，每个约 blockSize 字节，默认 (4 + 1) * 32MB = 160MB。
+ * block id 通过 session.getAvailBlockId() 分配，非动态分区写入时 shares 为 task 数量，每个 task 的 block id 不相交。
+ * block 上传失败时不重试(pack 已经被部分发送，不能重复使用)，直接失败由 spark 重试 task。block id 超过上限时直接失败
+ */
+public class PipelinedRecordWriter implements RecordWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipelinedRecordWriter.class);
+
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger(0);
+
+    private final TableTunnel.UploadSession session;
+
+    private final CompressOption compressOption;
+
+    private final long blockSize;
+
+    private final int maxPacks;
+
+    private final ExecutorService uploader;
+
+    private final BlockingQueue<ProtobufRecordPack> freePacks;
+
+    private final AtomicLong bytesWritten = new AtomicLong(0);
+
+    private final AtomicInteger pendingBlocks = new AtomicInteger(0);
+
+    private volatile Throwable error;
+
+    private int createdPacks;
+
+    private ProtobufRecordPack current;
+
+    private boolean closed;
+
+    PipelinedRecordWriter(TableTunnel.UploadSession session,
+                          CompressOption compressOption,
+                          int uploadThreads,
+                          int maxPendingBlocks,
+                          long blockSize) throws IOException {
+        this.session = session;
+        this.compressOption = compressOption;
+        this.blockSize = blockSize;
+        // 上传中的 pack + 任务线程正在写入的 pack
+        this.maxPacks = maxPendingBlocks + 1;
+        this.freePacks = new ArrayBlockingQueue<>(maxPacks);
+        this.uploader = Executors.newFixedThreadPool(uploadThreads, runnable -> {
+            Thread thread = new Thread(runnable, "odps-block-uploader-" + THREAD_INDEX.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.current = nextPack();
+    }
+
+    @Override
+    public void write(Record record) throws IOException {
+        checkError();
+        current.append(record);
+        if (current.getTotalBytes() >= blockSize) {
+            submit(current);
+            current = nextPack();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (error == null && current.getSize() > 0) {
+                submit(current);
+            }
+            uploader.shutdown();
+            while (!uploader.awaitTermination(1, TimeUnit.SECONDS)) {
+                LOG.info("waiting for {} blocks to finish uploading", pendingBlocks.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            uploader.shutdownNow();
+        }
+        checkError();
+    }
+
+    public long getTotalBytes() {
+        return bytesWritten.get();
+    }
+
+    private void submit(ProtobufRecordPack pack) throws IOException {
+        long blockId = session.getAvailBlockId();
+        if (blockId >= Util.MAX_BLOCK_ID) {
+            throw new IOException("block id " + blockId + " exceeds the limit " + Util.MAX_BLOCK_ID
+                    + ", increase " + Util.WRITER_UPLOAD_BLOCK_SIZE + " or reduce the number of write tasks");
+        }
+        pendingBlocks.incrementAndGet();
+        uploader.execute(() -> {
+            try {
+                if (error == null) {
+                    session.writeBlock(blockId, pack);
+                    bytesWritten.addAndGet(pack.getTotalBytes());
+                }
+            } catch (Throwable e) {
+                LOG.error("upload block {} failed", blockId, e);
+                error = e;
+            } finally {
+                pendingBlocks.decrementAndGet();
+                try {
+                    pack.reset();
+                } catch (IOException e) {
+                    error = e;
+                }
+                freePacks.offer(pack);
+            }
+        });
+    }
+
+    private ProtobufRecordPack nextPack() throws IOException {
+        ProtobufRecordPack pack = freePacks.poll();
+        if (pack != null) {
+            return pack;
+        }
+        if (createdPacks < maxPacks) {
+            createdPacks++;
+            return new ProtobufRecordPack(session.getSchema(), new Checksum(), compressOption);
+        }
+
+        try {
+            while (pack == null) {
+                checkError();
+                pack = freePacks.poll(100, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        return pack;
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            }
+            throw new IOException(error);
+        }
+    }
+}
@@ -21,8 +21,10 @@ package com.aliyun.odps.cupid.table.v1.tunnel.impl;
 
 import com.aliyun.odps.cupid.table.v1.Attribute;
 import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
 import com.aliyun.odps.cupid.table.v1.util.Options;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +38,8 @@ public class TunnelInputSplit extends InputSplit {
 
     private Options options;
 
+    private List<FilterExpression> filterExpressions = Collections.emptyList();
+
     protected TunnelInputSplit(String project,
                                String table,
                                List<Attribute> dataColumns,
@@ -89,4 +93,13 @@ public class TunnelInputSplit extends InputSplit {
     public void setOptions(Options options) {
         this.options = options;
     }
+
+    @Override
+    public List<FilterExpression> getFilterExpressions() {
+        return filterExpressions;
+    }
+
+    public void setFilterExpressions(List<FilterExpression> filterExpressions) {
+        this.filterExpressions = filterExpressions;
+    }
 }
@@ -43,7 +43,7 @@ public class TunnelProvider implements TableProvider {
 
     @Override
     public ReadCapabilities getReadCapabilities() {
-        return new ReadCapabilities(false, false, false);
+        return new ReadCapabilities(false, true, false);
     }
 
     @Override
@@ -27,6 +27,7 @@ import com.aliyun.odps.cupid.table.v1.Attribute;
 import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
 import com.aliyun.odps.cupid.table.v1.reader.RequiredSchema;
 import com.aliyun.odps.cupid.table.v1.reader.TableReadSession;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
 import com.aliyun.odps.cupid.table.v1.util.Options;
 import com.aliyun.odps.cupid.table.v1.util.Validator;
 import com.aliyun.odps.tunnel.TableTunnel;
@@ -34,9 +35,17 @@ import com.aliyun.odps.utils.StringUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class TunnelReadSession extends TableReadSession {
@@ -45,6 +54,8 @@ public class TunnelReadSession extends TableReadSession {
 
     private static final long MIN_AVERAGE_RECORD_SIZE = 256;
 
+    private static final Map<String, DownloadSessionInfo> SESSION_CACHE = new ConcurrentHashMap<>();
+
     private InputSplit[] inputSplits = null;
 
     private List<Attribute> dataColumns;
@@ -55,6 +66,8 @@ public class TunnelReadSession extends TableReadSession {
 
     private Odps odps;
 
+    private List<FilterExpression> filterExpressions = Collections.emptyList();
+
     TunnelReadSession(String project,
                       String table,
                       TableSchema tableSchema,
@@ -65,6 +78,11 @@ public class TunnelReadSession extends TableReadSession {
         initOdps();
     }
 
+    @Override
+    protected void setFilterExpressions(List<FilterExpression> filterExpressions) {
+        this.filterExpressions = filterExpressions;
+    }
+
     public TableSchema getTableSchema() {
         if (this.tableSchema == null) {
             if (this.odps == null) {
@@ -113,21 +131,14 @@ public class TunnelReadSession extends TableReadSession {
         init();
 
         if (partitionSpecs == null || partitionSpecs.isEmpty()) {
-            long size = odps.tables().get(project, table).getSize();
-            TableTunnel.DownloadSession session = Util.createDownloadSession(project, table, null, tunnel);
+            DownloadSessionInfo sessionInfo = getOrCreateDownloadSession(tunnel, null);
             splits.addAll(
-                    getInputSplitsInternal(session, size, splitSizeInMB, null));
+                    getInputSplitsInternal(sessionInfo, splitSizeInMB, null));
         } else {
-            for (Map<String, String> partitionSpec : partitionSpecs) {
-                PartitionSpec odpsPartitionSpec = Util.toOdpsPartitionSpec(partitionSpec);
-                long size = odps.tables().get(project, table).getPartition(odpsPartitionSpec).getSize();
-                TableTunnel.DownloadSession session = Util.createDownloadSession(
-                        project,
-                        table,
-                        odpsPartitionSpec,
-                        tunnel);
+            List<DownloadSessionInfo> sessionInfos = getOrCreateDownloadSessions(tunnel);
+            for (int i = 0; i < partitionSpecs.size(); i++) {
                 splits.addAll(
-                        getInputSplitsInternal(session, size, splitSizeInMB, partitionSpec));
+                        getInputSplitsInternal(sessionInfos.get(i), splitSizeInMB, partitionSpecs.get(i)));
             }
         }
 
@@ -170,13 +181,101 @@ public class TunnelReadSession extends TableReadSession {
         }
     }
 
-    private List<InputSplit> getInputSplitsInternal(TableTunnel.DownloadSession session,
-                                                    long size,
+    /**
+     * Create download sessions and look up partition sizes concurrently, the result keeps the
+     * order of partitionSpecs.
+     */
+    private List<DownloadSessionInfo> getOrCreateDownloadSessions(TableTunnel tunnel) throws IOException {
+        int parallelism = Math.min(partitionSpecs.size(), options.getOrDefault(
+                Util.READER_SPLIT_PLANNING_PARALLELISM, Util.DEFAULT_READER_SPLIT_PLANNING_PARALLELISM));
+
+        List<DownloadSessionInfo> sessionInfos = new ArrayList<>(partitionSpecs.size());
+        if (parallelism <= 1) {
+            for (Map<String, String> partitionSpec : partitionSpecs) {
+                sessionInfos.add(getOrCreateDownloadSession(tunnel, partitionSpec));
+            }
+            return sessionInfos;
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "odps-split-planner-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<DownloadSessionInfo>> futures = new ArrayList<>(partitionSpecs.size());
+            for (Map<String, String> partitionSpec : partitionSpecs) {
+                futures.add(executor.submit(() -> getOrCreateDownloadSession(tunnel, partitionSpec)));
+            }
+            for (Future<DownloadSessionInfo> future : futures) {
+                sessionInfos.add(future.get());
+            }
+            return sessionInfos;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Download sessions are snapshots of the table, reuse the download id created within
+     * the ttl so that retried or re-planned scans do not create new sessions. The cache is
+     * disabled by default: a reused session doesn't see data written after it was created.
+     */
+    private DownloadSessionInfo getOrCreateDownloadSession(TableTunnel tunnel,
+                                                           Map<String, String> partitionSpec) throws IOException {
+        long ttlMillis = options.getOrDefault(
+                Util.READER_SESSION_CACHE_TTL, Util.DEFAULT_READER_SESSION_CACHE_TTL) * 1000L;
+        String cacheKey = sessionCacheKey(partitionSpec);
+        long now = System.currentTimeMillis();
+        if (ttlMillis > 0) {
+            DownloadSessionInfo cached = SESSION_CACHE.get(cacheKey);
+            if (cached != null && now - cached.createTime < ttlMillis) {
+                return cached;
+            }
+        }
+
+        long size;
+        TableTunnel.DownloadSession session;
+        if (partitionSpec == null || partitionSpec.isEmpty()) {
+            size = odps.tables().get(project, table).getSize();
+            session = Util.createDownloadSession(project, table, null, tunnel);
+        } else {
+            PartitionSpec odpsPartitionSpec = Util.toOdpsPartitionSpec(partitionSpec);
+            size = odps.tables().get(project, table).getPartition(odpsPartitionSpec).getSize();
+            session = Util.createDownloadSession(project, table, odpsPartitionSpec, tunnel);
+        }
+
+        DownloadSessionInfo sessionInfo = new DownloadSessionInfo(
+                session.getId(), session.getRecordCount(), size, now);
+        if (ttlMillis > 0) {
+            SESSION_CACHE.values().removeIf(info -> now - info.createTime >= ttlMillis);
+            SESSION_CACHE.put(cacheKey, sessionInfo);
+        }
+        return sessionInfo;
+    }
+
+    private String sessionCacheKey(Map<String, String> partitionSpec) {
+        String spec = partitionSpec == null ? "" : new TreeMap<>(partitionSpec).toString();
+        return options.getOdpsConf().getAccessId() + "@" + options.getOdpsConf().getEndpoint() + "/"
+                + options.getOdpsConf().getTunnelEndpoint() + "/" + project + "." + table + "/" + spec;
+    }
+
+    private List<InputSplit> getInputSplitsInternal(DownloadSessionInfo sessionInfo,
                                                     int splitSizeInMB,
                                                     Map<String, String> partitionSpec) {
         List<InputSplit> splits = new ArrayList<>();
-        String downloadId = session.getId();
-        long recordCount = session.getRecordCount();
+        String downloadId = sessionInfo.downloadId;
+        long recordCount = sessionInfo.recordCount;
+        long size = sessionInfo.size;
 
         long averageRecordSize;
         if (recordCount == 0) {
@@ -199,6 +298,7 @@ public class TunnelReadSession extends TableReadSession {
             TunnelInputSplit split = new TunnelInputSplit(project, table, dataColumns,
                     partitionColumns, requiredColumns, partitionSpec, downloadId, startIndex,
                     numRecordPerSplit, options);
+            split.setFilterExpressions(filterExpressions);
             splits.add(split);
         }
 
@@ -207,12 +307,30 @@ public class TunnelReadSession extends TableReadSession {
             TunnelInputSplit lastSplit = new TunnelInputSplit(project, table, dataColumns,
                     partitionColumns, requiredColumns, partitionSpec, downloadId, startIndex,
                     remainder, options);
+            lastSplit.setFilterExpressions(filterExpressions);
             splits.add(lastSplit);
         }
 
         return splits;
     }
 
+    private static final class DownloadSessionInfo {
+        private final String downloadId;
+
+        private final long recordCount;
+
+        private final long size;
+
+        private final long createTime;
+
+        private DownloadSessionInfo(String downloadId, long recordCount, long size, long createTime) {
+            this.downloadId = downloadId;
+            this.recordCount = recordCount;
+            this.size = size;
+            this.createTime = createTime;
+        }
+    }
+
     private void initOdps() {
         Validator.checkNotNull(this.options, "options");
         if (this.odps == null) {
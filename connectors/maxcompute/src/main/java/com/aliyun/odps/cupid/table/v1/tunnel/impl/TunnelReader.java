@@ -23,6 +23,7 @@ import com.aliyun.odps.Column;
 import com.aliyun.odps.PartitionSpec;
 import com.aliyun.odps.cupid.table.v1.Attribute;
 import com.aliyun.odps.cupid.table.v1.reader.SplitReader;
+import com.aliyun.odps.cupid.table.v1.reader.filter.RecordFilter;
 import com.aliyun.odps.data.ArrayRecord;
 import com.aliyun.odps.data.Record;
 import com.aliyun.odps.tunnel.TableTunnel;
@@ -33,9 +34,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 public class TunnelReader implements SplitReader<ArrayRecord> {
 
@@ -49,6 +52,12 @@ public class TunnelReader implements SplitReader<ArrayRecord> {
 
     private long rowsRead = 0;
 
+    private long rowsSkipped = 0;
+
+    private RecordFilter recordFilter;
+
+    private Record nextRecord = null;
+
     private boolean isClosed;
 
     TunnelReader(TunnelInputSplit inputSplit) {
@@ -104,6 +113,9 @@ public class TunnelReader implements SplitReader<ArrayRecord> {
         } catch (TunnelException e) {
             throw new IOException(e);
         }
+        if (!inputSplit.getFilterExpressions().isEmpty() && !requiredColumns.isEmpty()) {
+            recordFilter = new RecordFilter(inputSplit.getFilterExpressions(), requiredColumns);
+        }
         this.isClosed = false;
     }
 
@@ -126,19 +138,52 @@ public class TunnelReader implements SplitReader<ArrayRecord> {
         return rowsRead;
     }
 
+    @Override
+    public long getRowsSkipped() {
+        return rowsSkipped;
+    }
+
     @Override
     public boolean hasNext() {
-        return rowsRead < inputSplit.getNumRecord();
+        if (recordFilter == null) {
+            return rowsRead < inputSplit.getNumRecord();
+        }
+
+        while (nextRecord == null && rowsRead < inputSplit.getNumRecord()) {
+            Record record = readRecord();
+            if (record != null && recordFilter.test(record)) {
+                nextRecord = record;
+            } else {
+                rowsSkipped += 1;
+            }
+        }
+        return nextRecord != null;
     }
 
     @Override
     public ArrayRecord next() {
+        if (recordFilter == null) {
+            currentRecord = readRecord();
+            return (ArrayRecord) currentRecord;
+        }
+
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        currentRecord = nextRecord;
+        nextRecord = null;
+        return (ArrayRecord) currentRecord;
+    }
+
+    private Record readRecord() {
+        Record record;
         try {
-            currentRecord = reader.read();
+            record = reader.read();
         } catch (IOException e) {
-            LOG.error(e.getMessage(), e);
+            // A failed read must fail the task, with a filter it would be counted as a skipped row
+            throw new UncheckedIOException(e);
         }
         rowsRead += 1;
-        return (ArrayRecord) currentRecord;
+        return record;
     }
 }
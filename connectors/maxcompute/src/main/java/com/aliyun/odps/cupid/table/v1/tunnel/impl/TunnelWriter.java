@@ -27,6 +27,7 @@ import com.aliyun.odps.data.ArrayRecord;
 import com.aliyun.odps.data.RecordWriter;
 import com.aliyun.odps.tunnel.TableTunnel;
 import com.aliyun.odps.tunnel.TunnelException;
+import com.aliyun.odps.tunnel.io.CompressOption;
 import com.aliyun.odps.tunnel.io.TunnelBufferedWriter;
 import com.aliyun.odps.tunnel.io.TunnelRecordWriter;
 
@@ -52,6 +53,8 @@ public class TunnelWriter implements FileWriter<ArrayRecord> {
 
     private boolean isBufferWriter;
 
+    private int uploadThreads;
+
     private final Map<String, String> partitionSpec;
 
     private final Odps odps;
@@ -74,6 +77,8 @@ public class TunnelWriter implements FileWriter<ArrayRecord> {
             uploadId = sessionInfo.getUploadId();
             isBufferWriter = sessionInfo.getOptions().
                     getOrDefault(Util.WRITER_BUFFER_ENABLE, false);
+            uploadThreads = sessionInfo.getOptions().
+                    getOrDefault(Util.WRITER_UPLOAD_THREADS, Util.DEFAULT_WRITER_UPLOAD_THREADS);
             if (sessionInfo.isDynamicPartition()) {
                 initDynamicWriter();
             } else {
@@ -119,7 +124,9 @@ public class TunnelWriter implements FileWriter<ArrayRecord> {
 
     @Override
     public long getBytesWritten() {
-        if (isBufferWriter) {
+        if (writer instanceof PipelinedRecordWriter) {
+            return ((PipelinedRecordWriter) writer).getTotalBytes();
+        } else if (isBufferWriter) {
             try {
                 return ((TunnelBufferedWriter) writer).getTotalBytes();
             } catch (IOException e) {
@@ -149,7 +156,9 @@ public class TunnelWriter implements FileWriter<ArrayRecord> {
                     tunnel);
             uploadId = session.getId();
         }
-        if (isBufferWriter) {
+        if (uploadThreads > 0) {
+            writer = newPipelinedWriter();
+        } else if (isBufferWriter) {
             writer = session.openBufferedWriter(true);
             ((TunnelBufferedWriter) writer).setBufferSize(
                     sessionInfo.getOptions().getOrDefault(Util.WRITER_BUFFER_SIZE, Util.DEFAULT_WRITER_BUFFER_SIZE));
@@ -163,18 +172,24 @@ public class TunnelWriter implements FileWriter<ArrayRecord> {
         String table = sessionInfo.getTable();
         Map<String, String> partitionSpec = sessionInfo.getPartitionSpec();
         TableTunnel tunnel = Util.getTableTunnel(sessionInfo.getOptions());
-        if (isBufferWriter) {
-            int shares = sessionInfo.getOptions().getOrDefault(Util.WRITER_BUFFER_SHARES, 1);
+        if (isBufferWriter || uploadThreads > 0) {
+            // 并发上传时每个 task 使用不相交的 block id: blockId(task 序号) + n * task 数量
+            int shares = uploadThreads > 0
+                    ? sessionInfo.getOptions().getOrDefault(Util.WRITER_UPLOAD_TASKS, 1)
+                    : sessionInfo.getOptions().getOrDefault(Util.WRITER_BUFFER_SHARES, 1);
             if (partitionSpec == null || partitionSpec.isEmpty()) {
                 this.session = tunnel.getUploadSession(project, table, uploadId, shares, blockId);
             } else {
                 PartitionSpec odpsPartitionSpec = Util.toOdpsPartitionSpec(partitionSpec);
                 this.session = tunnel.getUploadSession(project, table, odpsPartitionSpec, uploadId, shares, blockId);
             }
-            writer = session.openBufferedWriter(true);
-            ((TunnelBufferedWriter) writer).setBufferSize(
-                    sessionInfo.getOptions().getOrDefault(Util.WRITER_BUFFER_SIZE, Util.DEFAULT_WRITER_BUFFER_SIZE));
-
+            if (uploadThreads > 0) {
+                writer = newPipelinedWriter();
+            } else {
+                writer = session.openBufferedWriter(true);
+                ((TunnelBufferedWriter) writer).setBufferSize(
+                        sessionInfo.getOptions().getOrDefault(Util.WRITER_BUFFER_SIZE, Util.DEFAULT_WRITER_BUFFER_SIZE));
+            }
         } else {
             if (partitionSpec == null || partitionSpec.isEmpty()) {
                 session = tunnel.getUploadSession(project, table, uploadId);
@@ -185,4 +200,13 @@ public class TunnelWriter implements FileWriter<ArrayRecord> {
             writer = session.openRecordWriter(blockId, true);
         }
     }
+
+    private RecordWriter newPipelinedWriter() throws IOException {
+        int maxPendingBlocks = sessionInfo.getOptions().getOrDefault(
+                Util.WRITER_UPLOAD_MAX_PENDING_BLOCKS, Util.DEFAULT_WRITER_UPLOAD_MAX_PENDING_BLOCKS);
+        int blockSize = sessionInfo.getOptions().getOrDefault(
+                Util.WRITER_UPLOAD_BLOCK_SIZE, Util.DEFAULT_WRITER_UPLOAD_BLOCK_SIZE);
+        return new PipelinedRecordWriter(session, new CompressOption(),
+                uploadThreads, Math.max(maxPendingBlocks, uploadThreads), blockSize);
+    }
 }
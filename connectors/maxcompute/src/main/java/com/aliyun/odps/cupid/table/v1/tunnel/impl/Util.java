@@ -34,6 +34,34 @@ public class Util {
 
     public static final int DEFAULT_WRITER_BUFFER_SIZE = 67108864;
 
+    // 大于 0 时，每个 writer 使用多个线程并发上传 block，序列化和上传流水线执行
+    public static final String WRITER_UPLOAD_THREADS = "odps.cupid.writer.upload.threads";
+
+    public static final int DEFAULT_WRITER_UPLOAD_THREADS = 0;
+
+    // 每个 writer 最多缓存 (max(maxPendingBlocks, uploadThreads) + 1) * blockSize 字节，默认 160MB
+    public static final String WRITER_UPLOAD_MAX_PENDING_BLOCKS = "odps.cupid.writer.upload.max.pending.blocks";
+
+    public static final int DEFAULT_WRITER_UPLOAD_MAX_PENDING_BLOCKS = 4;
+
+    public static final String WRITER_UPLOAD_BLOCK_SIZE = "odps.cupid.writer.upload.block.size";
+
+    public static final int DEFAULT_WRITER_UPLOAD_BLOCK_SIZE = 33554432;
+
+    // 非动态分区写入的 task 数量，由 driver 设置。并发上传时 task i 使用 block id: i, i + n, i + 2n ...
+    public static final String WRITER_UPLOAD_TASKS = "odps.cupid.writer.upload.tasks";
+
+    // tunnel upload session 的 block id 取值范围 [0, 20000)
+    public static final long MAX_BLOCK_ID = 20000;
+
+    public static final String READER_SPLIT_PLANNING_PARALLELISM = "odps.cupid.reader.split.planning.parallelism";
+
+    public static final int DEFAULT_READER_SPLIT_PLANNING_PARALLELISM = 16;
+
+    public static final String READER_SESSION_CACHE_TTL = "odps.cupid.reader.session.cache.ttl";
+
+    public static final int DEFAULT_READER_SESSION_CACHE_TTL = 0;
+
     public static PartitionSpec toOdpsPartitionSpec(Map<String, String> partitionSpec) {
         if (partitionSpec == null || partitionSpec.isEmpty()) {
             return new PartitionSpec();
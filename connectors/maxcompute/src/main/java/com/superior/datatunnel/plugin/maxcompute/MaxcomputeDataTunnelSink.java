@@ -66,7 +66,9 @@ public class MaxcomputeDataTunnelSink implements DataTunnelSink {
                 .option("spark.hadoop.odps.access.key", sinkOption.getSecretAccessKey())
                 .option("spark.hadoop.odps.end.point", sinkOption.getEndpoint())
                 .option("spark.hadoop.odps.table.name", sinkOption.getTableName())
-                .option("spark.sql.odps.dynamic.partition", false);
+                .option("spark.sql.odps.dynamic.partition", false)
+                .option("spark.sql.odps.writer.upload.threads", sinkOption.getUploadThreads())
+                .option("spark.sql.odps.writer.upload.max.pending.blocks", sinkOption.getUploadMaxPendingBlocks());
 
         // spark.sql.odps.partition.spec 分区值不能有引号
         if (StringUtils.isNotBlank(partitionSpec)) {
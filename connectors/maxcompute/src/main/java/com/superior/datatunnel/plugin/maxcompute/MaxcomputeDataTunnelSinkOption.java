@@ -32,4 +32,10 @@ public class MaxcomputeDataTunnelSinkOption extends BaseSinkOption {
 
     @OptionDesc("maxcompute 不支持动态分区，如果要写入分区表，需要指定分区值，例如：pt='20230605'")
     private String partitionSpec;
+
+    @OptionDesc("每个写入任务并发上传 block 的线程数，0 表示单线程顺序上传。大于 0 时每个写入任务最多缓存 (max(uploadMaxPendingBlocks, uploadThreads) + 1) 个 32MB 的 block，默认约 160MB，需要相应增加 executor 内存")
+    private int uploadThreads = 0;
+
+    @OptionDesc("等待上传的 block 数量上限，达到上限后写入等待上传完成，用于限制内存占用。每个 block 32MB")
+    private int uploadMaxPendingBlocks = 4;
 }
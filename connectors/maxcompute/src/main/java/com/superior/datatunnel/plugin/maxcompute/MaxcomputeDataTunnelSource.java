@@ -38,6 +38,10 @@ public class MaxcomputeDataTunnelSource implements DataTunnelSource {
                 .option("spark.hadoop.odps.end.point", sourceOption.getEndpoint())
                 .option("spark.hadoop.odps.project.name", projectName)
                 .option("spark.hadoop.odps.table.name", sourceOption.getTableName())
+                .option("spark.sql.odps.vectorized.reader.enabled", sourceOption.isVectorizedReader())
+                .option("spark.sql.odps.vectorized.reader.batch.size", sourceOption.getVectorizedReaderBatchSize())
+                .option("spark.sql.odps.split.planning.parallelism", sourceOption.getSplitPlanningParallelism())
+                .option("spark.sql.odps.read.session.cache.ttl", sourceOption.getSessionCacheTtl())
                 .load();
 
         try {
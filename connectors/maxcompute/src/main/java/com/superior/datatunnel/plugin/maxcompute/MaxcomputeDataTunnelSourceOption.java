@@ -30,4 +30,17 @@ public class MaxcomputeDataTunnelSourceOption extends BaseSourceOption {
     private String partitionSpec;
 
     private String condition;
+
+    @OptionDesc("列式读取，默认关闭，读取字段包含 array、map、struct 类型时自动使用行式读取")
+    private boolean vectorizedReader = false;
+
+    @OptionDesc("列式读取每批次记录数")
+    private int vectorizedReaderBatchSize = 4096;
+
+    @OptionDesc("分区表并发创建 download session、查询分区大小的线程数")
+    private int splitPlanningParallelism = 16;
+
+    @OptionDesc("download session 缓存时间(秒)，缓存时间内同一个表(分区)复用 session，默认 0 不缓存。"
+            + "session 是创建时的数据快照，同一个作业中先写入再读取的表不要开启")
+    private int sessionCacheTtl = 0;
 }
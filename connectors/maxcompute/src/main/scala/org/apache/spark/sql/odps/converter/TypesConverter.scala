@@ -4,9 +4,10 @@ import java.math.BigDecimal
 
 import com.aliyun.odps.`type`._
 import com.aliyun.odps.commons.util.DateUtils
-import com.aliyun.odps.data.{Binary, Char, SimpleStruct, Varchar}
+import com.aliyun.odps.data.{ArrayRecord, Binary, Char, SimpleStruct, Varchar}
 import com.aliyun.odps.{Column, OdpsType, Partition}
 import org.apache.spark.sql.catalyst.util.{ArrayBasedMapData, GenericArrayData}
+import org.apache.spark.sql.execution.vectorized.WritableColumnVector
 import org.apache.spark.sql.types._
 import org.apache.spark.unsafe.types.UTF8String
 
@@ -226,6 +227,56 @@ object TypesConverter {
     nullSafeEval(func)
   }
 
+  type ColumnWriter = (ArrayRecord, Int, WritableColumnVector, Int) => Unit
+
+  def isVectorizedSupported(dataType: DataType): Boolean = dataType match {
+    case _: ArrayType | _: MapType | _: StructType => false
+    case _ => true
+  }
+
+  // writing non-null data from Odps record into Spark column vector, used by vectorized reader
+  def odpsData2SparkColumn(t: TypeInfo): ColumnWriter = {
+    t.getOdpsType match {
+      case OdpsType.BOOLEAN => (r: ArrayRecord, i: Int, v: WritableColumnVector, rowId: Int) =>
+        v.putBoolean(rowId, r.getBoolean(i))
+      case OdpsType.BIGINT => (r: ArrayRecord, i: Int, v: WritableColumnVector, rowId: Int) =>
+        v.putLong(rowId, r.getBigint(i))
+      case OdpsType.DOUBLE => (r: ArrayRecord, i: Int, v: WritableColumnVector, rowId: Int) =>
+        v.putDouble(rowId, r.getDouble(i))
+      case OdpsType.FLOAT => (r: ArrayRecord, i: Int, v: WritableColumnVector, rowId: Int) =>
+        v.putFloat(rowId, r.get(i).asInstanceOf[java.lang.Float])
+      case OdpsType.INT => (r: ArrayRecord, i: Int, v: WritableColumnVector, rowId: Int) =>
+        v.putInt(rowId, r.get(i).asInstanceOf[java.lang.Integer])
+      case OdpsType.SMALLINT => (r: ArrayRecord, i: Int, v: WritableColumnVector, rowId: Int) =>
+        v.putShort(rowId, r.get(i).asInstanceOf[java.lang.Short])
+      case OdpsType.TINYINT => (r: ArrayRecord, i: Int, v: WritableColumnVector, rowId: Int) =>
+        v.putByte(rowId, r.get(i).asInstanceOf[java.lang.Byte])
+      case OdpsType.STRING => (r: ArrayRecord, i: Int, v: WritableColumnVector, rowId: Int) =>
+        // 直接使用 utf8 字节，不创建 String
+        v.putByteArray(rowId, r.getBytes(i))
+      case OdpsType.BINARY => (r: ArrayRecord, i: Int, v: WritableColumnVector, rowId: Int) =>
+        v.putByteArray(rowId, r.get(i).asInstanceOf[Binary].data())
+      case OdpsType.DECIMAL =>
+        val converter = odpsData2SparkData(t)
+        val precision = odpsType2SparkType(t).asInstanceOf[DecimalType].precision
+        (r: ArrayRecord, i: Int, v: WritableColumnVector, rowId: Int) =>
+          v.putDecimal(rowId, converter(r.get(i)).asInstanceOf[Decimal], precision)
+      case OdpsType.DATETIME | OdpsType.TIMESTAMP =>
+        val converter = odpsData2SparkData(t)
+        (r: ArrayRecord, i: Int, v: WritableColumnVector, rowId: Int) =>
+          v.putLong(rowId, converter(r.get(i)).asInstanceOf[Long])
+      case OdpsType.DATE =>
+        (r: ArrayRecord, i: Int, v: WritableColumnVector, rowId: Int) =>
+          v.putInt(rowId, DateUtils.getDayOffset(r.get(i).asInstanceOf[java.sql.Date]).toInt)
+      case OdpsType.VARCHAR | OdpsType.CHAR =>
+        val converter = odpsData2SparkData(t)
+        (r: ArrayRecord, i: Int, v: WritableColumnVector, rowId: Int) =>
+          v.putByteArray(rowId, converter(r.get(i)).asInstanceOf[UTF8String].getBytes)
+      case odpsType =>
+        throw new UnsupportedOperationException(s"ODPS data type: $odpsType not supported by vectorized reader")
+    }
+  }
+
   // converting data from Spark-type to Odps-type
   def sparkData2OdpsData(t: TypeInfo): Object => AnyRef = {
     t.getOdpsType match {
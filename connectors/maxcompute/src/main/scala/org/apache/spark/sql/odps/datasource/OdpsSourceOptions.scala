@@ -24,6 +24,26 @@ private[spark] object OdpsSourceOptions {
 
   val ODPS_SPLIT_SIZE = "spark.sql.odps.split.size"
 
+  // 分区表并发创建 download session 的线程数
+  val ODPS_SPLIT_PLANNING_PARALLELISM = "spark.sql.odps.split.planning.parallelism"
+
+  // download session 缓存时间(秒)，默认 0 不缓存。缓存的 session 读取不到创建之后写入的数据
+  val ODPS_READ_SESSION_CACHE_TTL = "spark.sql.odps.read.session.cache.ttl"
+
+  // 列式读取，默认false，读取字段包含 array/map/struct 类型时使用行式读取
+  val ODPS_VECTORIZED_READER_ENABLED = "spark.sql.odps.vectorized.reader.enabled"
+
+  val ODPS_VECTORIZED_READER_BATCH_SIZE = "spark.sql.odps.vectorized.reader.batch.size"
+
+  // 每个 writer 并发上传 block 的线程数，默认0，不启用
+  val ODPS_WRITER_UPLOAD_THREADS = "spark.sql.odps.writer.upload.threads"
+
+  // 等待上传的 block 数量上限，超过后写入线程等待上传完成。每个 writer 最多缓存 (上限 + 1) 个 block，默认 160MB
+  val ODPS_WRITER_UPLOAD_MAX_PENDING_BLOCKS = "spark.sql.odps.writer.upload.max.pending.blocks"
+
+  // 每个 block 压缩后的大小(字节)
+  val ODPS_WRITER_UPLOAD_BLOCK_SIZE = "spark.sql.odps.writer.upload.block.size"
+
   // 是否启用动态分区，默认false
   val ODPS_DYNAMIC_PARTITION_ENABLED = "spark.sql.odps.dynamic.partition"
 
@@ -31,6 +51,12 @@ private[spark] object OdpsSourceOptions {
   // 如果用户打开了overwrite，需要保证queryPlan的分区与目标表分区完全相同。
   val ODPS_DYNAMIC_PARTITION_MODE = "spark.sql.odps.dynamic.insert.mode"
 
+  // 动态分区写入时 task 内按分区字段排序后写入，默认false
+  val ODPS_DYNAMIC_PARTITION_SORT = "spark.sql.odps.dynamic.partition.sort"
+
+  // 动态分区写入时每个 task 同时打开的 writer 数量，超过后提交最久未使用的 writer，默认1
+  val ODPS_DYNAMIC_PARTITION_MAX_OPEN_WRITERS = "spark.sql.odps.dynamic.partition.max.open.writers"
+
   //format partition_column1=xx,partition_column2=yy,...
   val ODPS_PARTITION_SPEC = "spark.sql.odps.partition.spec"
 
@@ -1,6 +1,7 @@
 package org.apache.spark.sql.odps.datasource
 
 import java.util
+import com.aliyun.odps.cupid.table.v1.tunnel.impl.Util
 import com.aliyun.odps.cupid.table.v1.util.Options
 import org.apache.spark.SparkContext
 import org.apache.spark.sql.odps.reader.OdpsScanBuilder
@@ -29,6 +30,8 @@ class OdpsTable(odpsTable: com.aliyun.odps.Table,
 
   override def newScanBuilder(options: CaseInsensitiveStringMap): ScanBuilder = {
     val allowFullScan = options.getBoolean(OdpsSourceOptions.ODPS_SQL_FULL_SCAN, true)
+    val vectorizedReaderEnabled = options.getBoolean(OdpsSourceOptions.ODPS_VECTORIZED_READER_ENABLED, false)
+    val vectorizedReaderBatchSize = options.getInt(OdpsSourceOptions.ODPS_VECTORIZED_READER_BATCH_SIZE, 4096)
 
     new OdpsScanBuilder(OdpsTable.PROVIDER,
       schema(),
@@ -36,7 +39,9 @@ class OdpsTable(odpsTable: com.aliyun.odps.Table,
       sessionBuildOptions(options),
       splitSize(options),
       odpsTable: com.aliyun.odps.Table,
-      allowFullScan)
+      allowFullScan,
+      vectorizedReaderEnabled,
+      vectorizedReaderBatchSize)
   }
 
   override def newWriteBuilder(logicalWriteInfo: LogicalWriteInfo): WriteBuilder = {
@@ -76,12 +81,33 @@ class OdpsTable(odpsTable: com.aliyun.odps.Table,
     val odpsEndpoint = options.get(OdpsSourceOptions.ODPS_ENDPOINT)
     val odpsProject = options.get(OdpsSourceOptions.ODPS_PROJECT)
 
-    new Options.OptionsBuilder()
+    val builder = new Options.OptionsBuilder()
       .accessId(accessKeyId)
       .accessKey(accessKeySecret)
       .endpoint(odpsEndpoint)
       .project(odpsProject)
-      .build
+
+    if (options.containsKey(OdpsSourceOptions.ODPS_SPLIT_PLANNING_PARALLELISM)) {
+      builder.option(Util.READER_SPLIT_PLANNING_PARALLELISM,
+        options.get(OdpsSourceOptions.ODPS_SPLIT_PLANNING_PARALLELISM))
+    }
+    if (options.containsKey(OdpsSourceOptions.ODPS_READ_SESSION_CACHE_TTL)) {
+      builder.option(Util.READER_SESSION_CACHE_TTL,
+        options.get(OdpsSourceOptions.ODPS_READ_SESSION_CACHE_TTL))
+    }
+    if (options.containsKey(OdpsSourceOptions.ODPS_WRITER_UPLOAD_THREADS)) {
+      builder.option(Util.WRITER_UPLOAD_THREADS,
+        options.get(OdpsSourceOptions.ODPS_WRITER_UPLOAD_THREADS))
+    }
+    if (options.containsKey(OdpsSourceOptions.ODPS_WRITER_UPLOAD_MAX_PENDING_BLOCKS)) {
+      builder.option(Util.WRITER_UPLOAD_MAX_PENDING_BLOCKS,
+        options.get(OdpsSourceOptions.ODPS_WRITER_UPLOAD_MAX_PENDING_BLOCKS))
+    }
+    if (options.containsKey(OdpsSourceOptions.ODPS_WRITER_UPLOAD_BLOCK_SIZE)) {
+      builder.option(Util.WRITER_UPLOAD_BLOCK_SIZE,
+        options.get(OdpsSourceOptions.ODPS_WRITER_UPLOAD_BLOCK_SIZE))
+    }
+    builder.build
   }
 
   private def schemaValid(rddSchema: StructType): Unit = {
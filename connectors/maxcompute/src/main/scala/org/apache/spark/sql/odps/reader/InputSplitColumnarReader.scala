@@ -0,0 +1,106 @@
+package org.apache.spark.sql.odps.reader
+
+import java.util
+import com.aliyun.odps.`type`.TypeInfo
+import com.aliyun.odps.cupid.table.v1.Attribute
+import com.aliyun.odps.cupid.table.v1.reader.SplitReader
+import com.aliyun.odps.data.ArrayRecord
+import org.apache.spark.SparkException
+import org.apache.spark.sql.connector.metric.CustomTaskMetric
+import org.apache.spark.sql.connector.read.PartitionReader
+import org.apache.spark.sql.execution.vectorized.{ConstantColumnVector, OnHeapColumnVector, WritableColumnVector}
+import org.apache.spark.sql.odps.converter.TypesConverter
+import org.apache.spark.sql.types._
+import org.apache.spark.sql.vectorized.{ColumnVector, ColumnarBatch}
+import org.apache.spark.unsafe.types.UTF8String
+
+/**
+  * 按批次把 tunnel record 直接写入 spark 列向量，分区字段使用常量列，避免每行创建 InternalRow 和装箱转换
+  */
+class InputSplitColumnarReader(
+                        readSchema: StructType,
+                        partitionSchema: util.List[Attribute],
+                        partitionSpec: util.Map[String, String],
+                        outputDataSchema: List[TypeInfo],
+                        batchSize: Int,
+                        recordReader: SplitReader[ArrayRecord]) extends PartitionReader[ColumnarBatch] {
+
+  private val numDataColumns = outputDataSchema.length
+
+  private val dataVectors: Array[WritableColumnVector] = OnHeapColumnVector.allocateColumns(
+    batchSize, StructType(readSchema.fields.take(numDataColumns))).asInstanceOf[Array[WritableColumnVector]]
+
+  private val columnWriters = outputDataSchema.map(TypesConverter.odpsData2SparkColumn).toArray
+
+  private val batch = {
+    val columns = new Array[ColumnVector](readSchema.fields.length)
+    dataVectors.copyToArray(columns)
+
+    var i = 0
+    while (i < partitionSchema.size()) {
+      val attr = partitionSchema.get(i)
+      // 未读取的分区字段不需要填充
+      readSchema.getFieldIndex(attr.getName).foreach { index =>
+        val value = partitionSpec.get(attr.getName)
+        val sparkType = TypesConverter.odpsTypeStr2SparkType(attr.getType)
+        val vector = new ConstantColumnVector(batchSize, sparkType)
+
+        sparkType match {
+          case StringType =>
+            vector.setUtf8String(UTF8String.fromString(value))
+          case LongType =>
+            vector.setLong(value.toLong)
+          case IntegerType =>
+            vector.setInt(value.toInt)
+          case ShortType =>
+            vector.setShort(value.toShort)
+          case ByteType =>
+            vector.setByte(value.toByte)
+          case dt: DataType =>
+            throw new SparkException(s"Unsupported partition column type: ${dt.simpleString}")
+        }
+        columns(index) = vector
+      }
+      i += 1
+    }
+
+    new ColumnarBatch(columns)
+  }
+
+  override final def next: Boolean = {
+    var i = 0
+    while (i < numDataColumns) {
+      dataVectors(i).reset()
+      i += 1
+    }
+
+    var rowId = 0
+    while (rowId < batchSize && recordReader.hasNext) {
+      val record = recordReader.next()
+      i = 0
+      while (i < numDataColumns) {
+        if ((record eq null) || record.isNull(i)) {
+          dataVectors(i).putNull(rowId)
+        } else {
+          columnWriters(i)(record, i, dataVectors(i), rowId)
+        }
+        i += 1
+      }
+      rowId += 1
+    }
+
+    batch.setNumRows(rowId)
+    rowId > 0
+  }
+
+  override final def get(): ColumnarBatch = batch
+
+  override def currentMetricsValues(): Array[CustomTaskMetric] = {
+    Array(SkippedRowsMetric.taskMetric(recordReader.getRowsSkipped))
+  }
+
+  override final def close(): Unit = {
+    batch.close()
+    recordReader.close()
+  }
+}
@@ -9,6 +9,7 @@ import org.apache.spark.SparkException
 import org.apache.spark.sql.odps.converter.TypesConverter
 import org.apache.spark.sql.catalyst.InternalRow
 import org.apache.spark.sql.catalyst.expressions.GenericInternalRow
+import org.apache.spark.sql.connector.metric.CustomTaskMetric
 import org.apache.spark.sql.connector.read.PartitionReader
 import org.apache.spark.sql.types._
 import org.apache.spark.unsafe.types.UTF8String
@@ -82,5 +83,9 @@ class InputSplitReader(
     new GenericInternalRow(dataRow)
   }
 
+  override def currentMetricsValues(): Array[CustomTaskMetric] = {
+    Array(SkippedRowsMetric.taskMetric(recordReader.getRowsSkipped))
+  }
+
   override final def close(): Unit = recordReader.close()
 }
@@ -0,0 +1,82 @@
+package org.apache.spark.sql.odps.reader
+
+import com.aliyun.odps.{OdpsType, TableSchema}
+import com.aliyun.odps.cupid.table.v1.reader.filter.{FilterExpression, RecordFilter}
+import org.apache.spark.sql.connector.metric.{CustomSumMetric, CustomTaskMetric}
+import org.apache.spark.sql.sources._
+
+/**
+  * 非分区字段过滤条件转换为 FilterExpression，在 split reader 中转换为 spark 行之前过滤
+  */
+object OdpsFilters {
+
+  def translate(filter: Filter, tableSchema: TableSchema): Option[FilterExpression] = {
+    def supported(attr: String, value: Any): Boolean = {
+      if (!tableSchema.containsColumn(attr)) {
+        return false
+      }
+      val odpsType = tableSchema.getColumn(attr).getTypeInfo.getOdpsType
+      RecordFilter.isSupported(odpsType) && (value match {
+        case null => true
+        case _: String => odpsType == OdpsType.STRING
+        case _: java.lang.Boolean => odpsType == OdpsType.BOOLEAN
+        case _: java.lang.Long | _: java.lang.Integer | _: java.lang.Short | _: java.lang.Byte |
+             _: java.lang.Double | _: java.lang.Float =>
+          odpsType != OdpsType.STRING && odpsType != OdpsType.BOOLEAN
+        case _ => false
+      })
+    }
+
+    filter match {
+      case EqualTo(attr, value) if value != null && supported(attr, value) =>
+        Some(FilterExpression.equalTo(attr, value))
+      case EqualNullSafe(attr, value) if supported(attr, value) =>
+        Some(FilterExpression.equalNullSafe(attr, value))
+      case GreaterThan(attr, value) if value != null && supported(attr, value) =>
+        Some(FilterExpression.greaterThan(attr, value))
+      case GreaterThanOrEqual(attr, value) if value != null && supported(attr, value) =>
+        Some(FilterExpression.greaterThanOrEqual(attr, value))
+      case LessThan(attr, value) if value != null && supported(attr, value) =>
+        Some(FilterExpression.lessThan(attr, value))
+      case LessThanOrEqual(attr, value) if value != null && supported(attr, value) =>
+        Some(FilterExpression.lessThanOrEqual(attr, value))
+      case In(attr, values) if values.forall(supported(attr, _)) =>
+        Some(FilterExpression.in(attr, values.map(_.asInstanceOf[AnyRef])))
+      case IsNull(attr) if supported(attr, null) =>
+        Some(FilterExpression.isNull(attr))
+      case IsNotNull(attr) if supported(attr, null) =>
+        Some(FilterExpression.isNotNull(attr))
+      case StringStartsWith(attr, value) if value.nonEmpty && supported(attr, value) =>
+        Some(FilterExpression.stringStartsWith(attr, value))
+      case StringEndsWith(attr, value) if value.nonEmpty && supported(attr, value) =>
+        Some(FilterExpression.stringEndsWith(attr, value))
+      case StringContains(attr, value) if value.nonEmpty && supported(attr, value) =>
+        Some(FilterExpression.stringContains(attr, value))
+      case And(left, right) =>
+        for (l <- translate(left, tableSchema); r <- translate(right, tableSchema))
+          yield FilterExpression.and(l, r)
+      case Or(left, right) =>
+        for (l <- translate(left, tableSchema); r <- translate(right, tableSchema))
+          yield FilterExpression.or(l, r)
+      case Not(child) =>
+        translate(child, tableSchema).map(FilterExpression.not)
+      case _ => None
+    }
+  }
+}
+
+class SkippedRowsMetric extends CustomSumMetric {
+  override def name(): String = SkippedRowsMetric.NAME
+
+  override def description(): String = "number of rows skipped by pushed filters"
+}
+
+object SkippedRowsMetric {
+  val NAME = "skippedRows"
+
+  def taskMetric(rows: Long): CustomTaskMetric = new CustomTaskMetric {
+    override def name(): String = NAME
+
+    override def value(): Long = rows
+  }
+}
@@ -6,13 +6,16 @@ import java.util.Objects
 import com.aliyun.odps.account.AliyunAccount
 import com.aliyun.odps.cupid.table.v1.Attribute
 import com.aliyun.odps.cupid.table.v1.reader._
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression
 import com.aliyun.odps.cupid.table.v1.util.{Options, TableUtils}
 import com.aliyun.odps.{Odps, OdpsException, Partition}
 import org.apache.spark.sql.odps.converter.TypesConverter
 import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.connector.metric.CustomMetric
 import org.apache.spark.sql.connector.read._
 import org.apache.spark.sql.sources._
 import org.apache.spark.sql.types.StructType
+import org.apache.spark.sql.vectorized.ColumnarBatch
 
 import scala.collection.JavaConverters._
 
@@ -25,7 +28,10 @@ class OdpsScan(provider: String,
                     splitSize: Int,
                     table: String,
                     partitionFilters: Option[Array[Filter]],
-                    allowFullScan: Boolean)
+                    filterExpressions: Array[FilterExpression],
+                    allowFullScan: Boolean,
+                    vectorizedReaderEnabled: Boolean,
+                    vectorizedReaderBatchSize: Int)
   extends Scan with Batch with PartitionReaderFactory {
 
   override def readSchema(): StructType = {
@@ -35,6 +41,8 @@ class OdpsScan(provider: String,
 
   override def toBatch: Batch = this
 
+  override def supportedCustomMetrics(): Array[CustomMetric] = Array(new SkippedRowsMetric)
+
   private lazy val partitions = createPartitions()
 
   override def planInputPartitions(): Array[InputPartition] = {
@@ -43,6 +51,11 @@ class OdpsScan(provider: String,
 
   override def createReaderFactory(): PartitionReaderFactory = this
 
+  override def supportColumnarReads(partition: InputPartition): Boolean = {
+    vectorizedReaderEnabled &&
+      readDataSchema.fields.forall(f => TypesConverter.isVectorizedSupported(f.dataType))
+  }
+
   override def createReader(partition: InputPartition): PartitionReader[InternalRow] = {
     val inputSplit = partition.asInstanceOf[OdpsScanPartition].inputSplit
 
@@ -56,25 +69,45 @@ class OdpsScan(provider: String,
 
     val sparkDataConverters = outputDataSchema.map(TypesConverter.odpsData2SparkData)
 
-    val partitionSpec = if (Objects.nonNull(inputSplit)) {
+    new InputSplitReader(
+      readDataSchema,
+      partitionColumns(inputSplit),
+      partitionSpec(inputSplit),
+      outputDataSchema,
+      sparkDataConverters,
+      recordReader)
+  }
+
+  override def createColumnarReader(partition: InputPartition): PartitionReader[ColumnarBatch] = {
+    val inputSplit = partition.asInstanceOf[OdpsScanPartition].inputSplit
+
+    val recordReader = new SplitReaderBuilder(inputSplit).buildRecordReader()
+
+    val outputDataSchema = TableUtils.toColumnArray(inputSplit.getReadDataColumns).map(_.getTypeInfo).toList
+
+    new InputSplitColumnarReader(
+      readDataSchema,
+      partitionColumns(inputSplit),
+      partitionSpec(inputSplit),
+      outputDataSchema,
+      vectorizedReaderBatchSize,
+      recordReader)
+  }
+
+  private def partitionSpec(inputSplit: InputSplit): java.util.Map[String, String] = {
+    if (Objects.nonNull(inputSplit)) {
       inputSplit.getPartitionSpec
     } else {
       Collections.emptyMap[String, String]()
     }
+  }
 
-    val partitionColumns = if (Objects.nonNull(inputSplit)) {
+  private def partitionColumns(inputSplit: InputSplit): java.util.List[Attribute] = {
+    if (Objects.nonNull(inputSplit)) {
       inputSplit.getPartitionColumns
     } else {
       Collections.emptyList[Attribute]()
     }
-
-    new InputSplitReader(
-      readDataSchema,
-      partitionColumns,
-      partitionSpec,
-      outputDataSchema,
-      sparkDataConverters,
-      recordReader)
   }
 
   private def createPartitions(): Array[InputPartition] = {
@@ -112,6 +145,10 @@ class OdpsScan(provider: String,
       .options(options)
       .splitBySize(splitSize)
 
+    if (filterExpressions.nonEmpty) {
+      sessionBuilder.filterExpressions(filterExpressions.toList.asJava)
+    }
+
     if (partitionSchema.fields.nonEmpty) {
       if (!allowFullScan && partitionFilters.isEmpty) {
         throw new OdpsException(s"odps.sql.allow.fullscan is $allowFullScan")
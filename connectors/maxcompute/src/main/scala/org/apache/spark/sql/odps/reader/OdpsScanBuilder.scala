@@ -2,6 +2,7 @@ package org.apache.spark.sql.odps.reader
 
 import com.aliyun.odps.Table
 import com.aliyun.odps.cupid.table.v1.reader.InputSplit
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression
 import com.aliyun.odps.cupid.table.v1.util.Options
 import org.apache.spark.sql.connector.read._
 import org.apache.spark.sql.sources.Filter
@@ -15,7 +16,9 @@ class OdpsScanBuilder(provider: String,
                            sessionOptions: Options,
                            splitSize: Int,
                            odpsTable: Table,
-                           allowFullScan: Boolean)
+                           allowFullScan: Boolean,
+                           vectorizedReaderEnabled: Boolean,
+                           vectorizedReaderBatchSize: Int)
   extends ScanBuilder
     with SupportsPushDownRequiredColumns
     with SupportsPushDownFilters {
@@ -24,6 +27,10 @@ class OdpsScanBuilder(provider: String,
 
   protected var _columnFilters: Option[Array[Filter]] = None
 
+  protected var _pushedColumnFilters: Array[Filter] = Array.empty
+
+  protected var _filterExpressions: Array[FilterExpression] = Array.empty
+
   protected lazy val _odpsPartitionNameSet = {
     partitionSchema.fields.map(_.name).toSet
   }
@@ -62,11 +69,20 @@ class OdpsScanBuilder(provider: String,
     // Predicates with both partition keys and attributes need to be evaluated after the scan.
     _columnFilters = Option((filters.toSet -- partitionKeyFilters).toArray)
 
+    // Data column filters are also applied in the split reader before row conversion,
+    // they are still evaluated after the scan.
+    val tableSchema = odpsTable.getSchema
+    val translatedFilters = normalFilters
+      .filterNot(partitionKeyFilters.contains)
+      .flatMap(f => OdpsFilters.translate(f, tableSchema).map(expr => (f, expr)))
+    _pushedColumnFilters = translatedFilters.map(_._1)
+    _filterExpressions = translatedFilters.map(_._2)
+
     _columnFilters.getOrElse(new Array[Filter](0))
   }
 
   override def pushedFilters(): Array[Filter] = {
-    _partitionFilters.getOrElse(new Array[Filter](0))
+    _partitionFilters.getOrElse(new Array[Filter](0)) ++ _pushedColumnFilters
   }
 
   override def build(): Scan = {
@@ -77,7 +93,10 @@ class OdpsScanBuilder(provider: String,
       splitSize: Int,
       odpsTable.getName,
       _partitionFilters,
-      allowFullScan)
+      _filterExpressions,
+      allowFullScan,
+      vectorizedReaderEnabled,
+      vectorizedReaderBatchSize)
   }
 
   private def scanSchema(): StructType = {
@@ -6,6 +6,8 @@ import com.aliyun.odps.data.ArrayRecord
 import org.apache.spark.sql.catalyst.InternalRow
 import org.apache.spark.sql.connector.write.{DataWriter, WriterCommitMessage}
 import org.apache.spark.sql.odps.converter.TypesConverter
+import org.apache.spark.sql.types.DataType
+import org.apache.spark.unsafe.types.UTF8String
 
 import scala.collection.JavaConverters._
 
@@ -17,12 +19,32 @@ class DynamicPartitionWriter(partitionId: Int,
                              converters: List[Object => AnyRef],
                              writeSessionInfo: WriteSessionInfo,
                              columns: java.util.List[Column],
-                             partitions: java.util.List[Column]
+                             partitions: java.util.List[Column],
+                             maxOpenWriters: Int
                             ) extends DataWriter[InternalRow] {
-  private var _currentPartitionSpec: Option[java.util.Map[String, String]] = None
   private var _currentWriter: FileWriter[ArrayRecord] = null
   private val _commitMsg = new SparkCommitMessage
 
+  // 按访问顺序排列的已打开 writer，超过 maxOpenWriters 时提交最久未使用的 writer，
+  // 输入未按分区排序时避免分区来回切换产生大量 upload session 和小文件
+  private val _openWriters =
+    new java.util.LinkedHashMap[java.util.Map[String, String], FileWriter[ArrayRecord]](16, 0.75f, true)
+
+  private val _converters: Array[Object => AnyRef] = converters.toArray
+
+  private val _sparkTypes: Array[DataType] =
+    columns.asScala.map(c => TypesConverter.odpsType2SparkType(c.getTypeInfo)).toArray
+
+  private val _baseIdx = columns.size()
+
+  private val _partitionTypes: Array[DataType] =
+    partitions.asScala.map(c => TypesConverter.odpsType2SparkType(c.getTypeInfo)).toArray
+
+  private val _partitionConverters: Array[Object => AnyRef] =
+    partitions.asScala.map(c => TypesConverter.sparkData2OdpsData(c.getTypeInfo)).toArray
+
+  private val _partitionValues = new Array[Any](_partitionTypes.length)
+
   private val _arrayRecord: ArrayRecord = {
     val columnArray = columns.toArray(new Array[Column](0))
     new ArrayRecord(columnArray)
@@ -34,35 +56,28 @@ class DynamicPartitionWriter(partitionId: Int,
   }
 
   override def commit(): WriterCommitMessage = {
-    if (_currentWriter != null) {
-      val msg = _currentWriter.commitWithResult()
-      _currentWriter.close()
-      _commitMsg.addMsg(msg)
-    }
+    _openWriters.values().asScala.foreach(commitAndCloseWriter)
+    _openWriters.clear()
+    _currentWriter = null
 
     _commitMsg
   }
 
   override def abort(): Unit = {
-    if (_currentWriter != null) {
-      _currentWriter.close()
-    }
+    _openWriters.values().asScala.foreach(_.close())
   }
 
   override def close(): Unit = {
-    if (_currentWriter != null) {
-      _currentWriter.close()
-    }
+    _openWriters.values().asScala.foreach(_.close())
   }
 
   private def transform(row: InternalRow): ArrayRecord = {
     var i = 0
-    while (i < converters.length) {
+    while (i < _converters.length) {
       val value = if (row.isNullAt(i)) {
         null
       } else {
-        val sparkType = TypesConverter.odpsType2SparkType(columns.get(i).getTypeInfo)
-        converters(i)(row.get(i, sparkType))
+        _converters(i)(row.get(i, _sparkTypes(i)))
       }
       _arrayRecord.set(i, value)
       i += 1
@@ -71,47 +86,70 @@ class DynamicPartitionWriter(partitionId: Int,
   }
 
   private def newWriterIfNewPartition(row: InternalRow) : FileWriter[ArrayRecord] = {
-    val partitionSpec = extractPartitionSpec(row)
-
-    var shouldNewWriter = _currentPartitionSpec.isEmpty
-    if (_currentPartitionSpec.isDefined && !mapEquals(partitionSpec, _currentPartitionSpec.get)) {
-      val msg = _currentWriter.commitWithResult()
-      _currentWriter.close()
-      _commitMsg.addMsg(msg)
-      shouldNewWriter = true
-    }
-
-    if (shouldNewWriter) {
-      _currentPartitionSpec = Option(partitionSpec)
-      _currentWriter = new FileWriterBuilder(writeSessionInfo, partitionId)
-        .partitionSpec(partitionSpec)
-        .buildRecordWriter()
+    val partitionChanged = updatePartitionValues(row)
+
+    if (partitionChanged) {
+      val partitionSpec = extractPartitionSpec()
+      _currentWriter = _openWriters.get(partitionSpec)
+      if (_currentWriter == null) {
+        if (_openWriters.size() >= maxOpenWriters) {
+          val eldest = _openWriters.entrySet().iterator().next()
+          _openWriters.remove(eldest.getKey)
+          commitAndCloseWriter(eldest.getValue)
+        }
+
+        _currentWriter = new FileWriterBuilder(writeSessionInfo, partitionId)
+          .partitionSpec(partitionSpec)
+          .buildRecordWriter()
+        _openWriters.put(partitionSpec, _currentWriter)
+      }
     }
 
     _currentWriter
   }
 
-  private def mapEquals(srcM: java.util.Map[String, String], destM: java.util.Map[String, String]): Boolean = {
-    srcM.asScala.forall{case (k, v) => destM.containsKey(k) && destM.get(k) == v}
+  private def commitAndCloseWriter(writer: FileWriter[ArrayRecord]): Unit = {
+    val msg = writer.commitWithResult()
+    writer.close()
+    _commitMsg.addMsg(msg)
   }
 
-  private def extractPartitionSpec(row: InternalRow): java.util.Map[String, String] = {
-    val baseIdx = columns.size()
-
-    partitions.asScala
-      .zipWithIndex
-      .map{case (f, idx) => {
-        val rowIdx = baseIdx + idx
-        val sparkType = TypesConverter.odpsType2SparkType(f.getTypeInfo)
-        val sparkData = row.get(rowIdx, sparkType)
+  /**
+   * 使用分区字段原始值(UTF8String 按字节比较)判断分区是否变化，分区变化时才拷贝分区值
+   */
+  private def updatePartitionValues(row: InternalRow): Boolean = {
+    var changed = _currentWriter == null
+    var i = 0
+    while (i < _partitionTypes.length) {
+      val rowIdx = _baseIdx + i
+      val value = if (row.isNullAt(rowIdx)) {
+        null
+      } else {
+        row.get(rowIdx, _partitionTypes(i))
+      }
 
-        val name = f.getName
-        val typeinfo = f.getTypeInfo
-        val odpsData = TypesConverter.sparkData2OdpsData(typeinfo)(sparkData).asInstanceOf[String]
+      if (changed || value != _partitionValues(i)) {
+        changed = true
+        _partitionValues(i) = value match {
+          case str: UTF8String => str.clone()
+          case _ => value
+        }
+      }
+      i += 1
+    }
+    changed
+  }
 
-        (name, odpsData)
-      }}
-      .toMap
-      .asJava
+  private def extractPartitionSpec(): java.util.Map[String, String] = {
+    val partitionSpec = new java.util.LinkedHashMap[String, String]()
+    var i = 0
+    while (i < _partitionTypes.length) {
+      val f = partitions.get(i)
+      val sparkData = _partitionValues(i).asInstanceOf[Object]
+      val odpsData = _partitionConverters(i)(sparkData).asInstanceOf[String]
+      partitionSpec.put(f.getName, odpsData)
+      i += 1
+    }
+    partitionSpec
   }
 }
@@ -2,12 +2,15 @@ package org.apache.spark.sql.odps.writer
 
 import java.util.Objects
 
+import com.aliyun.odps.cupid.table.v1.tunnel.impl.Util
 import com.aliyun.odps.cupid.table.v1.writer.{TableWriteSessionBuilder, WriteSessionInfo}
 import org.apache.spark.sql.connector.write.{BatchWrite, DataWriterFactory, PhysicalWriteInfo, WriterCommitMessage}
 
 import scala.collection.JavaConverters._
 
-class OdpsBatchWrite(isDynamicPartition: Boolean, writeSessionInfo: WriteSessionInfo)
+class OdpsBatchWrite(isDynamicPartition: Boolean,
+                     writeSessionInfo: WriteSessionInfo,
+                     maxOpenWriters: Int)
   extends BatchWrite {
   val _provider = writeSessionInfo.getProvider
 
@@ -36,7 +39,11 @@ class OdpsBatchWrite(isDynamicPartition: Boolean, writeSessionInfo: WriteSession
   }
 
   override def createBatchWriterFactory(info: PhysicalWriteInfo): DataWriterFactory = {
-    new PartitionWriterFactory(isDynamicPartition, writeSessionInfo)
+    if (!isDynamicPartition) {
+      // 并发上传时按 task 数量划分 block id
+      writeSessionInfo.getOptions.put(Util.WRITER_UPLOAD_TASKS, info.numPartitions.toString)
+    }
+    new PartitionWriterFactory(isDynamicPartition, writeSessionInfo, maxOpenWriters)
       .asInstanceOf[DataWriterFactory]
   }
 
@@ -0,0 +1,18 @@
+package org.apache.spark.sql.odps.writer
+
+import org.apache.spark.sql.connector.distributions.{Distribution, Distributions}
+import org.apache.spark.sql.connector.expressions.SortOrder
+import org.apache.spark.sql.connector.write.{BatchWrite, RequiresDistributionAndOrdering}
+
+/**
+  * 不要求数据分布，只要求 task 内按 ordering 排序，ordering 为空时与默认写入相同
+  */
+class OdpsWrite(batchWrite: () => BatchWrite, ordering: Array[SortOrder])
+  extends RequiresDistributionAndOrdering {
+
+  override def requiredDistribution(): Distribution = Distributions.unspecified()
+
+  override def requiredOrdering(): Array[SortOrder] = ordering
+
+  override def toBatch: BatchWrite = batchWrite()
+}
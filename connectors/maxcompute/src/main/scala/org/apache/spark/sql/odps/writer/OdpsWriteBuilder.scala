@@ -7,7 +7,8 @@ import com.aliyun.odps.cupid.table.v1.util.Options
 import com.aliyun.odps.cupid.table.v1.writer.TableWriteSessionBuilder
 import org.apache.spark.sql.SaveMode
 import org.apache.spark.sql.odps.datasource.OdpsSourceOptions
-import org.apache.spark.sql.connector.write.{BatchWrite, LogicalWriteInfo, SupportsOverwrite, WriteBuilder}
+import org.apache.spark.sql.connector.expressions.{Expressions, SortDirection, SortOrder}
+import org.apache.spark.sql.connector.write.{BatchWrite, LogicalWriteInfo, SupportsOverwrite, Write, WriteBuilder}
 import org.apache.spark.sql.sources.Filter
 import org.apache.spark.sql.types._
 import org.apache.spark.sql.util.CaseInsensitiveStringMap
@@ -74,7 +75,21 @@ class OdpsWriteBuilder(
         .build()
 
     val writeSessionInfo = writeSession.getOrCreateSessionInfo()
-    new OdpsBatchWrite(_isDynamicPartition, writeSessionInfo)
+    val maxOpenWriters = math.max(1, _options.getInt(OdpsSourceOptions.ODPS_DYNAMIC_PARTITION_MAX_OPEN_WRITERS, 1))
+    new OdpsBatchWrite(_isDynamicPartition, writeSessionInfo, maxOpenWriters)
+  }
+
+  override def build(): Write = {
+    // 动态分区写入时按分区字段在 task 内排序，每个分区只创建一个 writer
+    val sortByPartition = _isDynamicPartition &&
+      _options.getBoolean(OdpsSourceOptions.ODPS_DYNAMIC_PARTITION_SORT, false)
+    val ordering = if (sortByPartition) {
+      _partitions.map(f => Expressions.sort(Expressions.column(f.name), SortDirection.ASCENDING))
+    } else {
+      Array.empty[SortOrder]
+    }
+
+    new OdpsWrite(() => buildForBatch(), ordering)
   }
 
   def overwrite(var1: Array[Filter]): WriteBuilder =  {
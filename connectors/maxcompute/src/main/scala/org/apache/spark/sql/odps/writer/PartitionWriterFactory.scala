@@ -11,7 +11,9 @@ import scala.collection.JavaConverters._
   * @author renxiang
   * @date 2021-12-21
   */
-class PartitionWriterFactory(dynamicInsert: Boolean, writeSessionInfo: WriteSessionInfo) extends DataWriterFactory {
+class PartitionWriterFactory(dynamicInsert: Boolean,
+                             writeSessionInfo: WriteSessionInfo,
+                             maxOpenWriters: Int) extends DataWriterFactory {
 
   override def createWriter(partitionId: Int, taskId: Long): DataWriter[InternalRow] = {
     val writeSession =
@@ -24,7 +26,7 @@ class PartitionWriterFactory(dynamicInsert: Boolean, writeSessionInfo: WriteSess
     val converters = columns.asScala.map(c => TypesConverter.sparkData2OdpsData(c.getTypeInfo)).toList
 
     if (dynamicInsert) {
-      new DynamicPartitionWriter(partitionId, converters, writeSessionInfo, columns, partitions)
+      new DynamicPartitionWriter(partitionId, converters, writeSessionInfo, columns, partitions, maxOpenWriters)
     } else {
       new SinglePartitionWriter(partitionId, converters, writeSessionInfo, columns)
     }
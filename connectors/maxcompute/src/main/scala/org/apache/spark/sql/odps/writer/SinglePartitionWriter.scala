@@ -1,11 +1,15 @@
 package org.apache.spark.sql.odps.writer
 
 import com.aliyun.odps.Column
+import com.aliyun.odps.cupid.table.v1.tunnel.impl.Util
 import com.aliyun.odps.cupid.table.v1.writer.{FileWriter, FileWriterBuilder, WriteSessionInfo}
 import com.aliyun.odps.data.ArrayRecord
 import org.apache.spark.sql.odps.converter.TypesConverter
 import org.apache.spark.sql.catalyst.InternalRow
 import org.apache.spark.sql.connector.write.{DataWriter, WriterCommitMessage}
+import org.apache.spark.sql.types.DataType
+
+import scala.collection.JavaConverters._
 
 /**
   * @author renxiang
@@ -16,7 +20,7 @@ class SinglePartitionWriter(partitionId: Int,
                             writeSessionInfo: WriteSessionInfo,
                             columns: java.util.List[Column]) extends DataWriter[InternalRow] {
 
-  private val _MAX_RECORD_SIZE = 80*1024*1024*1024
+  private val _MAX_RECORD_SIZE = 80L*1024*1024*1024
   private val _MIN_FILE_LINE = 10000
   private val _MAX_FILE_LOCATION = 1000
 
@@ -26,6 +30,15 @@ class SinglePartitionWriter(partitionId: Int,
 
   private var _currentWriter: Option[FileWriter[ArrayRecord]] = None
 
+  // 并发上传时一个 writer 写入多个 block，不需要切换文件，block id 从 partitionId 开始按 task 数量递增
+  private val _pipelinedUpload = writeSessionInfo.getOptions.getOrDefault(
+    Util.WRITER_UPLOAD_THREADS, Util.DEFAULT_WRITER_UPLOAD_THREADS) > 0
+
+  private val _converters: Array[Object => AnyRef] = converters.toArray
+
+  private val _sparkTypes: Array[DataType] =
+    columns.asScala.map(c => TypesConverter.odpsType2SparkType(c.getTypeInfo)).toArray
+
   private val _arrayRecord: ArrayRecord = {
     val columnArray = columns.toArray(new Array[Column](0))
     new ArrayRecord(columnArray)
@@ -57,12 +70,11 @@ class SinglePartitionWriter(partitionId: Int,
 
   private def transform(row: InternalRow): ArrayRecord = {
     var i = 0
-    while (i < converters.length) {
+    while (i < _converters.length) {
       val value = if (row.isNullAt(i)) {
         null
       } else {
-        val sparkType = TypesConverter.odpsType2SparkType(columns.get(i).getTypeInfo)
-        converters(i)(row.get(i, sparkType))
+        _converters(i)(row.get(i, _sparkTypes(i)))
       }
       _arrayRecord.set(i, value)
       i += 1
@@ -73,7 +85,7 @@ class SinglePartitionWriter(partitionId: Int,
   private def newWriterIfNeeded(): FileWriter[ArrayRecord] = {
     if (_currentWriter.isEmpty) {
       _currentWriter = Option(newWriter())
-    } else if (_statsRecordCount > _MIN_FILE_LINE) {
+    } else if (!_pipelinedUpload && _statsRecordCount > _MIN_FILE_LINE) {
       if (_averageSizeOneRow == 0) {
         _averageSizeOneRow = _currentWriter.get.getBytesWritten / _currentWriter.get.getRowsWritten
       }
@@ -92,7 +104,7 @@ class SinglePartitionWriter(partitionId: Int,
       commitAndCloseWriter(_currentWriter.get)
     }
 
-    val fileIndex = partitionId * _MAX_FILE_LOCATION + _currentFileIndex
+    val fileIndex = if (_pipelinedUpload) partitionId else partitionId * _MAX_FILE_LOCATION + _currentFileIndex
     _statsRecordCount = 0
     _currentFileIndex += 1
 
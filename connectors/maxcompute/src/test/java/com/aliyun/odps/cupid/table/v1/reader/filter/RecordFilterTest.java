@@ -0,0 +1,98 @@
+package com.aliyun.odps.cupid.table.v1.reader.filter;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.aliyun.odps.cupid.table.v1.reader.filter.RecordFilter.FALSE;
+import static com.aliyun.odps.cupid.table.v1.reader.filter.RecordFilter.NULL;
+import static com.aliyun.odps.cupid.table.v1.reader.filter.RecordFilter.TRUE;
+import static com.aliyun.odps.cupid.table.v1.reader.filter.RecordFilter.UNKNOWN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RecordFilterTest {
+
+    private static final List<Attribute> COLUMNS = Arrays.asList(
+            new Attribute("id", "bigint"), new Attribute("name", "string"));
+
+    private static Record record(Long id, String name) {
+        ArrayRecord record = new ArrayRecord(new Column[]{
+                new Column("id", OdpsType.BIGINT), new Column("name", OdpsType.STRING)});
+        record.setBigint(0, id);
+        record.setString(1, name);
+        return record;
+    }
+
+    private static boolean test(FilterExpression filter, Record record) {
+        return new RecordFilter(Collections.singletonList(filter), COLUMNS).test(record);
+    }
+
+    @Test
+    public void testComparison() {
+        assertTrue(test(FilterExpression.greaterThan("id", 5L), record(10L, "a")));
+        assertFalse(test(FilterExpression.greaterThan("id", 5L), record(1L, "a")));
+        assertTrue(test(FilterExpression.equalTo("id", 5), record(5L, "a")));
+        assertTrue(test(FilterExpression.stringStartsWith("name", "ab"), record(1L, "abc")));
+        assertFalse(test(FilterExpression.stringStartsWith("name", "ab"), record(1L, "bc")));
+    }
+
+    @Test
+    public void testNullValue() {
+        // id > 5 is NULL when id is null, the record is dropped like in spark
+        assertFalse(test(FilterExpression.greaterThan("id", 5L), record(null, "a")));
+        // NOT NULL is still NULL
+        assertFalse(test(FilterExpression.not(FilterExpression.greaterThan("id", 5L)), record(null, "a")));
+        assertTrue(test(FilterExpression.isNull("id"), record(null, "a")));
+        assertTrue(test(FilterExpression.equalNullSafe("id", null), record(null, "a")));
+        assertFalse(test(FilterExpression.in("id", new Object[]{1L, null}), record(2L, "a")));
+        assertFalse(test(FilterExpression.not(FilterExpression.in("id", new Object[]{1L, null})), record(2L, "a")));
+    }
+
+    @Test
+    public void testNot() {
+        assertTrue(test(FilterExpression.not(FilterExpression.greaterThan("id", 5L)), record(1L, "a")));
+        assertFalse(test(FilterExpression.not(FilterExpression.greaterThan("id", 5L)), record(10L, "a")));
+        assertTrue(test(FilterExpression.not(FilterExpression.isNull("id")), record(1L, "a")));
+    }
+
+    @Test
+    public void testNotOnUnreadColumn() {
+        FilterExpression unread = FilterExpression.equalTo("age", 18L);
+        assertTrue(test(unread, record(1L, "a")));
+        assertTrue(test(FilterExpression.not(unread), record(1L, "a")));
+        assertTrue(test(FilterExpression.not(FilterExpression.not(unread)), record(1L, "a")));
+
+        FilterExpression idMatch = FilterExpression.equalTo("id", 1L);
+        assertTrue(test(FilterExpression.not(FilterExpression.and(unread, idMatch)), record(1L, "a")));
+        assertTrue(test(FilterExpression.not(FilterExpression.or(unread, idMatch)), record(2L, "a")));
+        // the read column decides the result
+        assertFalse(test(FilterExpression.not(FilterExpression.or(unread, idMatch)), record(1L, "a")));
+        assertFalse(test(FilterExpression.and(FilterExpression.not(unread), idMatch), record(2L, "a")));
+    }
+
+    @Test
+    public void testThreeValuedLogic() {
+        assertEquals(NULL, RecordFilter.not(NULL));
+        assertEquals(FALSE, RecordFilter.not(TRUE));
+        assertEquals(UNKNOWN, RecordFilter.not(UNKNOWN));
+
+        assertEquals(FALSE, RecordFilter.and(FALSE, NULL));
+        assertEquals(NULL, RecordFilter.and(TRUE, NULL));
+        assertEquals(FALSE, RecordFilter.and(UNKNOWN, FALSE));
+        assertEquals(UNKNOWN, RecordFilter.and(UNKNOWN, TRUE));
+
+        assertEquals(TRUE, RecordFilter.or(TRUE, NULL));
+        assertEquals(NULL, RecordFilter.or(FALSE, NULL));
+        assertEquals(TRUE, RecordFilter.or(UNKNOWN, TRUE));
+        assertEquals(UNKNOWN, RecordFilter.or(UNKNOWN, FALSE));
+    }
+}
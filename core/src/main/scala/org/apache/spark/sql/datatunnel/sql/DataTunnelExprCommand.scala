@@ -100,6 +100,7 @@ case class DataTunnelExprCommand(sqlText: String, ctx: DatatunnelExprContext) ex
     if (KAFKA != sourceType) {
       sinkConnector.createTable(df, context)
       sinkConnector.sink(df, context)
+      sourceConnector.commit(context)
     }
     Seq.empty[Row]
   }